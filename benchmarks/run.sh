@@ -0,0 +1,54 @@
+#!/bin/sh
+# Runs the benchmarks with 1, 2, 4, ... up to MAX_THREADS threads (default: number of CPUs),
+# with the GC profiler, and writes one JMH JSON result file per thread count into RESULTS_DIR
+# (default: results/<libcrypto version>[-baseline]-<timestamp>).
+#
+# LIBCRYPTO_VERSION selects the library version (default: libcrypto.version in pom.xml). A -SNAPSHOT
+# version is installed from the working tree first, a release is taken from the Maven repository.
+# With BASELINE=1 only the suites that also build against 0.5.3 are run, use it on both sides
+# when comparing with a release.
+#
+# Usage: ./run.sh [JMH options and benchmark regexps]
+# Example: MAX_THREADS=8 ./run.sh AesBenchmark -p size=16,1048576
+# Example: BASELINE=1 LIBCRYPTO_VERSION=0.5.3 ./run.sh
+set -e
+
+cd "$(dirname "$0")"
+
+MAX_THREADS=${MAX_THREADS:-$(getconf _NPROCESSORS_ONLN)}
+VERSION=${LIBCRYPTO_VERSION:-$(sed -n 's:.*<libcrypto.version>\(.*\)</libcrypto.version>.*:\1:p' pom.xml)}
+SUFFIX=
+MVN_ARGS="-Dlibcrypto.version=$VERSION"
+if [ -n "$BASELINE" ]; then
+    SUFFIX=-baseline
+    MVN_ARGS="$MVN_ARGS -Dbaseline"
+fi
+RESULTS_DIR=${RESULTS_DIR:-results/$VERSION$SUFFIX-$(date +%Y%m%d-%H%M%S)}
+JAR=target/benchmarks.jar
+
+case "$VERSION" in
+    *-SNAPSHOT)
+        mvn -B -q -f ../pom.xml install -DskipTests -Dgpg.skip
+        ;;
+esac
+
+# clean, so suites left out with BASELINE=1 don't linger in the jar
+mvn -B -q clean package $MVN_ARGS
+
+mkdir -p "$RESULTS_DIR"
+
+threads=1
+while :; do
+    echo "Running with $threads thread(s)"
+    java -jar "$JAR" -t "$threads" -prof gc -rf json -rff "$RESULTS_DIR/threads-$threads.json" "$@"
+
+    if [ "$threads" -ge "$MAX_THREADS" ]; then
+        break
+    fi
+    threads=$((threads * 2))
+    if [ "$threads" -gt "$MAX_THREADS" ]; then
+        threads=$MAX_THREADS
+    fi
+done
+
+echo "Results written to $RESULTS_DIR"
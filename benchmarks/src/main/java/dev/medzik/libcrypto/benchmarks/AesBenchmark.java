@@ -0,0 +1,48 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.AES;
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.Salt;
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AES} encryption and decryption with a hex encoded key, for clear texts from 16 B to 1 MiB.
+ * State is per thread, so runs with more threads measure contention in the library rather than in the benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesBenchmark {
+    @Param({"CBC", "GCM"})
+    public AES.AesType type;
+
+    @Param({"16", "1024", "65536", "1048576"})
+    public int size;
+
+    private String key;
+    private String clearText;
+    private String cipherText;
+
+    @Setup
+    public void setup() throws EncryptException {
+        key = Hex.encodeHexString(Salt.generate(32));
+        clearText = Hex.encodeHexString(Salt.generate(size / 2));
+        cipherText = AES.encrypt(type, key, clearText);
+    }
+
+    @Benchmark
+    public String encrypt() throws EncryptException {
+        return AES.encrypt(type, key, clearText);
+    }
+
+    @Benchmark
+    public String decrypt() throws EncryptException {
+        return AES.decrypt(type, key, cipherText);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.Argon2;
+import dev.medzik.libcrypto.Argon2Hash;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Argon2#hash} and {@link Argon2#verify}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Argon2Benchmark {
+    @Param({"16384", "65536"})
+    public int memory;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private byte[] salt;
+    private Argon2 argon2;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        salt = Salt.generate(16);
+        argon2 = new Argon2.Builder()
+                .setMemory(memory)
+                .setParallelism(parallelism)
+                .build();
+        encoded = argon2.hash("secret password", salt).toArgon2String();
+    }
+
+    @Benchmark
+    public Argon2Hash hash() {
+        return argon2.hash("secret password", salt);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return Argon2.verify("secret password", encoded);
+    }
+}
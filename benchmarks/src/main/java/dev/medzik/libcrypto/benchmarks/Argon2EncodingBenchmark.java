@@ -0,0 +1,140 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.Argon2EncodingUtils;
+import dev.medzik.libcrypto.Argon2Hash;
+import dev.medzik.libcrypto.Argon2Type;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the index-based {@link Argon2EncodingUtils} compared to the previous split-based implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Argon2EncodingBenchmark {
+    private static final String ENCODED = "$argon2id$v=19$m=65536,t=3,p=4$bWVkemlrQGR1Y2suY29t$n7wCfzdczbjclMnpvw+t/4D+mCcCFUU+hm6Z85k81PQ";
+
+    private Argon2Hash hash;
+
+    @Setup
+    public void setup() {
+        hash = Argon2EncodingUtils.decode(ENCODED);
+    }
+
+    @Benchmark
+    public Argon2Hash decode() {
+        return Argon2EncodingUtils.decode(ENCODED);
+    }
+
+    @Benchmark
+    public Argon2Hash decodeLegacy() {
+        return Legacy.decode(ENCODED);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Argon2EncodingUtils.encode(hash);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return Legacy.encode(hash);
+    }
+
+    /**
+     * Copy of the split-based encoding used before the index-based parser, kept as a baseline.
+     */
+    static class Legacy {
+        private static final Base64.Encoder b64encoder = Base64.getEncoder().withoutPadding();
+        private static final Base64.Decoder b64decoder = Base64.getDecoder();
+
+        static String encode(Argon2Hash hash) {
+            StringBuilder stringBuilder = new StringBuilder();
+
+            switch (hash.getType()) {
+                case D:
+                    stringBuilder.append("$argon2d");
+                    break;
+                case I:
+                    stringBuilder.append("$argon2i");
+                    break;
+                case ID:
+                    stringBuilder.append("$argon2id");
+                    break;
+            }
+
+            stringBuilder.append("$v=").append(hash.getVersion()).append("$m=").append(hash.getMemory())
+                    .append(",t=").append(hash.getIterations()).append(",p=").append(hash.getParallelism());
+
+            if (hash.getSalt() != null) {
+                stringBuilder.append("$").append(b64encoder.encodeToString(hash.getSalt()));
+            }
+
+            stringBuilder.append("$").append(b64encoder.encodeToString(hash.getHash()));
+            return stringBuilder.toString();
+        }
+
+        static Argon2Hash decode(String encodedHash) {
+            String[] parts = encodedHash.split("\\$");
+            if (parts.length < 4) {
+                throw new IllegalArgumentException("Invalid encoded Argon2-hash");
+            }
+
+            int currentPart = 1;
+            Argon2Type type;
+            switch (parts[currentPart++]) {
+                case "argon2d":
+                    type = Argon2Type.D;
+                    break;
+                case "argon2i":
+                    type = Argon2Type.I;
+                    break;
+                case "argon2id":
+                    type = Argon2Type.ID;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid algorithm type: " + parts[0]);
+            }
+
+            int version;
+            if (parts[currentPart].startsWith("v=")) {
+                version = Integer.parseInt(parts[currentPart].substring(2));
+                currentPart++;
+            } else {
+                throw new IllegalArgumentException("Invalid version parameter");
+            }
+
+            String[] performanceParams = parts[currentPart++].split(",");
+
+            if (performanceParams.length != 3) {
+                throw new IllegalArgumentException("Amount of performance parameters invalid");
+            }
+
+            if (!performanceParams[0].startsWith("m=")) {
+                throw new IllegalArgumentException("Invalid memory parameter");
+            }
+
+            int memory = Integer.parseInt(performanceParams[0].substring(2));
+            if (!performanceParams[1].startsWith("t=")) {
+                throw new IllegalArgumentException("Invalid iterations parameter");
+            }
+
+            int iterations = Integer.parseInt(performanceParams[1].substring(2));
+            if (!performanceParams[2].startsWith("p=")) {
+                throw new IllegalArgumentException("Invalid parallelity parameter");
+            }
+
+            int parallelism = Integer.parseInt(performanceParams[2].substring(2));
+            byte[] salt = b64decoder.decode(parts[currentPart++]);
+            byte[] hash = b64decoder.decode(parts[currentPart]);
+
+            return new Argon2Hash(type, version, memory, iterations, parallelism, salt, hash);
+        }
+    }
+}
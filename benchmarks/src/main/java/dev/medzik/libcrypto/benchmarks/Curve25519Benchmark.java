@@ -0,0 +1,38 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.Curve25519;
+import dev.medzik.libcrypto.Curve25519KeyPair;
+import org.apache.commons.codec.DecoderException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Curve25519} key generation and shared secrets with hex encoded keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Curve25519Benchmark {
+    private String ourPrivate;
+    private String theirPublic;
+
+    @Setup
+    public void setup() {
+        ourPrivate = Curve25519.generateKeyPair().getPrivateKey();
+        theirPublic = Curve25519.generateKeyPair().getPublicKey();
+    }
+
+    @Benchmark
+    public String computeSharedSecret() throws DecoderException {
+        return Curve25519.computeSharedSecret(ourPrivate, theirPublic);
+    }
+
+    @Benchmark
+    public Curve25519KeyPair generateKeyPair() {
+        return Curve25519.generateKeyPair();
+    }
+}
@@ -0,0 +1,41 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.Pbkdf2;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Pbkdf2} with SHA-256 and SHA-512.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Pbkdf2Benchmark {
+    @Param({"100000"})
+    public int iterations;
+
+    private byte[] salt;
+    private Pbkdf2 pbkdf2;
+
+    @Setup
+    public void setup() {
+        salt = Salt.generate(16);
+        pbkdf2 = new Pbkdf2(iterations);
+    }
+
+    @Benchmark
+    public String sha256() throws EncryptException {
+        return pbkdf2.sha256("secret password", salt);
+    }
+
+    @Benchmark
+    public String sha512() throws EncryptException {
+        return pbkdf2.sha512("secret password", salt);
+    }
+}
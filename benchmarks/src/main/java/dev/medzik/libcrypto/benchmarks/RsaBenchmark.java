@@ -0,0 +1,50 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.RSA;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RSA} key generation, encryption and decryption by key size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsaBenchmark {
+    @Param({"2048", "4096"})
+    public int keySize;
+
+    private KeyPair keyPair;
+    private String cipherText;
+
+    @Setup
+    public void setup() throws EncryptException {
+        keyPair = RSA.generateKeyPair(keySize);
+        cipherText = RSA.encrypt("0123456789abcdef0123456789abcdef", keyPair.getPublic());
+    }
+
+    @Benchmark
+    public String encrypt() throws EncryptException {
+        return RSA.encrypt("0123456789abcdef0123456789abcdef", keyPair.getPublic());
+    }
+
+    @Benchmark
+    public String decrypt() throws EncryptException {
+        return RSA.decrypt(cipherText, keyPair.getPrivate());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 20, batchSize = 1)
+    public KeyPair generateKeyPair() throws EncryptException {
+        return RSA.generateKeyPair(keySize);
+    }
+}
@@ -0,0 +1,25 @@
+package dev.medzik.libcrypto.benchmarks;
+
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Salt} for IV and salt sized requests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaltBenchmark {
+    @Param({"12", "16", "32"})
+    public int length;
+
+    @Benchmark
+    public byte[] generate() {
+        return Salt.generate(length);
+    }
+}
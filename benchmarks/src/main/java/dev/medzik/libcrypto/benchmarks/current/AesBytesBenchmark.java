@@ -0,0 +1,59 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.AES;
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AES} encryption and decryption from 16 B to 64 MiB, into a preallocated output and allocating.
+ * State is per thread, so runs with more threads measure contention in the library rather than in the benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesBytesBenchmark {
+    @Param({"CBC", "GCM"})
+    public AES.AesType type;
+
+    @Param({"16", "1024", "65536", "1048576", "67108864"})
+    public int size;
+
+    private byte[] key;
+    private byte[] clearText;
+    private byte[] cipherText;
+    private byte[] output;
+
+    @Setup
+    public void setup() throws EncryptException {
+        key = Salt.generate(32);
+        clearText = Salt.generate(size);
+        cipherText = AES.encrypt(type, key, clearText);
+        output = new byte[AES.getEncryptedLength(type, size)];
+    }
+
+    @Benchmark
+    public int encrypt() throws EncryptException {
+        return AES.encrypt(type, key, clearText, 0, clearText.length, output, 0);
+    }
+
+    @Benchmark
+    public int decrypt() throws EncryptException {
+        return AES.decrypt(type, key, cipherText, 0, cipherText.length, output, 0);
+    }
+
+    @Benchmark
+    public byte[] encryptAllocating() throws EncryptException {
+        return AES.encrypt(type, key, clearText);
+    }
+
+    @Benchmark
+    public byte[] decryptAllocating() throws EncryptException {
+        return AES.decrypt(type, key, cipherText);
+    }
+}
@@ -0,0 +1,61 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.AES;
+import dev.medzik.libcrypto.AesContext;
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link AesContext} compared to the static {@link AES} methods for small messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesContextBenchmark {
+    @Param({"CBC", "GCM"})
+    public AES.AesType type;
+
+    @Param({"64"})
+    public int size;
+
+    private byte[] key;
+    private byte[] clearText;
+    private byte[] cipherText;
+    private byte[] output;
+    private AesContext context;
+
+    @Setup
+    public void setup() throws EncryptException {
+        key = Salt.generate(32);
+        clearText = Salt.generate(size);
+        cipherText = AES.encrypt(type, key, clearText);
+        output = new byte[AES.getEncryptedLength(type, size)];
+        context = new AesContext(type, key);
+    }
+
+    @Benchmark
+    public int encryptStatic() throws EncryptException {
+        return AES.encrypt(type, key, clearText, 0, clearText.length, output, 0);
+    }
+
+    @Benchmark
+    public int encryptContext() throws EncryptException {
+        return context.encrypt(clearText, 0, clearText.length, output, 0);
+    }
+
+    @Benchmark
+    public int decryptStatic() throws EncryptException {
+        return AES.decrypt(type, key, cipherText, 0, cipherText.length, output, 0);
+    }
+
+    @Benchmark
+    public int decryptContext() throws EncryptException {
+        return context.decrypt(cipherText, 0, cipherText.length, output, 0);
+    }
+}
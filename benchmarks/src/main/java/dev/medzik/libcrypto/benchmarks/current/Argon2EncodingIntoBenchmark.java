@@ -0,0 +1,41 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.Argon2EncodingUtils;
+import dev.medzik.libcrypto.Argon2Hash;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Argon2EncodingUtils} encoding into existing char and byte arrays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Argon2EncodingIntoBenchmark {
+    private static final String ENCODED = "$argon2id$v=19$m=65536,t=3,p=4$bWVkemlrQGR1Y2suY29t$n7wCfzdczbjclMnpvw+t/4D+mCcCFUU+hm6Z85k81PQ";
+
+    private Argon2Hash hash;
+    private char[] chars;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        hash = Argon2EncodingUtils.decode(ENCODED);
+        chars = new char[ENCODED.length()];
+        bytes = new byte[ENCODED.length()];
+    }
+
+    @Benchmark
+    public int encodeIntoChars() {
+        return Argon2EncodingUtils.encode(hash, chars, 0);
+    }
+
+    @Benchmark
+    public int encodeIntoBytes() {
+        return Argon2EncodingUtils.encode(hash, bytes, 0);
+    }
+}
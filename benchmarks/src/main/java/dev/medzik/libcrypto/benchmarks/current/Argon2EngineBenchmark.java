@@ -0,0 +1,54 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.Argon2;
+import dev.medzik.libcrypto.Argon2Engine;
+import dev.medzik.libcrypto.Argon2Hash;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Argon2#hash} with Password4j compared to the built-in {@link Argon2Engine}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Argon2EngineBenchmark {
+    @Param({"16384", "65536"})
+    public int memory;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private byte[] salt;
+    private Argon2 password4j;
+    private Argon2 engine;
+
+    @Setup
+    public void setup() {
+        salt = Salt.generate(16);
+        password4j = new Argon2.Builder()
+                .setMemory(memory)
+                .setParallelism(parallelism)
+                .build();
+        engine = new Argon2.Builder()
+                .setMemory(memory)
+                .setParallelism(parallelism)
+                .setEngine(new Argon2Engine())
+                .build();
+    }
+
+    @Benchmark
+    public Argon2Hash hashPassword4j() {
+        return password4j.hash("secret password", salt);
+    }
+
+    @Benchmark
+    public Argon2Hash hashEngine() {
+        return engine.hash("secret password", salt);
+    }
+}
@@ -0,0 +1,46 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.Curve25519;
+import dev.medzik.libcrypto.Curve25519PrivateKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Curve25519} key generation and shared secrets with the dependency compared to the built-in implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Curve25519ImplementationBenchmark {
+    @Param({"DEPENDENCY", "BUILT_IN"})
+    public Curve25519.Implementation implementation;
+
+    private byte[] ourPrivate;
+    private byte[] theirPublic;
+
+    @Setup
+    public void setup() {
+        Curve25519.setImplementation(implementation);
+        ourPrivate = Curve25519.generatePrivateKey().getEncoded();
+        theirPublic = Curve25519.generatePrivateKey().getPublicKey();
+    }
+
+    @Benchmark
+    public byte[] publicKey() {
+        return Curve25519.publicKey(ourPrivate);
+    }
+
+    @Benchmark
+    public byte[] computeSharedSecret() {
+        return Curve25519.computeSharedSecret(ourPrivate, theirPublic);
+    }
+
+    @Benchmark
+    public Curve25519PrivateKey generatePrivateKey() {
+        return Curve25519.generatePrivateKey();
+    }
+}
@@ -0,0 +1,68 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.Pbkdf2;
+import dev.medzik.libcrypto.Pbkdf2Engine;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Pbkdf2} using the JDK's {@code SecretKeyFactory} compared to the built-in {@link Pbkdf2Engine},
+ * and 1024-bit keys derived block by block by the JDK compared to the parallel engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Pbkdf2EngineBenchmark {
+    @Param({"100000"})
+    public int iterations;
+
+    private byte[] salt;
+    private Pbkdf2 jdk;
+    private Pbkdf2 engine;
+
+    @Setup
+    public void setup() {
+        salt = Salt.generate(16);
+        jdk = new Pbkdf2(iterations);
+        engine = new Pbkdf2(iterations, new Pbkdf2Engine());
+    }
+
+    @Benchmark
+    public String sha256Jdk() throws EncryptException {
+        return jdk.sha256("secret password", salt);
+    }
+
+    @Benchmark
+    public String sha256Engine() throws EncryptException {
+        return engine.sha256("secret password", salt);
+    }
+
+    @Benchmark
+    public String sha512Jdk() throws EncryptException {
+        return jdk.sha512("secret password", salt);
+    }
+
+    @Benchmark
+    public String sha512Engine() throws EncryptException {
+        return engine.sha512("secret password", salt);
+    }
+
+    @Benchmark
+    public byte[] sha256Key1024Jdk() throws Exception {
+        PBEKeySpec spec = new PBEKeySpec("secret password".toCharArray(), salt, iterations, 1024);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+
+    @Benchmark
+    public String sha256Key1024Parallel() throws EncryptException {
+        return jdk.sha256("secret password", salt, 1024);
+    }
+}
@@ -0,0 +1,62 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.BatchResult;
+import dev.medzik.libcrypto.EncryptException;
+import dev.medzik.libcrypto.RSA;
+import dev.medzik.libcrypto.RsaDecryptor;
+import dev.medzik.libcrypto.RsaEncryptor;
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link RsaDecryptor} compared to the static {@link RSA#decrypt} for a small wrapped key,
+ * and the throughput of a batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsaDecryptorBenchmark {
+    @Param({"2048"})
+    public int keySize;
+
+    @Param({"64"})
+    public int batchSize;
+
+    private KeyPair keyPair;
+    private String cipherText;
+    private byte[][] batch;
+    private RsaDecryptor decryptor;
+
+    @Setup
+    public void setup() throws EncryptException {
+        keyPair = RSA.generateKeyPair(keySize);
+        RsaEncryptor encryptor = new RsaEncryptor(keyPair.getPublic());
+        cipherText = encryptor.encrypt("0123456789abcdef0123456789abcdef");
+        batch = new byte[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            batch[i] = encryptor.encrypt(Salt.generate(32));
+        }
+        decryptor = new RsaDecryptor(keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public String decryptStatic() throws EncryptException {
+        return RSA.decrypt(cipherText, keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public String decryptDecryptor() throws EncryptException {
+        return decryptor.decrypt(cipherText);
+    }
+
+    @Benchmark
+    public BatchResult decryptBatch() throws EncryptException {
+        return decryptor.decryptBatch(batch);
+    }
+}
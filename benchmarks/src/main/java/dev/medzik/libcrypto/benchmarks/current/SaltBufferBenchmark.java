@@ -0,0 +1,52 @@
+package dev.medzik.libcrypto.benchmarks.current;
+
+import dev.medzik.libcrypto.Salt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Salt} for IV and salt sized requests, unbuffered and buffered, allocating, into a whole existing array
+ * and into a range of a larger one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaltBufferBenchmark {
+    @Param({"12", "16", "32"})
+    public int length;
+
+    @Param({"0", "4096"})
+    public int bufferSize;
+
+    private byte[] output;
+    private byte[] partialOutput;
+
+    @Setup
+    public void setup() {
+        Salt.setBufferSize(bufferSize);
+        output = new byte[length];
+        // IV at the start of an encryption output
+        partialOutput = new byte[length + 64];
+    }
+
+    @Benchmark
+    public byte[] generate() {
+        return Salt.generate(length);
+    }
+
+    @Benchmark
+    public byte[] generateInto() {
+        Salt.generate(output, 0, length);
+        return output;
+    }
+
+    @Benchmark
+    public byte[] generateIntoRange() {
+        Salt.generate(partialOutput, 0, length);
+        return partialOutput;
+    }
+}
@@ -3,10 +3,20 @@ package dev.medzik.libcrypto;
 import org.apache.commons.codec.binary.Hex;
 
 import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * AES encryption and decryption. Supports AES CBC and GCM modes.
@@ -22,34 +32,79 @@ public class AES {
      */
     public static final AesType GCM = AesType.GCM;
 
-    private static final String ALGORITHM = "AES";
+    static final String ALGORITHM = "AES";
+
+    private static final int BLOCK_SIZE = 16;
+    private static final int GCM_TAG_LENGTH = 16;
+
+    private static final String CBC_NO_PADDING = "AES/CBC/NoPadding";
+    private static final int PARALLEL_CHUNK_SIZE = 256 * 1024;
 
     /**
      * Encrypts the given clear text using AES with the given key and random IV.
      * @param type AES type to use
      * @param key secret key to use for encryption (hex encoded)
      * @param clearText clear text to encrypt (UTF-8)
+     * @return IV + cipher text as hex string.
+     * @throws EncryptException If the encryption fails.
      */
     public static String encrypt(AesType type, String key, String clearText) throws EncryptException {
-        try {
-            // covert key to byte array
-            byte[] keyBytes = Hex.decodeHex(key);
+        byte[] cipherBytes = encrypt(type, decodeHex(key), clearText.getBytes());
 
-            // generate random IV
-            byte[] iv = Salt.generate(type.getIvLength());
-
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            AlgorithmParameterSpec parameterSpec = getParameterSpec(type, iv);
+        // return IV + cipher text as hex string
+        return Hex.encodeHexString(cipherBytes);
+    }
 
-            // initialize cipher
-            Cipher cipher = Cipher.getInstance(type.getMode());
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+    /**
+     * Encrypts the given clear text using AES with the given key and random IV.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param clearText clear text to encrypt
+     * @return IV + cipher text.
+     * @throws EncryptException If the encryption fails.
+     */
+    public static byte[] encrypt(AesType type, byte[] key, byte[] clearText) throws EncryptException {
+        byte[] output = new byte[getEncryptedLength(type, clearText.length)];
+        encrypt(type, key, clearText, 0, clearText.length, output, 0);
+        return output;
+    }
 
-            // encrypt
-            byte[] cipherBytes = cipher.doFinal(clearText.getBytes());
+    /**
+     * Encrypts the given clear text using AES with the given key and random IV, and writes
+     * IV + cipher text into the given output array.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param clearText array containing the clear text to encrypt
+     * @param offset offset of the clear text in {@code clearText}
+     * @param length length of the clear text
+     * @param output array to write IV + cipher text into
+     * @param outputOffset offset in {@code output} where the IV is written
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the encryption fails or the output array is too small.
+     */
+    public static int encrypt(AesType type, byte[] key, byte[] clearText, int offset, int length, byte[] output, int outputOffset) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(type.getMode());
+            return encrypt(cipher, type, new SecretKeySpec(key, ALGORITHM), clearText, offset, length, output, outputOffset);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
 
-            // return IV + cipher text as hex string
-            return Hex.encodeHexString(iv) + Hex.encodeHexString(cipherBytes);
+    /**
+     * Encrypts the remaining bytes of the given buffer using AES with the given key and random IV,
+     * and writes IV + cipher text into the output buffer. Both heap and direct buffers are supported.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param clearText buffer with the clear text to encrypt, consumed up to its limit
+     * @param output buffer to write IV + cipher text into
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the encryption fails or the output buffer is too small.
+     */
+    public static int encrypt(AesType type, byte[] key, ByteBuffer clearText, ByteBuffer output) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(type.getMode());
+            return encrypt(cipher, type, new SecretKeySpec(key, ALGORITHM), clearText, output);
         } catch (Exception e) {
             throw new EncryptException(e);
         }
@@ -64,40 +119,304 @@ public class AES {
      * @throws EncryptException If the decryption fails.
      */
     public static String decrypt(AesType type, String key, String cipherText) throws EncryptException {
+        byte[] clearBytes = decrypt(type, decodeHex(key), decodeHex(cipherText));
+
+        // return clear text as string
+        return new String(clearBytes);
+    }
+
+    /**
+     * Decrypts the given IV + cipher text using AES with the given key.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherText IV + cipher text to decrypt
+     * @return Clear text.
+     * @throws EncryptException If the decryption fails.
+     */
+    public static byte[] decrypt(AesType type, byte[] key, byte[] cipherText) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(type.getMode());
+            return decrypt(cipher, type, new SecretKeySpec(key, ALGORITHM), cipherText, 0, cipherText.length);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts the given IV + cipher text using AES with the given key, and writes the clear text
+     * into the given output array.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherText array containing IV + cipher text to decrypt
+     * @param offset offset of the IV in {@code cipherText}
+     * @param length length of IV + cipher text
+     * @param output array to write the clear text into, see {@link #getMaxDecryptedLength(AesType, int)}
+     * @param outputOffset offset in {@code output} where the clear text is written
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the decryption fails or the output array is too small.
+     */
+    public static int decrypt(AesType type, byte[] key, byte[] cipherText, int offset, int length, byte[] output, int outputOffset) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(type.getMode());
+            return decrypt(cipher, type, new SecretKeySpec(key, ALGORITHM), cipherText, offset, length, output, outputOffset);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of the given buffer (IV + cipher text) using AES with the given key,
+     * and writes the clear text into the output buffer. Both heap and direct buffers are supported.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherText buffer with IV + cipher text to decrypt, consumed up to its limit
+     * @param output buffer to write the clear text into, see {@link #getMaxDecryptedLength(AesType, int)}
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the decryption fails or the output buffer is too small.
+     */
+    public static int decrypt(AesType type, byte[] key, ByteBuffer cipherText, ByteBuffer output) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(type.getMode());
+            return decrypt(cipher, type, new SecretKeySpec(key, ALGORITHM), cipherText, output);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Encrypts every given clear text using AES with the given key and a random IV per item.
+     * The cipher is set up once for the whole batch, see {@link AesContext#encryptBatch(byte[][])}.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param clearTexts clear texts to encrypt
+     * @return IV + cipher text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public static AesBatchResult encryptBatch(AesType type, byte[] key, byte[][] clearTexts) throws EncryptException {
+        return new AesContext(type, key).encryptBatch(clearTexts);
+    }
+
+    /**
+     * Decrypts every given IV + cipher text using AES with the given key. Items that fail to decrypt
+     * are reported in the result, see {@link AesContext#decryptBatch(byte[][])}.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherTexts IV + cipher texts to decrypt
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public static AesBatchResult decryptBatch(AesType type, byte[] key, byte[][] cipherTexts) throws EncryptException {
+        return new AesContext(type, key).decryptBatch(cipherTexts);
+    }
+
+    /**
+     * Decrypts the given IV + cipher text using AES with the given key, splitting large CBC cipher texts
+     * across the common {@link ForkJoinPool}. See {@link #decryptParallel(AesType, byte[], byte[], ForkJoinPool)}.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherText IV + cipher text to decrypt
+     * @return Clear text.
+     * @throws EncryptException If the decryption fails.
+     */
+    public static byte[] decryptParallel(AesType type, byte[] key, byte[] cipherText) throws EncryptException {
+        return decryptParallel(type, key, cipherText, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decrypts the given IV + cipher text using AES with the given key, splitting large CBC cipher texts
+     * across threads. The output is identical to {@link #decrypt(AesType, byte[], byte[])}.
+     * <p>
+     * CBC decryption of a block only depends on the previous cipher text block, so the cipher text is split
+     * into block-aligned chunks that are decrypted concurrently, each chained from the last cipher text block
+     * before it. The padding of the final block is checked before the chunks are decrypted. GCM cannot be
+     * split this way and small cipher texts are not worth splitting; both are decrypted on the calling thread.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param cipherText IV + cipher text to decrypt
+     * @param pool pool to decrypt chunks on
+     * @return Clear text.
+     * @throws EncryptException If the decryption fails.
+     */
+    public static byte[] decryptParallel(AesType type, byte[] key, byte[] cipherText, ForkJoinPool pool) throws EncryptException {
+        int ivLength = type.getIvLength();
+        int blocks = cipherText.length - ivLength - BLOCK_SIZE;
+        if (type != AesType.CBC || blocks < 2 * PARALLEL_CHUNK_SIZE || blocks % BLOCK_SIZE != 0) {
+            return decrypt(type, key, cipherText);
+        }
+
         try {
-            // covert key to byte array
-            byte[] keyBytes = Hex.decodeHex(key);
+            final SecretKeySpec secretKey = new SecretKeySpec(key, ALGORITHM);
+
+            // decrypt the final block first, it holds the padding and decides the clear text length
+            Cipher lastCipher = EngineCache.getCipher(type.getMode());
+            lastCipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(cipherText, ivLength + blocks - BLOCK_SIZE, BLOCK_SIZE));
+            byte[] last = lastCipher.doFinal(cipherText, ivLength + blocks, BLOCK_SIZE);
+
+            final byte[] output = new byte[blocks + last.length];
+            System.arraycopy(last, 0, output, blocks, last.length);
+
+            // split the remaining blocks into block-aligned chunks
+            int chunkSize = Math.max(PARALLEL_CHUNK_SIZE, blocks / (pool.getParallelism() * 4));
+            chunkSize = (chunkSize + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+            List<Callable<Integer>> chunks = new ArrayList<>();
+            for (int start = 0; start < blocks; start += chunkSize) {
+                final int chunkStart = start;
+                final int chunkLength = Math.min(chunkSize, blocks - start);
+
+                chunks.add(() -> {
+                    // every chunk is chained from the cipher text block before it, the first one from the IV
+                    Cipher cipher = EngineCache.getCipher(CBC_NO_PADDING);
+                    cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(cipherText, chunkStart, BLOCK_SIZE));
+                    return cipher.doFinal(cipherText, ivLength + chunkStart, chunkLength, output, chunkStart);
+                });
+            }
+
+            for (Future<Integer> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+
+            return output;
+        } catch (ExecutionException e) {
+            throw new EncryptException(e.getCause());
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    static int encrypt(Cipher cipher, AesType type, SecretKeySpec key, byte[] clearText, int offset, int length, byte[] output, int outputOffset) throws GeneralSecurityException, EncryptException {
+        checkOutputLength(getEncryptedLength(type, length), output.length - outputOffset);
+
+        int ivLength = type.getIvLength();
+
+        // generate random IV directly into the output
+        Salt.generate(output, outputOffset, ivLength);
+
+        // initialize cipher
+        cipher.init(Cipher.ENCRYPT_MODE, key, getParameterSpec(type, output, outputOffset));
+
+        // encrypt directly after the IV
+        return ivLength + cipher.doFinal(clearText, offset, length, output, outputOffset + ivLength);
+    }
+
+    static int encrypt(Cipher cipher, AesType type, SecretKeySpec key, ByteBuffer clearText, ByteBuffer output) throws GeneralSecurityException, EncryptException {
+        checkOutputLength(getEncryptedLength(type, clearText.remaining()), output.remaining());
+
+        // generate random IV
+        byte[] iv = Salt.generate(type.getIvLength());
+        output.put(iv);
+
+        // initialize cipher
+        cipher.init(Cipher.ENCRYPT_MODE, key, getParameterSpec(type, iv));
+
+        // encrypt directly after the IV
+        return iv.length + cipher.doFinal(clearText, output);
+    }
+
+    static byte[] decrypt(Cipher cipher, AesType type, SecretKeySpec key, byte[] cipherText, int offset, int length) throws GeneralSecurityException, EncryptException {
+        checkCipherTextLength(type, length);
+
+        int ivLength = type.getIvLength();
+
+        // initialize cipher with the IV from the start of the cipher text
+        cipher.init(Cipher.DECRYPT_MODE, key, getParameterSpec(type, cipherText, offset));
+
+        // decrypt
+        return cipher.doFinal(cipherText, offset + ivLength, length - ivLength);
+    }
 
-            // get IV length in hex string
-            int ivLength = type.getIvLength() * 2;
+    static int decrypt(Cipher cipher, AesType type, SecretKeySpec key, byte[] cipherText, int offset, int length, byte[] output, int outputOffset) throws GeneralSecurityException, EncryptException {
+        checkCipherTextLength(type, length);
 
-            // extract IV and Cipher Text from hex string
-            byte[] iv = Hex.decodeHex(cipherText.substring(0, ivLength));
-            byte[] cipherBytes = Hex.decodeHex(cipherText.substring(ivLength));
+        int ivLength = type.getIvLength();
 
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            AlgorithmParameterSpec parameterSpec = getParameterSpec(type, iv);
+        // initialize cipher with the IV from the start of the cipher text
+        cipher.init(Cipher.DECRYPT_MODE, key, getParameterSpec(type, cipherText, offset));
 
-            // initialize cipher
-            Cipher cipher = Cipher.getInstance(type.getMode());
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+        // decrypt
+        return cipher.doFinal(cipherText, offset + ivLength, length - ivLength, output, outputOffset);
+    }
+
+    static int decrypt(Cipher cipher, AesType type, SecretKeySpec key, ByteBuffer cipherText, ByteBuffer output) throws GeneralSecurityException, EncryptException {
+        checkCipherTextLength(type, cipherText.remaining());
+
+        // extract IV from the start of the cipher text
+        byte[] iv = new byte[type.getIvLength()];
+        cipherText.get(iv);
+
+        // initialize cipher
+        cipher.init(Cipher.DECRYPT_MODE, key, getParameterSpec(type, iv));
+
+        // decrypt
+        return cipher.doFinal(cipherText, output);
+    }
+
+    /**
+     * Returns the length of IV + cipher text produced by encrypting a clear text of the given length.
+     * @param type AES type to use
+     * @param clearTextLength length of the clear text in bytes
+     * @return Length of the encrypt output in bytes.
+     */
+    public static int getEncryptedLength(AesType type, int clearTextLength) {
+        switch (type) {
+            case CBC:
+                // PKCS5 padding always adds between 1 and 16 bytes
+                return type.getIvLength() + (clearTextLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+            case GCM:
+                return type.getIvLength() + clearTextLength + GCM_TAG_LENGTH;
+            default:
+                throw new IllegalArgumentException("Unknown AES type: " + type);
+        }
+    }
+
+    /**
+     * Returns the maximum length of the clear text produced by decrypting IV + cipher text of the given length.
+     * @param type AES type to use
+     * @param cipherTextLength length of IV + cipher text in bytes
+     * @return Maximum length of the decrypt output in bytes.
+     */
+    public static int getMaxDecryptedLength(AesType type, int cipherTextLength) {
+        switch (type) {
+            case CBC:
+                return Math.max(0, cipherTextLength - type.getIvLength());
+            case GCM:
+                return Math.max(0, cipherTextLength - type.getIvLength() - GCM_TAG_LENGTH);
+            default:
+                throw new IllegalArgumentException("Unknown AES type: " + type);
+        }
+    }
 
-            // decrypt
-            byte[] clearBytes = cipher.doFinal(cipherBytes);
+    private static void checkOutputLength(int required, int available) throws ShortBufferException {
+        if (available < required) {
+            throw new ShortBufferException("Output buffer too small, " + required + " bytes required");
+        }
+    }
+
+    private static void checkCipherTextLength(AesType type, int length) throws IllegalBlockSizeException {
+        int minLength = type.getIvLength() + (type == AesType.GCM ? GCM_TAG_LENGTH : BLOCK_SIZE);
+        if (length < minLength) {
+            throw new IllegalBlockSizeException("Cipher text too short");
+        }
+    }
 
-            // return clear text as string
-            return new String(clearBytes);
+    static byte[] decodeHex(String hex) throws EncryptException {
+        try {
+            return Hex.decodeHex(hex);
         } catch (Exception e) {
             throw new EncryptException(e);
         }
     }
 
-    private static AlgorithmParameterSpec getParameterSpec(AesType type, byte[] iv) throws EncryptException {
+    static AlgorithmParameterSpec getParameterSpec(AesType type, byte[] iv) throws EncryptException {
+        return getParameterSpec(type, iv, 0);
+    }
+
+    static AlgorithmParameterSpec getParameterSpec(AesType type, byte[] iv, int offset) throws EncryptException {
         switch (type) {
             case CBC:
-                return new IvParameterSpec(iv);
+                return new IvParameterSpec(iv, offset, type.getIvLength());
             case GCM:
-                return new GCMParameterSpec(128, iv);
+                return new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv, offset, type.getIvLength());
             default:
                 throw new EncryptException("Unknown AES type: " + type);
         }
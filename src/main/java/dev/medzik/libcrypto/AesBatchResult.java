@@ -0,0 +1,11 @@
+package dev.medzik.libcrypto;
+
+/**
+ * Result of a batch AES operation.
+ * @see BatchResult
+ */
+public class AesBatchResult extends BatchResult {
+    AesBatchResult(byte[] data, int[] offsets, int[] lengths, EncryptException[] errors) {
+        super(data, offsets, lengths, errors);
+    }
+}
@@ -0,0 +1,47 @@
+package dev.medzik.libcrypto;
+
+import dev.medzik.libcrypto.AES.AesType;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel adapters for streaming AES encryption and decryption, for example over files or sockets.
+ * <p>
+ * The channels use the same layout as {@link AesOutputStream} and {@link AesInputStream}: the IV followed by
+ * the cipher text. The underlying channels must be in blocking mode.
+ * <p>
+ * Only {@link AesType#CBC} is supported, GCM cannot be decrypted without buffering the whole cipher text.
+ * Use {@link SegmentedAesGcm} to stream GCM.
+ */
+public class AesChannels {
+    /**
+     * Returns a channel that encrypts everything written to it and writes IV + cipher text to the given channel.
+     * Closing the returned channel writes the final block and closes the given channel.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param channel channel to write IV + cipher text to
+     * @return Encrypting channel.
+     * @throws EncryptException If the cipher cannot be initialized.
+     * @throws IllegalArgumentException If the AES type is {@link AesType#GCM}.
+     */
+    public static WritableByteChannel newEncryptingChannel(AesType type, byte[] key, WritableByteChannel channel) throws EncryptException {
+        if (type == AesType.GCM) {
+            throw new IllegalArgumentException("GCM cannot be decrypted as a stream, use SegmentedAesGcm");
+        }
+        return Channels.newChannel(new AesOutputStream(type, key, Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Returns a channel that reads IV + cipher text from the given channel and returns the decrypted clear text.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param channel channel to read IV + cipher text from
+     * @return Decrypting channel.
+     * @throws IllegalArgumentException If the AES type is {@link AesType#GCM}.
+     */
+    public static ReadableByteChannel newDecryptingChannel(AesType type, byte[] key, ReadableByteChannel channel) {
+        return Channels.newChannel(new AesInputStream(type, key, Channels.newInputStream(channel)));
+    }
+}
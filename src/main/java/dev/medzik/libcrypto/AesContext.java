@@ -0,0 +1,422 @@
+package dev.medzik.libcrypto;
+
+import dev.medzik.libcrypto.AES.AesType;
+import org.apache.commons.codec.binary.Hex;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reusable AES encryption and decryption bound to a single key and {@link AesType}.
+ * <p>
+ * The static methods in {@link AES} look up a new {@link Cipher} from the provider and expand the key
+ * on every call. A context keeps the key spec and takes its ciphers from the per-thread {@link EngineCache}, so
+ * the provider lookup happens once per thread. The output is identical to the matching methods in {@link AES}.
+ * <p>
+ * A context is safe to share between threads. Create one per key and keep it instead of creating a new context
+ * for every message.
+ * <p>
+ * The batch methods process many small messages in one call and pack their outputs into a single
+ * {@link AesBatchResult}. Large batches are spread across the common {@link java.util.concurrent.ForkJoinPool}.
+ */
+public class AesContext {
+    // batches smaller than this (in items or in bytes) are not worth splitting across threads
+    private static final int PARALLEL_MIN_ITEMS = 64;
+    private static final long PARALLEL_MIN_BYTES = 64 * 1024;
+
+    private final AesType type;
+    private final SecretKeySpec key;
+
+    /**
+     * Creates a new context.
+     * @param type AES type to use
+     * @param key secret key to use for encryption and decryption
+     */
+    public AesContext(AesType type, byte[] key) {
+        this.type = type;
+        this.key = new SecretKeySpec(key, AES.ALGORITHM);
+    }
+
+    /**
+     * Creates a new context.
+     * @param type AES type to use
+     * @param key secret key to use for encryption and decryption (hex encoded)
+     * @throws EncryptException If the key is not valid hex.
+     */
+    public AesContext(AesType type, String key) throws EncryptException {
+        this(type, AES.decodeHex(key));
+    }
+
+    /**
+     * Returns the AES type of this context.
+     */
+    public AesType getType() {
+        return type;
+    }
+
+    /**
+     * Encrypts the given clear text with a random IV.
+     * @param clearText clear text to encrypt (UTF-8)
+     * @return IV + cipher text as hex string.
+     * @throws EncryptException If the encryption fails.
+     * @see AES#encrypt(AesType, String, String)
+     */
+    public String encrypt(String clearText) throws EncryptException {
+        return Hex.encodeHexString(encrypt(clearText.getBytes()));
+    }
+
+    /**
+     * Encrypts the given clear text with a random IV.
+     * @param clearText clear text to encrypt
+     * @return IV + cipher text.
+     * @throws EncryptException If the encryption fails.
+     * @see AES#encrypt(AesType, byte[], byte[])
+     */
+    public byte[] encrypt(byte[] clearText) throws EncryptException {
+        byte[] output = new byte[AES.getEncryptedLength(type, clearText.length)];
+        encrypt(clearText, 0, clearText.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Encrypts the given clear text with a random IV and writes IV + cipher text into the given output array.
+     * @param clearText array containing the clear text to encrypt
+     * @param offset offset of the clear text in {@code clearText}
+     * @param length length of the clear text
+     * @param output array to write IV + cipher text into
+     * @param outputOffset offset in {@code output} where the IV is written
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the encryption fails or the output array is too small.
+     * @see AES#encrypt(AesType, byte[], byte[], int, int, byte[], int)
+     */
+    public int encrypt(byte[] clearText, int offset, int length, byte[] output, int outputOffset) throws EncryptException {
+        try {
+            return AES.encrypt(getCipher(), type, key, clearText, offset, length, output, outputOffset);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Encrypts the remaining bytes of the given buffer with a random IV and writes IV + cipher text
+     * into the output buffer.
+     * @param clearText buffer with the clear text to encrypt, consumed up to its limit
+     * @param output buffer to write IV + cipher text into
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the encryption fails or the output buffer is too small.
+     * @see AES#encrypt(AesType, byte[], ByteBuffer, ByteBuffer)
+     */
+    public int encrypt(ByteBuffer clearText, ByteBuffer output) throws EncryptException {
+        try {
+            return AES.encrypt(getCipher(), type, key, clearText, output);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts the given cipher text.
+     * @param cipherText IV + cipher text to decrypt (hex encoded)
+     * @return Clear text as string. (UTF-8)
+     * @throws EncryptException If the decryption fails.
+     * @see AES#decrypt(AesType, String, String)
+     */
+    public String decrypt(String cipherText) throws EncryptException {
+        return new String(decrypt(AES.decodeHex(cipherText)));
+    }
+
+    /**
+     * Decrypts the given cipher text.
+     * @param cipherText IV + cipher text to decrypt
+     * @return Clear text.
+     * @throws EncryptException If the decryption fails.
+     * @see AES#decrypt(AesType, byte[], byte[])
+     */
+    public byte[] decrypt(byte[] cipherText) throws EncryptException {
+        try {
+            return AES.decrypt(getCipher(), type, key, cipherText, 0, cipherText.length);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts the given cipher text and writes the clear text into the given output array.
+     * @param cipherText array containing IV + cipher text to decrypt
+     * @param offset offset of the IV in {@code cipherText}
+     * @param length length of IV + cipher text
+     * @param output array to write the clear text into
+     * @param outputOffset offset in {@code output} where the clear text is written
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the decryption fails or the output array is too small.
+     * @see AES#decrypt(AesType, byte[], byte[], int, int, byte[], int)
+     */
+    public int decrypt(byte[] cipherText, int offset, int length, byte[] output, int outputOffset) throws EncryptException {
+        try {
+            return AES.decrypt(getCipher(), type, key, cipherText, offset, length, output, outputOffset);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of the given buffer (IV + cipher text) and writes the clear text
+     * into the output buffer.
+     * @param cipherText buffer with IV + cipher text to decrypt, consumed up to its limit
+     * @param output buffer to write the clear text into
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the decryption fails or the output buffer is too small.
+     * @see AES#decrypt(AesType, byte[], ByteBuffer, ByteBuffer)
+     */
+    public int decrypt(ByteBuffer cipherText, ByteBuffer output) throws EncryptException {
+        try {
+            return AES.decrypt(getCipher(), type, key, cipherText, output);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Encrypts every given clear text with its own random IV. Large batches are processed in parallel.
+     * @param clearTexts clear texts to encrypt
+     * @return IV + cipher text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult encryptBatch(byte[][] clearTexts) throws EncryptException {
+        return encryptBatch(new ArrayItems(clearTexts), null);
+    }
+
+    /**
+     * Encrypts every given clear text with its own random IV.
+     * @param clearTexts clear texts to encrypt
+     * @param parallel whether to spread the items across threads
+     * @return IV + cipher text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult encryptBatch(byte[][] clearTexts, boolean parallel) throws EncryptException {
+        return encryptBatch(new ArrayItems(clearTexts), parallel);
+    }
+
+    /**
+     * Encrypts clear texts packed into one array with their own random IVs. Large batches are processed in parallel.
+     * @param data array containing all clear texts
+     * @param offsets offset of every clear text in {@code data}
+     * @param lengths length of every clear text
+     * @return IV + cipher text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult encryptBatch(byte[] data, int[] offsets, int[] lengths) throws EncryptException {
+        return encryptBatch(new PackedItems(data, offsets, lengths), null);
+    }
+
+    /**
+     * Decrypts every given IV + cipher text. Items that fail to decrypt are reported in the result.
+     * Large batches are processed in parallel.
+     * @param cipherTexts IV + cipher texts to decrypt
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult decryptBatch(byte[][] cipherTexts) throws EncryptException {
+        return decryptBatch(new ArrayItems(cipherTexts), null);
+    }
+
+    /**
+     * Decrypts every given IV + cipher text. Items that fail to decrypt are reported in the result.
+     * @param cipherTexts IV + cipher texts to decrypt
+     * @param parallel whether to spread the items across threads
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult decryptBatch(byte[][] cipherTexts, boolean parallel) throws EncryptException {
+        return decryptBatch(new ArrayItems(cipherTexts), parallel);
+    }
+
+    /**
+     * Decrypts IV + cipher texts packed into one array. Items that fail to decrypt are reported in the result.
+     * Large batches are processed in parallel.
+     * @param data array containing all IV + cipher texts
+     * @param offsets offset of every IV + cipher text in {@code data}
+     * @param lengths length of every IV + cipher text
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public AesBatchResult decryptBatch(byte[] data, int[] offsets, int[] lengths) throws EncryptException {
+        return decryptBatch(new PackedItems(data, offsets, lengths), null);
+    }
+
+    private AesBatchResult encryptBatch(final Items items, Boolean parallel) throws EncryptException {
+        int count = items.size();
+        final int[] outputOffsets = new int[count];
+        final int[] outputLengths = new int[count];
+        final EncryptException[] errors = new EncryptException[count];
+
+        // the output length of every item is known upfront, so items can be written into the arena concurrently
+        // invalid items reserve no space, so they can't shift the offsets of the other items
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            outputOffsets[i] = (int) total;
+            errors[i] = items.check(i);
+            if (errors[i] == null) {
+                outputLengths[i] = AES.getEncryptedLength(type, items.length(i));
+            }
+            total += outputLengths[i];
+        }
+        final byte[] output = new byte[arenaLength(total)];
+
+        forEach(count, total, parallel, i -> {
+            if (errors[i] != null) {
+                return;
+            }
+            try {
+                AES.encrypt(getCipher(), type, key, items.array(i), items.offset(i), items.length(i), output, outputOffsets[i]);
+            } catch (Exception e) {
+                outputLengths[i] = 0;
+                errors[i] = e instanceof EncryptException ? (EncryptException) e : new EncryptException(e);
+            }
+        });
+
+        return new AesBatchResult(output, outputOffsets, outputLengths, errors);
+    }
+
+    private AesBatchResult decryptBatch(final Items items, Boolean parallel) throws EncryptException {
+        int count = items.size();
+        final int[] outputOffsets = new int[count];
+        final int[] outputLengths = new int[count];
+        final EncryptException[] errors = new EncryptException[count];
+
+        // reserve the maximum clear text length, the actual length is only known after removing the padding
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            outputOffsets[i] = (int) total;
+            errors[i] = items.check(i);
+            if (errors[i] == null) {
+                total += AES.getMaxDecryptedLength(type, items.length(i));
+            }
+        }
+        final byte[] output = new byte[arenaLength(total)];
+
+        forEach(count, total, parallel, i -> {
+            if (errors[i] != null) {
+                return;
+            }
+            try {
+                outputLengths[i] = AES.decrypt(getCipher(), type, key, items.array(i), items.offset(i), items.length(i), output, outputOffsets[i]);
+            } catch (Exception e) {
+                outputLengths[i] = 0;
+                errors[i] = e instanceof EncryptException ? (EncryptException) e : new EncryptException(e);
+            }
+        });
+
+        return new AesBatchResult(output, outputOffsets, outputLengths, errors);
+    }
+
+    private static int arenaLength(long total) throws EncryptException {
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new EncryptException("Batch output too large: " + total + " bytes");
+        }
+        return (int) total;
+    }
+
+    private static void forEach(int count, long bytes, Boolean parallel, IntConsumer action) {
+        boolean split = parallel != null ? parallel : count >= PARALLEL_MIN_ITEMS && bytes >= PARALLEL_MIN_BYTES;
+        if (split) {
+            IntStream.range(0, count).parallel().forEach(action);
+        } else {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        }
+    }
+
+    private Cipher getCipher() throws GeneralSecurityException {
+        return EngineCache.getCipher(type.getMode());
+    }
+
+    private interface Items {
+        int size();
+
+        byte[] array(int index);
+
+        int offset(int index);
+
+        int length(int index);
+
+        /**
+         * Returns the error of an item that can't be processed, or null if the item is valid.
+         */
+        EncryptException check(int index);
+    }
+
+    private static class ArrayItems implements Items {
+        private final byte[][] arrays;
+
+        ArrayItems(byte[][] arrays) {
+            this.arrays = arrays;
+        }
+
+        public int size() {
+            return arrays.length;
+        }
+
+        public byte[] array(int index) {
+            return arrays[index];
+        }
+
+        public int offset(int index) {
+            return 0;
+        }
+
+        public int length(int index) {
+            return arrays[index].length;
+        }
+
+        public EncryptException check(int index) {
+            return arrays[index] == null ? new EncryptException("Missing item " + index) : null;
+        }
+    }
+
+    private static class PackedItems implements Items {
+        private final byte[] data;
+        private final int[] offsets;
+        private final int[] lengths;
+
+        PackedItems(byte[] data, int[] offsets, int[] lengths) {
+            if (offsets.length != lengths.length) {
+                throw new IllegalArgumentException("offsets and lengths must have the same size");
+            }
+
+            this.data = data;
+            this.offsets = offsets;
+            this.lengths = lengths;
+        }
+
+        public int size() {
+            return offsets.length;
+        }
+
+        public byte[] array(int index) {
+            return data;
+        }
+
+        public int offset(int index) {
+            return offsets[index];
+        }
+
+        public int length(int index) {
+            return lengths[index];
+        }
+
+        public EncryptException check(int index) {
+            int offset = offsets[index];
+            int length = lengths[index];
+            if (offset < 0 || length < 0 || length > data.length - offset) {
+                return new EncryptException("Item " + index + " out of bounds: offset " + offset + ", length " + length);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package dev.medzik.libcrypto;
+
+import dev.medzik.libcrypto.AES.AesType;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Input stream that decrypts AES cipher text read from the underlying stream.
+ * <p>
+ * The underlying stream must contain the IV followed by the cipher text, as written by {@link AesOutputStream}
+ * or returned by {@link AES#encrypt(AesType, byte[], byte[])}. Cipher text is read in fixed-size chunks.
+ * A failed padding check is reported as an {@link IOException}.
+ * <p>
+ * Only {@link AesType#CBC} is supported. The JDK provider does not release any GCM clear text before the
+ * authentication tag at the end of the cipher text has been verified, so it would have to keep the whole
+ * cipher text in memory. Use {@link SegmentedAesGcm#newDecryptingStream(InputStream)} to stream GCM.
+ */
+public class AesInputStream extends FilterInputStream {
+    private final AesType type;
+    private final SecretKeySpec key;
+    private final byte[] input = new byte[AesOutputStream.CHUNK_SIZE];
+    private final byte[] singleByte = new byte[1];
+
+    private Cipher cipher;
+    private byte[] output = new byte[AesOutputStream.CHUNK_SIZE * 2];
+    private int outputPosition;
+    private int outputLength;
+    private boolean finished;
+
+    /**
+     * Creates a new decrypting input stream.
+     * @param type AES type to use
+     * @param key secret key to use for decryption
+     * @param in underlying input stream to read IV + cipher text from
+     * @throws IllegalArgumentException If the AES type is {@link AesType#GCM}.
+     */
+    public AesInputStream(AesType type, byte[] key, InputStream in) {
+        super(in);
+        if (type == AesType.GCM) {
+            throw new IllegalArgumentException("GCM cannot be decrypted as a stream, use SegmentedAesGcm");
+        }
+        this.type = type;
+        this.key = new SecretKeySpec(key, AES.ALGORITHM);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(singleByte, 0, 1);
+        return n == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (outputPosition == outputLength) {
+            if (finished) {
+                return -1;
+            }
+            fill();
+        }
+
+        int n = Math.min(len, outputLength - outputPosition);
+        System.arraycopy(output, outputPosition, b, off, n);
+        outputPosition += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(input, 0, (int) Math.min(n - skipped, input.length));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return outputLength - outputPosition;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void fill() throws IOException {
+        try {
+            if (cipher == null) {
+                initCipher();
+            }
+
+            outputPosition = 0;
+
+            int count = in.read(input);
+            if (count == -1) {
+                ensureOutputSize(cipher.getOutputSize(0));
+                outputLength = cipher.doFinal(output, 0);
+                finished = true;
+            } else {
+                ensureOutputSize(cipher.getOutputSize(count));
+                outputLength = cipher.update(input, 0, count, output, 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void initCipher() throws IOException, GeneralSecurityException {
+        // read IV from the stream header
+        byte[] iv = new byte[type.getIvLength()];
+        int read = 0;
+        while (read < iv.length) {
+            int count = in.read(iv, read, iv.length - read);
+            if (count == -1) {
+                throw new IOException("Cipher text too short");
+            }
+            read += count;
+        }
+
+        Cipher instance = EngineCache.newCipher(type.getMode());
+        try {
+            instance.init(Cipher.DECRYPT_MODE, key, AES.getParameterSpec(type, iv));
+        } catch (EncryptException e) {
+            throw new IOException(e);
+        }
+        cipher = instance;
+    }
+
+    private void ensureOutputSize(int size) {
+        if (output.length < size) {
+            output = new byte[size];
+        }
+    }
+}
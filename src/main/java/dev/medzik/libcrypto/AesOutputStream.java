@@ -0,0 +1,126 @@
+package dev.medzik.libcrypto;
+
+import dev.medzik.libcrypto.AES.AesType;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Output stream that encrypts everything written to it using AES with a random IV.
+ * <p>
+ * The data written to the underlying stream has the same layout as {@link AES#encrypt(AesType, byte[], byte[])},
+ * the IV followed by the cipher text, so it can be decrypted with {@link AES#decrypt(AesType, byte[], byte[])}
+ * or {@link AesInputStream}. Data is encrypted in fixed-size chunks, so memory use does not depend on the
+ * amount of data written. The final block (and the GCM tag) is written when the stream is closed.
+ * <p>
+ * GCM output can only be decrypted in one piece with {@link AES#decrypt(AesType, byte[], byte[])}, use
+ * {@link SegmentedAesGcm#newEncryptingStream(OutputStream)} for GCM data that is decrypted as a stream.
+ */
+public class AesOutputStream extends FilterOutputStream {
+    static final int CHUNK_SIZE = 8192;
+
+    private final byte[] iv;
+    private final Cipher cipher;
+    private final byte[] buffer;
+    private final byte[] singleByte = new byte[1];
+
+    private boolean headerWritten;
+    private boolean closed;
+
+    /**
+     * Creates a new encrypting output stream.
+     * @param type AES type to use
+     * @param key secret key to use for encryption
+     * @param out underlying output stream to write IV + cipher text to
+     * @throws EncryptException If the cipher cannot be initialized.
+     */
+    public AesOutputStream(AesType type, byte[] key, OutputStream out) throws EncryptException {
+        super(out);
+
+        try {
+            // generate random IV
+            iv = Salt.generate(type.getIvLength());
+
+            // initialize cipher
+            cipher = EngineCache.newCipher(type.getMode());
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, AES.ALGORITHM), AES.getParameterSpec(type, iv));
+
+            // room for one chunk plus the partial block buffered by the cipher
+            buffer = new byte[cipher.getOutputSize(CHUNK_SIZE + cipher.getBlockSize())];
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        singleByte[0] = (byte) b;
+        write(singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        writeHeader();
+
+        try {
+            while (len > 0) {
+                int chunk = Math.min(len, CHUNK_SIZE);
+
+                int produced = cipher.update(b, off, chunk, buffer, 0);
+                out.write(buffer, 0, produced);
+
+                off += chunk;
+                len -= chunk;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Flushes the underlying stream. Bytes of an incomplete AES block stay buffered in the cipher
+     * until more data is written or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes the final block (and the GCM tag) and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            writeHeader();
+
+            int produced = cipher.doFinal(buffer, 0);
+            out.write(buffer, 0, produced);
+            out.flush();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (!headerWritten) {
+            out.write(iv);
+            headerWritten = true;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package dev.medzik.libcrypto;
 
 import com.password4j.Argon2Function;
-import com.password4j.Hash;
-import com.password4j.Password;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Argon2 implementation.
@@ -15,6 +20,9 @@ public class Argon2 {
     private final int iterations;
     private final Argon2Type type;
     private final int version;
+    private final Argon2Engine engine;
+    private final Argon2Function function;
+    private final Argon2Scheduler scheduler;
 
     private static final int DEFAULT_VERSION = 19;
 
@@ -25,6 +33,8 @@ public class Argon2 {
         private int iterations;
         private Argon2Type type;
         private int version;
+        private Argon2Engine engine;
+        private Argon2Scheduler scheduler;
 
         public Builder() {
             this.hashLength = 32;
@@ -65,8 +75,26 @@ public class Argon2 {
             return this;
         }
 
+        /**
+         * Sets the engine used to compute hashes instead of password4j.
+         * @param engine engine to use, or null to use password4j
+         */
+        public Builder setEngine(Argon2Engine engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that admits hashes against its memory budget.
+         * @param scheduler scheduler to use, or null to hash without admission control
+         */
+        public Builder setScheduler(Argon2Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
         public Argon2 build() {
-            return new Argon2(hashLength, parallelism, memory, iterations, type, version);
+            return new Argon2(hashLength, parallelism, memory, iterations, type, version, engine, scheduler);
         }
     }
 
@@ -78,12 +106,20 @@ public class Argon2 {
      * @param iterations number of iterations to use when hashing
      */
     public Argon2(int hashLength, int parallelism, int memory, int iterations, Argon2Type type, int version) {
+        this(hashLength, parallelism, memory, iterations, type, version, null, null);
+    }
+
+    Argon2(int hashLength, int parallelism, int memory, int iterations, Argon2Type type, int version,
+           Argon2Engine engine, Argon2Scheduler scheduler) {
         this.hashLength = hashLength;
         this.parallelism = parallelism;
         this.memory = memory;
         this.iterations = iterations;
         this.type = type;
         this.version = version;
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.function = Argon2FunctionCache.newFunction(type, version, memory, iterations, parallelism, hashLength);
     }
 
     /**
@@ -94,12 +130,7 @@ public class Argon2 {
      * @param iterations number of iterations to use when hashing
      */
     public Argon2(int hashLength, int parallelism, int memory, int iterations) {
-        this.hashLength = hashLength;
-        this.parallelism = parallelism;
-        this.memory = memory;
-        this.iterations = iterations;
-        this.type = Argon2Type.ID;
-        this.version = DEFAULT_VERSION;
+        this(hashLength, parallelism, memory, iterations, Argon2Type.ID, DEFAULT_VERSION, null, null);
     }
 
     /**
@@ -107,26 +138,69 @@ public class Argon2 {
      * @param password password to hash
      * @param salt salt to use
      * @return Hashed password.
+     * @throws java.util.concurrent.RejectedExecutionException If a scheduler is set and it rejects the hash
      */
     public Argon2Hash hash(String password, byte[] salt) {
-        // create an instance of Argon2Function from password4j with the parameters
-        Argon2Function instance = Argon2Function.getInstance(
-                memory,
-                iterations,
-                parallelism,
-                hashLength,
-                type.toPassword4jType(),
-                version
-        );
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        try {
+            return hash(passwordBytes, salt);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Hashes a password using argon2. The internal UTF-8 copy of the password is zeroed afterwards,
+     * the given array is left to the caller to clear.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Hashed password.
+     * @throws java.util.concurrent.RejectedExecutionException If a scheduler is set and it rejects the hash
+     */
+    public Argon2Hash hash(char[] password, byte[] salt) {
+        return hash(CharBuffer.wrap(password), salt);
+    }
 
-        // compute the hash
-        Hash hash = Password
-                .hash(password)
-                .addSalt(salt)
-                .with(instance);
+    /**
+     * Hashes a password using argon2. The remaining chars of the buffer are hashed without changing its position,
+     * the internal UTF-8 copy of the password is zeroed afterwards.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Hashed password.
+     * @throws java.util.concurrent.RejectedExecutionException If a scheduler is set and it rejects the hash
+     */
+    public Argon2Hash hash(CharBuffer password, byte[] salt) {
+        byte[] passwordBytes = Passwords.toUtf8(password);
+        try {
+            return hash(passwordBytes, salt);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
 
-        // return the hash
-        return Argon2EncodingUtils.decode(hash.getResult());
+    /**
+     * Hashes a password using argon2. The password bytes are used directly, without a copy.
+     * @param password password to hash, usually encoded as UTF-8
+     * @param salt salt to use
+     * @return Hashed password.
+     * @throws java.util.concurrent.RejectedExecutionException If a scheduler is set and it rejects the hash
+     */
+    public Argon2Hash hash(byte[] password, byte[] salt) {
+        if (scheduler != null) {
+            return scheduler.run(memory, () -> computeHash(password, salt));
+        }
+        return computeHash(password, salt);
+    }
+
+    private Argon2Hash computeHash(byte[] password, byte[] salt) {
+        byte[] hash;
+        if (engine != null) {
+            hash = engine.hash(type, version, memory, iterations, parallelism, hashLength, password, salt);
+        } else {
+            hash = function.hash(password, salt).getBytes();
+        }
+
+        return new Argon2Hash(type, version, memory, iterations, parallelism, salt, hash);
     }
 
     /**
@@ -139,6 +213,27 @@ public class Argon2 {
        return hash(password, salt.getBytes());
     }
 
+    /**
+     * Hashes a password using argon2 on the default {@link KdfExecutor}.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Future completed with the hashed password.
+     */
+    public CompletableFuture<Argon2Hash> hashAsync(String password, byte[] salt) {
+        return hashAsync(password, salt, KdfExecutor.getDefault());
+    }
+
+    /**
+     * Hashes a password using argon2 on the given executor.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param executor executor to hash on
+     * @return Future completed with the hashed password.
+     */
+    public CompletableFuture<Argon2Hash> hashAsync(String password, byte[] salt, Executor executor) {
+        return KdfExecutor.supply(() -> hash(password, salt), executor);
+    }
+
     /**
      * Verifies a password against a hash.
      * @param rawPassword raw password to verify
@@ -147,21 +242,78 @@ public class Argon2 {
      */
     public static boolean verify(CharSequence rawPassword, String encodedPassword) {
         // decode the `encodedPassword` to get the parameters
-        Argon2Hash argon2Hash = Argon2EncodingUtils.decode(encodedPassword);
-
-        // create an instance of Argon2Function with the parameters
-        Argon2Function instance = Argon2Function.getInstance(
-                argon2Hash.getMemory(),
-                argon2Hash.getIterations(),
-                argon2Hash.getParallelism(),
-                argon2Hash.getHashLength(),
-                argon2Hash.getType().toPassword4jType(),
-                argon2Hash.getVersion()
+        return verify(rawPassword, Argon2EncodingUtils.decode(encodedPassword));
+    }
+
+    /**
+     * Verifies a password against a hash once the scheduler admits it.
+     * @param rawPassword raw password to verify
+     * @param encodedPassword encoded password to verify against
+     * @param scheduler scheduler that admits the verification against its memory budget
+     * @return True if the passwords match, false otherwise
+     * @throws java.util.concurrent.RejectedExecutionException If the scheduler rejects the verification
+     */
+    public static boolean verify(CharSequence rawPassword, String encodedPassword, Argon2Scheduler scheduler) {
+        return verify(rawPassword, Argon2EncodingUtils.decode(encodedPassword), scheduler);
+    }
+
+    /**
+     * Verifies a password against an already decoded hash once the scheduler admits it.
+     * @param rawPassword raw password to verify
+     * @param hash decoded hash to verify against
+     * @param scheduler scheduler that admits the verification against its memory budget
+     * @return True if the passwords match, false otherwise
+     * @throws java.util.concurrent.RejectedExecutionException If the scheduler rejects the verification
+     */
+    public static boolean verify(CharSequence rawPassword, Argon2Hash hash, Argon2Scheduler scheduler) {
+        return scheduler.run(hash.getMemory(), () -> verify(rawPassword, hash));
+    }
+
+    /**
+     * Verifies a password against an already decoded hash.
+     * @param rawPassword raw password to verify
+     * @param hash decoded hash to verify against
+     * @return True if the passwords match, false otherwise
+     */
+    public static boolean verify(CharSequence rawPassword, Argon2Hash hash) {
+        // get the function for the parameters of the hash from the cache
+        Argon2Function instance = Argon2FunctionCache.getShared().get(
+                hash.getType(),
+                hash.getVersion(),
+                hash.getMemory(),
+                hash.getIterations(),
+                hash.getParallelism(),
+                hash.getHashLength()
         );
 
-        // verify the password
-        return Password
-                .check(rawPassword, encodedPassword)
-                .with(instance);
+        byte[] passwordBytes = Passwords.toUtf8(rawPassword);
+        try {
+            // recompute the hash and compare in constant time
+            byte[] computed = instance.hash(passwordBytes, hash.getSalt()).getBytes();
+            return MessageDigest.isEqual(computed, hash.getHash());
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Verifies a password against a hash on the default {@link KdfExecutor}.
+     * @param rawPassword raw password to verify
+     * @param encodedPassword encoded password to verify against
+     * @return Future completed with true if the passwords match, false otherwise
+     */
+    public static CompletableFuture<Boolean> verifyAsync(CharSequence rawPassword, String encodedPassword) {
+        return verifyAsync(rawPassword, encodedPassword, KdfExecutor.getDefault());
+    }
+
+    /**
+     * Verifies a password against a hash on the given executor.
+     * @param rawPassword raw password to verify
+     * @param encodedPassword encoded password to verify against
+     * @param executor executor to verify on
+     * @return Future completed with true if the passwords match, false otherwise
+     */
+    public static CompletableFuture<Boolean> verifyAsync(CharSequence rawPassword, String encodedPassword, Executor executor) {
+        return KdfExecutor.supply(() -> verify(rawPassword, encodedPassword), executor);
     }
 }
@@ -0,0 +1,330 @@
+package dev.medzik.libcrypto;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verifies many passwords against encoded Argon2 hashes in parallel.
+ * <p>
+ * The hashes are decoded first and grouped by parameter set, so items sharing parameters run next to each other
+ * and reuse the same cached function. The items are then verified by up to {@code parallelism} workers on the
+ * executor, with the calling thread working as well, optionally admitted by an {@link Argon2Scheduler}.
+ * Results, failures and progress are reported through a {@link Listener} as items complete.
+ */
+public class Argon2BatchVerifier {
+    private final Executor executor;
+    private final int parallelism;
+    private final Argon2Scheduler scheduler;
+    private final int maxMemory;
+
+    /**
+     * Receives the results of a batch. Methods are called from the worker threads as items complete.
+     * An exception thrown by the listener doesn't change the results or stop the batch, the first one
+     * is rethrown by {@code verify} once all items completed.
+     */
+    public interface Listener {
+        /**
+         * Called when an item was verified.
+         * @param index index of the item in the batch
+         * @param matches true if the password matches the hash
+         */
+        void onResult(int index, boolean matches);
+
+        /**
+         * Called when an item could not be verified, for example because the hash is malformed
+         * or the scheduler rejected it.
+         * @param index index of the item in the batch
+         * @param error cause of the failure
+         */
+        default void onFailure(int index, Exception error) {
+        }
+
+        /**
+         * Called after every completed item.
+         * @param completed number of completed items
+         * @param total number of items in the batch
+         */
+        default void onProgress(int completed, int total) {
+        }
+    }
+
+    /**
+     * Creates a new verifier running on the default {@link KdfExecutor} with one worker per available processor.
+     */
+    public Argon2BatchVerifier() {
+        this(KdfExecutor.getDefault(), Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Creates a new verifier.
+     * @param executor executor to run the workers on
+     * @param parallelism maximum number of items verified at the same time
+     * @param scheduler scheduler that admits each verification against its memory budget, or null
+     */
+    public Argon2BatchVerifier(Executor executor, int parallelism, Argon2Scheduler scheduler) {
+        this(executor, parallelism, scheduler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new verifier that rejects hashes with a memory cost above the given limit, for example
+     * when verifying untrusted hashes that could otherwise exhaust the heap.
+     * @param executor executor to run the workers on
+     * @param parallelism maximum number of items verified at the same time
+     * @param scheduler scheduler that admits each verification against its memory budget, or null
+     * @param maxMemory maximum memory cost of a hash in KiB, larger ones are reported as failures
+     */
+    public Argon2BatchVerifier(Executor executor, int parallelism, Argon2Scheduler scheduler, int maxMemory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (maxMemory < 1) {
+            throw new IllegalArgumentException("Maximum memory must be positive");
+        }
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.scheduler = scheduler;
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Verifies passwords against encoded hashes, blocking until all items complete.
+     * @param passwords raw passwords
+     * @param encodedHashes encoded hashes, one for each password
+     * @return Results of the batch.
+     */
+    public Result verify(List<? extends CharSequence> passwords, List<String> encodedHashes) {
+        return verify(passwords, encodedHashes, null);
+    }
+
+    /**
+     * Verifies passwords against encoded hashes, blocking until all items complete.
+     * @param passwords raw passwords
+     * @param encodedHashes encoded hashes, one for each password
+     * @param listener listener notified as items complete, or null
+     * @return Results of the batch.
+     * @throws RuntimeException The first exception thrown by the listener, after all items completed
+     * @throws Error The first error thrown while verifying an item or by the listener, after all items completed
+     */
+    public Result verify(List<? extends CharSequence> passwords, List<String> encodedHashes, Listener listener) {
+        if (passwords.size() != encodedHashes.size()) {
+            throw new IllegalArgumentException("Number of passwords and hashes differ");
+        }
+
+        final int total = passwords.size();
+        final Result result = new Result(total);
+        final CharSequence[] passwordArray = passwords.toArray(new CharSequence[0]);
+        final Argon2Hash[] hashes = new Argon2Hash[total];
+        final AtomicInteger completed = new AtomicInteger();
+        // listener exceptions and errors, rethrown once all items completed
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // decode all hashes, reporting malformed ones right away
+        final Integer[] queue = new Integer[total];
+        final String[] keys = new String[total];
+        int invalid = 0;
+        for (int i = 0; i < total; i++) {
+            queue[i] = i;
+            try {
+                Argon2Hash hash = Argon2EncodingUtils.decode(encodedHashes.get(i));
+                if (hash.getMemory() > maxMemory) {
+                    throw new IllegalArgumentException("Memory cost " + hash.getMemory() + " KiB exceeds the limit of " + maxMemory + " KiB");
+                }
+                hashes[i] = hash;
+                keys[i] = parameterKey(hash);
+            } catch (IllegalArgumentException e) {
+                invalid++;
+                complete(result, listener, failure, completed, total, i, false, e);
+            }
+        }
+
+        // group the items by parameter set, the malformed ones are sorted first and skipped
+        Arrays.sort(queue, Comparator.comparing((Integer i) -> keys[i], Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+
+        final AtomicInteger next = new AtomicInteger(invalid);
+        final int workers = Math.min(parallelism, total);
+        final CountDownLatch done = new CountDownLatch(total - next.get());
+
+        Runnable worker = () -> {
+            int position;
+            while ((position = next.getAndIncrement()) < total) {
+                int index = queue[position];
+                try {
+                    boolean matches = false;
+                    Exception error = null;
+                    try {
+                        matches = scheduler != null
+                                ? Argon2.verify(passwordArray[index], hashes[index], scheduler)
+                                : Argon2.verify(passwordArray[index], hashes[index]);
+                    } catch (Exception e) {
+                        error = e;
+                    } catch (Error e) {
+                        // for example OutOfMemoryError, the item fails and the error is rethrown after the batch
+                        addFailure(failure, e);
+                        error = new EncryptException(e);
+                    }
+
+                    complete(result, listener, failure, completed, total, index, matches, error);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        for (int i = 1; i < workers; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                // the calling thread works through the remaining items
+                break;
+            }
+        }
+        worker.run();
+        awaitUninterruptibly(done);
+
+        Throwable error = failure.get();
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw (RuntimeException) error;
+        }
+        return result;
+    }
+
+    private static String parameterKey(Argon2Hash hash) {
+        return hash.getType() + "/" + hash.getVersion() + "/" + hash.getMemory() + "/" + hash.getIterations()
+                + "/" + hash.getParallelism() + "/" + hash.getHashLength();
+    }
+
+    private static void complete(Result result, Listener listener, AtomicReference<Throwable> failure,
+                                 AtomicInteger completed, int total, int index, boolean matches, Exception error) {
+        result.matches[index] = matches;
+        result.errors[index] = error;
+
+        int count = completed.incrementAndGet();
+        if (listener != null) {
+            try {
+                if (error != null) {
+                    listener.onFailure(index, error);
+                } else {
+                    listener.onResult(index, matches);
+                }
+            } catch (RuntimeException | Error e) {
+                addFailure(failure, e);
+            }
+
+            try {
+                listener.onProgress(count, total);
+            } catch (RuntimeException | Error e) {
+                addFailure(failure, e);
+            }
+        }
+    }
+
+    /**
+     * Keeps the first failure to rethrow, an error takes precedence over a listener exception.
+     */
+    private static void addFailure(AtomicReference<Throwable> failure, Throwable e) {
+        synchronized (failure) {
+            Throwable first = failure.get();
+            if (first == null) {
+                failure.set(e);
+            } else if (e instanceof Error && !(first instanceof Error)) {
+                e.addSuppressed(first);
+                failure.set(e);
+            } else {
+                first.addSuppressed(e);
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Results of a batch, indexed like the input.
+     */
+    public static class Result {
+        private final boolean[] matches;
+        private final Exception[] errors;
+
+        Result(int size) {
+            this.matches = new boolean[size];
+            this.errors = new Exception[size];
+        }
+
+        /**
+         * Returns the number of items in the batch.
+         */
+        public int size() {
+            return matches.length;
+        }
+
+        /**
+         * Returns true if the password of the item matches its hash.
+         * Failed items never match.
+         */
+        public boolean matches(int index) {
+            return matches[index];
+        }
+
+        /**
+         * Returns true if the item was verified without an error.
+         */
+        public boolean isSuccess(int index) {
+            return errors[index] == null;
+        }
+
+        /**
+         * Returns the error of the item, or null if it was verified.
+         */
+        public Exception getError(int index) {
+            return errors[index];
+        }
+
+        /**
+         * Returns the number of items whose password matches.
+         */
+        public int getMatchCount() {
+            int count = 0;
+            for (boolean match : matches) {
+                if (match) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of items that could not be verified.
+         */
+        public int getFailureCount() {
+            int count = 0;
+            for (Exception error : errors) {
+                if (error != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
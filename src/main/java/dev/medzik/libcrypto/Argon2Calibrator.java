@@ -0,0 +1,362 @@
+package dev.medzik.libcrypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the strongest Argon2 parameters that hash within a latency target on the current machine.
+ * <p>
+ * Following RFC 9106, memory is maximized first: the memory cost is doubled, with one iteration, up to the
+ * memory cap while the measured latency stays within the target, and if a doubling misses the target the
+ * memory cost is bisected between the last one that met it and the first one that didn't, to within
+ * 1/{@value #MEMORY_RESOLUTION} of the passing one. Then iterations are added at the chosen memory cost while
+ * the target is still met. Every configuration is measured after warmup runs, using the
+ * configured percentile of the samples.
+ * <pre>{@code
+ * Argon2Calibrator.Result result = new Argon2Calibrator.Builder()
+ *         .setTargetLatency(250, TimeUnit.MILLISECONDS)
+ *         .setMaxMemory(262144)
+ *         .build()
+ *         .calibrate();
+ * Argon2 argon2 = result.getArgon2();
+ * }</pre>
+ */
+public class Argon2Calibrator {
+    private static final byte[] SALT = Salt.generate(16);
+    private static final int MEMORY_RESOLUTION = 16;
+
+    private final long targetNanos;
+    private final double percentile;
+    private final int minMemory;
+    private final int maxMemory;
+    private final int maxIterations;
+    private final int parallelism;
+    private final int hashLength;
+    private final Argon2Type type;
+    private final int version;
+    private final int warmupRuns;
+    private final int samples;
+    private final Argon2Engine engine;
+
+    public static class Builder {
+        private long targetNanos;
+        private double percentile;
+        private int minMemory;
+        private int maxMemory;
+        private int maxIterations;
+        private int parallelism;
+        private int hashLength;
+        private Argon2Type type;
+        private int version;
+        private int warmupRuns;
+        private int samples;
+        private Argon2Engine engine;
+
+        public Builder() {
+            this.targetNanos = TimeUnit.MILLISECONDS.toNanos(250);
+            this.percentile = 95;
+            this.minMemory = 8192;
+            this.maxMemory = 262144;
+            this.maxIterations = 10;
+            this.parallelism = 1;
+            this.hashLength = 32;
+            this.type = Argon2Type.ID;
+            this.version = 19;
+            this.warmupRuns = 2;
+            this.samples = 5;
+        }
+
+        public Builder setTargetLatency(long latency, TimeUnit unit) {
+            this.targetNanos = unit.toNanos(latency);
+            return this;
+        }
+
+        /**
+         * Sets the percentile of the samples compared with the target, for example 95 for p95.
+         */
+        public Builder setPercentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets the memory cost the search starts with, in KiB.
+         */
+        public Builder setMinMemory(int minMemory) {
+            this.minMemory = minMemory;
+            return this;
+        }
+
+        /**
+         * Sets the maximum memory cost per hash, in KiB.
+         */
+        public Builder setMaxMemory(int maxMemory) {
+            this.maxMemory = maxMemory;
+            return this;
+        }
+
+        public Builder setMaxIterations(int maxIterations) {
+            this.maxIterations = maxIterations;
+            return this;
+        }
+
+        public Builder setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder setHashLength(int hashLength) {
+            this.hashLength = hashLength;
+            return this;
+        }
+
+        public Builder setType(Argon2Type type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder setVersion(int version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the number of unmeasured runs before each configuration is sampled.
+         */
+        public Builder setWarmupRuns(int warmupRuns) {
+            this.warmupRuns = warmupRuns;
+            return this;
+        }
+
+        /**
+         * Sets the number of measured runs per configuration.
+         */
+        public Builder setSamples(int samples) {
+            this.samples = samples;
+            return this;
+        }
+
+        /**
+         * Sets the engine to calibrate, by default password4j is measured.
+         */
+        public Builder setEngine(Argon2Engine engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        public Argon2Calibrator build() {
+            if (targetNanos <= 0) {
+                throw new IllegalArgumentException("Target latency must be positive");
+            }
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            if (minMemory < 8 * parallelism || maxMemory < minMemory) {
+                throw new IllegalArgumentException("Invalid memory range");
+            }
+            if (maxIterations < 1 || samples < 1 || warmupRuns < 0) {
+                throw new IllegalArgumentException("Invalid number of iterations, samples or warmup runs");
+            }
+
+            return new Argon2Calibrator(this);
+        }
+    }
+
+    private Argon2Calibrator(Builder builder) {
+        this.targetNanos = builder.targetNanos;
+        this.percentile = builder.percentile;
+        this.minMemory = builder.minMemory;
+        this.maxMemory = builder.maxMemory;
+        this.maxIterations = builder.maxIterations;
+        this.parallelism = builder.parallelism;
+        this.hashLength = builder.hashLength;
+        this.type = builder.type;
+        this.version = builder.version;
+        this.warmupRuns = builder.warmupRuns;
+        this.samples = builder.samples;
+        this.engine = builder.engine;
+    }
+
+    /**
+     * Runs the calibration.
+     * @return The strongest configuration within the target and all measurements.
+     * @throws IllegalStateException If even the minimum memory cost with one iteration exceeds the target
+     */
+    public Result calibrate() {
+        List<Measurement> measurements = new ArrayList<>();
+        Measurement best = null;
+
+        // maximize memory with a single iteration
+        int memory = minMemory;
+        int failedMemory = 0;
+        while (true) {
+            Measurement measurement = measure(memory, 1);
+            measurements.add(measurement);
+            if (!measurement.meetsTarget()) {
+                failedMemory = memory;
+                break;
+            }
+            best = measurement;
+
+            if (memory == maxMemory) {
+                break;
+            }
+            memory = (int) Math.min((long) memory * 2, maxMemory);
+        }
+
+        if (best == null) {
+            throw new IllegalStateException("No Argon2 configuration meets the latency target, fastest took "
+                    + measurements.get(0).getLatency(TimeUnit.MILLISECONDS) + " ms");
+        }
+
+        // the doubling overshot, bisect between the last passing and the first failing memory cost
+        if (failedMemory != 0) {
+            int passed = best.getMemory();
+            while (failedMemory - passed > Math.max(passed / MEMORY_RESOLUTION, 1)) {
+                memory = passed + (failedMemory - passed) / 2;
+                Measurement measurement = measure(memory, 1);
+                measurements.add(measurement);
+                if (measurement.meetsTarget()) {
+                    best = measurement;
+                    passed = memory;
+                } else {
+                    failedMemory = memory;
+                }
+            }
+        }
+
+        // then add iterations at the chosen memory cost
+        for (int iterations = 2; iterations <= maxIterations; iterations++) {
+            Measurement measurement = measure(best.getMemory(), iterations);
+            measurements.add(measurement);
+            if (!measurement.meetsTarget()) {
+                break;
+            }
+            best = measurement;
+        }
+
+        Argon2 argon2 = new Argon2(hashLength, parallelism, best.getMemory(), best.getIterations(), type, version, engine, null);
+        return new Result(argon2, best, measurements);
+    }
+
+    private Measurement measure(int memory, int iterations) {
+        Argon2 argon2 = new Argon2(hashLength, parallelism, memory, iterations, type, version, engine, null);
+
+        for (int i = 0; i < warmupRuns; i++) {
+            argon2.hash("calibration", SALT);
+        }
+
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            argon2.hash("calibration", SALT);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+
+        // nearest-rank percentile
+        int rank = (int) Math.ceil(percentile / 100 * samples);
+        long latency = times[Math.max(rank, 1) - 1];
+
+        return new Measurement(memory, iterations, parallelism, latency, latency <= targetNanos);
+    }
+
+    /**
+     * A measured Argon2 configuration.
+     */
+    public static class Measurement {
+        private final int memory;
+        private final int iterations;
+        private final int parallelism;
+        private final long latencyNanos;
+        private final boolean meetsTarget;
+
+        Measurement(int memory, int iterations, int parallelism, long latencyNanos, boolean meetsTarget) {
+            this.memory = memory;
+            this.iterations = iterations;
+            this.parallelism = parallelism;
+            this.latencyNanos = latencyNanos;
+            this.meetsTarget = meetsTarget;
+        }
+
+        /**
+         * Returns memory parameter, in KiB.
+         */
+        public int getMemory() {
+            return memory;
+        }
+
+        /**
+         * Returns iterations parameter.
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Returns parallelism parameter.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Returns the measured latency at the configured percentile.
+         */
+        public long getLatency(TimeUnit unit) {
+            return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns true if the latency is within the target.
+         */
+        public boolean meetsTarget() {
+            return meetsTarget;
+        }
+
+        @Override
+        public String toString() {
+            return "m=" + memory + ",t=" + iterations + ",p=" + parallelism + ": "
+                    + TimeUnit.NANOSECONDS.toMicros(latencyNanos) / 1000.0 + " ms";
+        }
+    }
+
+    /**
+     * Result of a calibration.
+     */
+    public static class Result {
+        private final Argon2 argon2;
+        private final Measurement best;
+        private final List<Measurement> measurements;
+
+        Result(Argon2 argon2, Measurement best, List<Measurement> measurements) {
+            this.argon2 = argon2;
+            this.best = best;
+            this.measurements = Collections.unmodifiableList(measurements);
+        }
+
+        /**
+         * Returns an Argon2 instance with the chosen parameters.
+         */
+        public Argon2 getArgon2() {
+            return argon2;
+        }
+
+        /**
+         * Returns the measurement of the chosen parameters.
+         */
+        public Measurement getBest() {
+            return best;
+        }
+
+        /**
+         * Returns all measurements in the order they were taken.
+         */
+        public List<Measurement> getMeasurements() {
+            return measurements;
+        }
+    }
+}
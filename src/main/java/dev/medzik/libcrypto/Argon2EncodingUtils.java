@@ -1,13 +1,26 @@
 package dev.medzik.libcrypto;
 
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Utility class for encoding and decoding Argon2 hashes.
+ * <p>
+ * Hashes are encoded in the PHC string format, for example
+ * {@code $argon2id$v=19$m=65536,t=3,p=1$c29tZXNhbHQ$Zm9vYmFy}, with the salt and hash in unpadded base64.
  */
 public class Argon2EncodingUtils {
-    private static final Base64.Encoder b64encoder = Base64.getEncoder().withoutPadding();
-    private static final Base64.Decoder b64decoder = Base64.getDecoder();
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < BASE64.length; i++) {
+            BASE64_VALUES[BASE64[i]] = (byte) i;
+        }
+    }
+
+    private static final int MAX_PARALLELISM = 0xFFFFFF;
 
     /**
      * Encodes the given hash and parameters to a string.
@@ -15,90 +28,369 @@ public class Argon2EncodingUtils {
      * @return Encoded hash in argon2 format.
      */
     public static String encode(Argon2Hash hash) {
-        StringBuilder stringBuilder = new StringBuilder();
+        // ASCII bytes are stored directly by compact strings, without compressing a char array
+        byte[] bytes = new byte[encodedLength(hash)];
+        encode(hash, null, bytes, 0);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
 
-        switch (hash.getType()) {
-            case D:
-                stringBuilder.append("$argon2d");
-                break;
-            case I:
-                stringBuilder.append("$argon2i");
-                break;
-            case ID:
-                stringBuilder.append("$argon2id");
-                break;
+    /**
+     * Returns the number of characters of the encoded hash.
+     * @param hash hash to encode
+     * @return Length of the encoded hash.
+     */
+    public static int encodedLength(Argon2Hash hash) {
+        int length = typeName(hash.getType()).length() + 1;
+        length += "$v=".length() + decimalLength(hash.getVersion());
+        length += "$m=".length() + decimalLength(hash.getMemory());
+        length += ",t=".length() + decimalLength(hash.getIterations());
+        length += ",p=".length() + decimalLength(hash.getParallelism());
+        if (hash.getSalt() != null) {
+            length += 1 + base64Length(hash.getSalt().length);
         }
+        length += 1 + base64Length(hash.getHash().length);
+        return length;
+    }
 
-        stringBuilder.append("$v=").append(hash.getVersion()).append("$m=").append(hash.getMemory())
-                .append(",t=").append(hash.getIterations()).append(",p=").append(hash.getParallelism());
+    /**
+     * Encodes the given hash into a char array.
+     * @param hash hash to encode
+     * @param output array to write the encoded hash to
+     * @param offset offset in the output array
+     * @return Number of characters written.
+     * @throws IndexOutOfBoundsException If the encoded hash does not fit in the array
+     */
+    public static int encode(Argon2Hash hash, char[] output, int offset) {
+        int length = encodedLength(hash);
+        if (offset < 0 || output.length - offset < length) {
+            throw new IndexOutOfBoundsException("Output array too small, " + length + " characters required");
+        }
+        return encode(hash, output, null, offset);
+    }
 
+    /**
+     * Encodes the given hash into a byte array as ASCII.
+     * @param hash hash to encode
+     * @param output array to write the encoded hash to
+     * @param offset offset in the output array
+     * @return Number of bytes written.
+     * @throws IndexOutOfBoundsException If the encoded hash does not fit in the array
+     */
+    public static int encode(Argon2Hash hash, byte[] output, int offset) {
+        int length = encodedLength(hash);
+        if (offset < 0 || output.length - offset < length) {
+            throw new IndexOutOfBoundsException("Output array too small, " + length + " bytes required");
+        }
+        return encode(hash, null, output, offset);
+    }
+
+    /**
+     * Writes the encoded hash to exactly one of the char or byte arrays.
+     */
+    private static int encode(Argon2Hash hash, char[] chars, byte[] bytes, int offset) {
+        Output out = new Output(chars, bytes, offset);
+        out.put('$');
+        out.put(typeName(hash.getType()));
+        out.put("$v=");
+        out.putDecimal(hash.getVersion());
+        out.put("$m=");
+        out.putDecimal(hash.getMemory());
+        out.put(",t=");
+        out.putDecimal(hash.getIterations());
+        out.put(",p=");
+        out.putDecimal(hash.getParallelism());
         if (hash.getSalt() != null) {
-            stringBuilder.append("$").append(b64encoder.encodeToString(hash.getSalt()));
+            out.put('$');
+            out.putBase64(hash.getSalt());
         }
+        out.put('$');
+        out.putBase64(hash.getHash());
 
-        stringBuilder.append("$").append(b64encoder.encodeToString(hash.getHash()));
-        return stringBuilder.toString();
+        return out.pos - offset;
     }
 
     /**
      * Decodes the given Argon2 encoded hash to a {@link Argon2Hash} object.
      * @param encodedHash encoded hash in argon2 format
      * @return Decoded hash.
+     * @throws IllegalArgumentException If the encoded hash is malformed or its parameters are out of range
      */
     public static Argon2Hash decode(String encodedHash) {
-        String[] parts = encodedHash.split("\\$");
-        if (parts.length < 4) {
-            throw new IllegalArgumentException("Invalid encoded Argon2-hash");
-        }
+        return decode((CharSequence) encodedHash);
+    }
 
-        int currentPart = 1;
+    /**
+     * Decodes the given Argon2 encoded hash to a {@link Argon2Hash} object.
+     * @param encodedHash encoded hash in argon2 format
+     * @return Decoded hash.
+     * @throws IllegalArgumentException If the encoded hash is malformed or its parameters are out of range
+     */
+    public static Argon2Hash decode(CharSequence encodedHash) {
+        Parser parser = new Parser(encodedHash);
+
+        parser.expect("$argon2");
         Argon2Type type;
-        switch (parts[currentPart++]) {
-            case "argon2d":
-                type = Argon2Type.D;
-                break;
-            case "argon2i":
-                type = Argon2Type.I;
-                break;
-            case "argon2id":
-                type = Argon2Type.ID;
-                break;
+        if (parser.consume("id$")) {
+            type = Argon2Type.ID;
+        } else if (parser.consume("i$")) {
+            type = Argon2Type.I;
+        } else if (parser.consume("d$")) {
+            type = Argon2Type.D;
+        } else {
+            throw new IllegalArgumentException("Invalid algorithm type");
+        }
+
+        parser.expect("v=", "Invalid version parameter");
+        int version = parser.decimal('$');
+        if (version != 0x10 && version != 0x13) {
+            throw new IllegalArgumentException("Invalid version parameter: " + version);
+        }
+
+        parser.expect("m=", "Invalid memory parameter");
+        int memory = parser.decimal(',');
+        parser.expect("t=", "Invalid iterations parameter");
+        int iterations = parser.decimal(',');
+        parser.expect("p=", "Invalid parallelity parameter");
+        int parallelism = parser.decimal('$');
+
+        if (parallelism < 1 || parallelism > MAX_PARALLELISM) {
+            throw new IllegalArgumentException("Invalid parallelity parameter: " + parallelism);
+        }
+        if (memory < 8 * parallelism) {
+            throw new IllegalArgumentException("Invalid memory parameter: " + memory);
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Invalid iterations parameter: " + iterations);
+        }
+
+        byte[] salt = parser.base64('$');
+        byte[] hash = parser.base64(-1);
+        if (hash.length < 4) {
+            throw new IllegalArgumentException("Hash must be at least 4 bytes");
+        }
+
+        return new Argon2Hash(type, version, memory, iterations, parallelism, salt, hash);
+    }
+
+    private static String typeName(Argon2Type type) {
+        switch (type) {
+            case D:
+                return "argon2d";
+            case I:
+                return "argon2i";
+            case ID:
+                return "argon2id";
             default:
-                throw new IllegalArgumentException("Invalid algorithm type: " + parts[0]);
+                throw new IllegalStateException("Unexpected value: " + type);
         }
+    }
 
-        int version;
-        if (parts[currentPart].startsWith("v=")) {
-            version = Integer.parseInt(parts[currentPart].substring(2));
-            currentPart++;
-        } else {
-            throw new IllegalArgumentException("Invalid version parameter");
+    private static int decimalLength(int value) {
+        if (value < 0) {
+            return 1 + decimalLength(-(long) value);
         }
+        return decimalLength((long) value);
+    }
+
+    private static int decimalLength(long value) {
+        int length = 1;
+        while (value >= 10) {
+            value /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    private static int base64Length(int length) {
+        return (length * 4 + 2) / 3;
+    }
 
-        String[] performanceParams = parts[currentPart++].split(",");
+    private static final class Output {
+        private final char[] chars;
+        private final byte[] bytes;
+        private int pos;
 
-        if (performanceParams.length != 3) {
-            throw new IllegalArgumentException("Amount of performance parameters invalid");
+        Output(char[] chars, byte[] bytes, int pos) {
+            this.chars = chars;
+            this.bytes = bytes;
+            this.pos = pos;
         }
 
-        if (!performanceParams[0].startsWith("m=")) {
-            throw new IllegalArgumentException("Invalid memory parameter");
+        void put(char c) {
+            if (chars != null) {
+                chars[pos++] = c;
+            } else {
+                bytes[pos++] = (byte) c;
+            }
         }
 
-        int memory = Integer.parseInt(performanceParams[0].substring(2));
-        if (!performanceParams[1].startsWith("t=")) {
-            throw new IllegalArgumentException("Invalid iterations parameter");
+        void put(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
         }
 
-        int iterations = Integer.parseInt(performanceParams[1].substring(2));
-        if (!performanceParams[2].startsWith("p=")) {
-            throw new IllegalArgumentException("Invalid parallelity parameter");
+        void putDecimal(int value) {
+            long v = value;
+            if (v < 0) {
+                put('-');
+                v = -v;
+            }
+
+            // write the digits backwards from the end of the number
+            int end = pos + decimalLength(v);
+            for (int i = end - 1; i >= pos; i--) {
+                char digit = (char) ('0' + v % 10);
+                if (chars != null) {
+                    chars[i] = digit;
+                } else {
+                    bytes[i] = (byte) digit;
+                }
+                v /= 10;
+            }
+            pos = end;
         }
 
-        int parallelism = Integer.parseInt(performanceParams[2].substring(2));
-        byte[] salt = b64decoder.decode(parts[currentPart++]);
-        byte[] hash = b64decoder.decode(parts[currentPart]);
+        void putBase64(byte[] input) {
+            int i = 0;
+            for (; i + 3 <= input.length; i += 3) {
+                int bits = (input[i] & 0xff) << 16 | (input[i + 1] & 0xff) << 8 | (input[i + 2] & 0xff);
+                put(BASE64[bits >>> 18]);
+                put(BASE64[(bits >>> 12) & 0x3f]);
+                put(BASE64[(bits >>> 6) & 0x3f]);
+                put(BASE64[bits & 0x3f]);
+            }
 
-        return new Argon2Hash(type, version, memory, iterations, parallelism, salt, hash);
+            int remaining = input.length - i;
+            if (remaining == 1) {
+                int bits = (input[i] & 0xff) << 16;
+                put(BASE64[bits >>> 18]);
+                put(BASE64[(bits >>> 12) & 0x3f]);
+            } else if (remaining == 2) {
+                int bits = (input[i] & 0xff) << 16 | (input[i + 1] & 0xff) << 8;
+                put(BASE64[bits >>> 18]);
+                put(BASE64[(bits >>> 12) & 0x3f]);
+                put(BASE64[(bits >>> 6) & 0x3f]);
+            }
+        }
+    }
+
+    /**
+     * Single-pass parser over the encoded hash.
+     */
+    private static final class Parser {
+        private final CharSequence input;
+        private int pos;
+
+        Parser(CharSequence input) {
+            this.input = input;
+        }
+
+        boolean consume(String expected) {
+            int length = expected.length();
+            if (input.length() - pos < length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (input.charAt(pos + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            pos += length;
+            return true;
+        }
+
+        void expect(String expected) {
+            expect(expected, "Invalid encoded Argon2-hash");
+        }
+
+        void expect(String expected, String message) {
+            if (!consume(expected)) {
+                throw new IllegalArgumentException(message);
+            }
+        }
+
+        /**
+         * Parses a non-negative decimal without leading zeros followed by the terminator.
+         */
+        int decimal(char terminator) {
+            int start = pos;
+            long value = 0;
+            while (pos < input.length() && input.charAt(pos) != terminator) {
+                char c = input.charAt(pos);
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid number in encoded Argon2-hash");
+                }
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Number out of range in encoded Argon2-hash");
+                }
+                pos++;
+            }
+
+            int length = pos - start;
+            if (length == 0 || (length > 1 && input.charAt(start) == '0')) {
+                throw new IllegalArgumentException("Invalid number in encoded Argon2-hash");
+            }
+            if (pos == input.length()) {
+                throw new IllegalArgumentException("Invalid encoded Argon2-hash");
+            }
+
+            // skip the terminator
+            pos++;
+            return (int) value;
+        }
+
+        /**
+         * Decodes base64 (padding is tolerated) up to the terminator, or to the end if the terminator is -1.
+         */
+        byte[] base64(int terminator) {
+            int start = pos;
+            int end = start;
+            while (end < input.length() && input.charAt(end) != terminator) {
+                end++;
+            }
+            if (terminator != -1) {
+                if (end == input.length()) {
+                    throw new IllegalArgumentException("Invalid encoded Argon2-hash");
+                }
+                pos = end + 1;
+            } else {
+                pos = end;
+            }
+
+            int dataEnd = end;
+            if ((end - start) % 4 == 0) {
+                for (int i = 0; i < 2 && dataEnd > start && input.charAt(dataEnd - 1) == '='; i++) {
+                    dataEnd--;
+                }
+            }
+
+            int length = dataEnd - start;
+            if (length % 4 == 1) {
+                throw new IllegalArgumentException("Invalid base64 length in encoded Argon2-hash");
+            }
+
+            byte[] output = new byte[length * 3 / 4];
+            int bits = 0;
+            int bitCount = 0;
+            int o = 0;
+            for (int i = start; i < dataEnd; i++) {
+                char c = input.charAt(i);
+                int value = c < 128 ? BASE64_VALUES[c] : -1;
+                if (value < 0) {
+                    throw new IllegalArgumentException("Invalid base64 character in encoded Argon2-hash");
+                }
+
+                bits = bits << 6 | value;
+                bitCount += 6;
+                if (bitCount >= 8) {
+                    bitCount -= 8;
+                    output[o++] = (byte) (bits >>> bitCount);
+                }
+            }
+
+            return output;
+        }
     }
 }
@@ -0,0 +1,500 @@
+package dev.medzik.libcrypto;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pure-Java Argon2 implementation (RFC 9106).
+ * <p>
+ * The lanes of a hash with {@code parallelism} greater than 1 are filled concurrently on the configured
+ * executor, with the calling thread taking part in filling them. The block matrix
+ * is taken from a pool of reusable arrays and wiped before it is returned to the pool, so repeated hashes
+ * with the same memory cost do not allocate a new matrix every time.
+ * <p>
+ * Select it for an {@link Argon2} instance with {@link Argon2.Builder#setEngine(Argon2Engine)}.
+ * An engine is safe to share between threads.
+ */
+public class Argon2Engine {
+    private static final int BLOCK_SIZE = 1024;
+    private static final int QWORDS_IN_BLOCK = BLOCK_SIZE / 8;
+    private static final int ADDRESSES_IN_BLOCK = 128;
+    private static final int SYNC_POINTS = 4;
+    private static final int PREHASH_DIGEST_LENGTH = 64;
+    private static final int PREHASH_SEED_LENGTH = 72;
+
+    private static final int VERSION_10 = 0x10;
+    private static final int VERSION_13 = 0x13;
+
+    private final Executor executor;
+    private final int maxPooledMatrices;
+    private final Map<Integer, Queue<long[]>> pool = new ConcurrentHashMap<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Creates a new engine that fills lanes on the common {@link ForkJoinPool} and keeps up to
+     * 4 block matrices for reuse.
+     */
+    public Argon2Engine() {
+        this(ForkJoinPool.commonPool(), 4);
+    }
+
+    /**
+     * Creates a new engine.
+     * @param executor executor to fill lanes on, the calling thread fills lanes as well
+     * @param maxPooledMatrices maximum number of block matrices kept for reuse, 0 disables pooling
+     */
+    public Argon2Engine(Executor executor, int maxPooledMatrices) {
+        this.executor = executor;
+        this.maxPooledMatrices = maxPooledMatrices;
+    }
+
+    /**
+     * Computes an Argon2 hash.
+     * @param type Argon2 type
+     * @param version Argon2 version (16 or 19)
+     * @param memory amount of memory to use, in KiB
+     * @param iterations number of iterations
+     * @param parallelism number of lanes
+     * @param hashLength length of the hash in bytes
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Raw hash.
+     */
+    public byte[] hash(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength,
+                       byte[] password, byte[] salt) {
+        return hash(type, version, memory, iterations, parallelism, hashLength, password, salt, new byte[0], new byte[0]);
+    }
+
+    /**
+     * Computes an Argon2 hash with a secret key and associated data.
+     * @param type Argon2 type
+     * @param version Argon2 version (16 or 19)
+     * @param memory amount of memory to use, in KiB
+     * @param iterations number of iterations
+     * @param parallelism number of lanes
+     * @param hashLength length of the hash in bytes
+     * @param password password to hash
+     * @param salt salt to use
+     * @param secret secret key (may be empty)
+     * @param associatedData associated data (may be empty)
+     * @return Raw hash.
+     */
+    public byte[] hash(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength,
+                       byte[] password, byte[] salt, byte[] secret, byte[] associatedData) {
+        if (version != VERSION_10 && version != VERSION_13) {
+            throw new IllegalArgumentException("Invalid version parameter: " + version);
+        }
+        if (parallelism < 1 || parallelism > 0xFFFFFF) {
+            throw new IllegalArgumentException("Invalid parallelism parameter: " + parallelism);
+        }
+        if (memory < 8 * parallelism) {
+            throw new IllegalArgumentException("Memory must be at least 8 KiB per lane");
+        }
+        if (memory > Integer.MAX_VALUE / QWORDS_IN_BLOCK) {
+            // the matrix is a single long array
+            throw new IllegalArgumentException("Memory must be less than 16 GiB");
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Invalid iterations parameter: " + iterations);
+        }
+        if (hashLength < 4) {
+            throw new IllegalArgumentException("Hash length must be at least 4 bytes");
+        }
+        if (salt.length < 8) {
+            throw new IllegalArgumentException("Salt must be at least 8 bytes");
+        }
+
+        Instance instance = new Instance(type, version, memory, iterations, parallelism);
+        long[] blocks = acquire(instance.blockCount * QWORDS_IN_BLOCK);
+        try {
+            instance.memory = blocks;
+            instance.initialize(initialHash(type, version, memory, iterations, parallelism, hashLength, password, salt, secret, associatedData));
+            fill(instance);
+            return instance.finish(hashLength);
+        } finally {
+            release(blocks);
+        }
+    }
+
+    private void fill(final Instance instance) {
+        for (int pass = 0; pass < instance.iterations; pass++) {
+            for (int slice = 0; slice < SYNC_POINTS; slice++) {
+                if (instance.lanes == 1) {
+                    instance.fillSegment(pass, 0, slice);
+                    continue;
+                }
+
+                final int currentPass = pass;
+                final int currentSlice = slice;
+                final AtomicInteger nextLane = new AtomicInteger();
+                final CountDownLatch done = new CountDownLatch(instance.lanes);
+                final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+                // lanes are claimed from a shared counter, so the calling thread fills every lane the executor
+                // has not started yet and a busy (or nested) executor can't stall the hash
+                Runnable worker = () -> {
+                    int lane;
+                    while ((lane = nextLane.getAndIncrement()) < instance.lanes) {
+                        try {
+                            instance.fillSegment(currentPass, lane, currentSlice);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                };
+
+                for (int i = 1; i < instance.lanes; i++) {
+                    try {
+                        executor.execute(worker);
+                    } catch (RejectedExecutionException e) {
+                        // the calling thread fills the remaining lanes, the lanes already started must finish
+                        // before the matrix is released
+                        break;
+                    }
+                }
+                worker.run();
+                awaitUninterruptibly(done);
+
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Filling Argon2 lane failed", failure.get());
+                }
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                // the lanes still write into the matrix, it can't be released before they finish
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long[] acquire(int length) {
+        Queue<long[]> queue = pool.get(length);
+        if (queue != null) {
+            long[] blocks = queue.poll();
+            if (blocks != null) {
+                pooled.decrementAndGet();
+                return blocks;
+            }
+        }
+        return new long[length];
+    }
+
+    private void release(long[] blocks) {
+        // wipe the password-dependent state before the matrix is reused or collected
+        Arrays.fill(blocks, 0);
+
+        if (pooled.incrementAndGet() > maxPooledMatrices) {
+            pooled.decrementAndGet();
+            return;
+        }
+        pool.computeIfAbsent(blocks.length, length -> new ConcurrentLinkedQueue<>()).offer(blocks);
+    }
+
+    private static byte[] initialHash(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength,
+                                      byte[] password, byte[] salt, byte[] secret, byte[] associatedData) {
+        Blake2b blake2b = new Blake2b(PREHASH_DIGEST_LENGTH);
+        blake2b.updateInt(parallelism).updateInt(hashLength).updateInt(memory).updateInt(iterations)
+                .updateInt(version).updateInt(typeId(type))
+                .updateInt(password.length).update(password)
+                .updateInt(salt.length).update(salt)
+                .updateInt(secret.length).update(secret)
+                .updateInt(associatedData.length).update(associatedData);
+
+        byte[] seed = new byte[PREHASH_SEED_LENGTH];
+        blake2b.digest(seed, 0);
+        return seed;
+    }
+
+    private static int typeId(Argon2Type type) {
+        switch (type) {
+            case D:
+                return 0;
+            case I:
+                return 1;
+            case ID:
+                return 2;
+            default:
+                throw new IllegalStateException("Unexpected value: " + type);
+        }
+    }
+
+    /**
+     * Variable-length hash function H' from RFC 9106.
+     */
+    static void variableHash(byte[] input, byte[] output, int outputLength) {
+        if (outputLength <= Blake2b.MAX_OUTPUT_LENGTH) {
+            new Blake2b(outputLength).updateInt(outputLength).update(input).digest(output, 0);
+            return;
+        }
+
+        int r = (outputLength + 31) / 32 - 2;
+        byte[] v = new byte[Blake2b.MAX_OUTPUT_LENGTH];
+
+        Blake2b blake2b = new Blake2b(Blake2b.MAX_OUTPUT_LENGTH);
+        blake2b.updateInt(outputLength).update(input).digest(v, 0);
+        System.arraycopy(v, 0, output, 0, 32);
+
+        for (int i = 1; i < r; i++) {
+            blake2b.update(v).digest(v, 0);
+            System.arraycopy(v, 0, output, i * 32, 32);
+        }
+
+        new Blake2b(outputLength - 32 * r).update(v).digest(output, 32 * r);
+    }
+
+    private static class Instance {
+        final Argon2Type type;
+        final int version;
+        final int iterations;
+        final int lanes;
+        final int blockCount;
+        final int laneLength;
+        final int segmentLength;
+        long[] memory;
+
+        Instance(Argon2Type type, int version, int memory, int iterations, int lanes) {
+            this.type = type;
+            this.version = version;
+            this.iterations = iterations;
+            this.lanes = lanes;
+
+            // round memory down to a multiple of 4 blocks per lane
+            this.segmentLength = memory / (lanes * SYNC_POINTS);
+            this.laneLength = segmentLength * SYNC_POINTS;
+            this.blockCount = laneLength * lanes;
+        }
+
+        void initialize(byte[] seed) {
+            byte[] block = new byte[BLOCK_SIZE];
+            for (int lane = 0; lane < lanes; lane++) {
+                int offset = PREHASH_DIGEST_LENGTH;
+                seed[offset + 4] = (byte) lane;
+                seed[offset + 5] = (byte) (lane >>> 8);
+                seed[offset + 6] = (byte) (lane >>> 16);
+                seed[offset + 7] = (byte) (lane >>> 24);
+
+                for (int column = 0; column < 2; column++) {
+                    seed[offset] = (byte) column;
+                    variableHash(seed, block, BLOCK_SIZE);
+
+                    int base = (lane * laneLength + column) * QWORDS_IN_BLOCK;
+                    for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+                        memory[base + i] = Blake2b.littleEndianLong(block, i * 8);
+                    }
+                }
+            }
+
+            Arrays.fill(seed, (byte) 0);
+            Arrays.fill(block, (byte) 0);
+        }
+
+        byte[] finish(int hashLength) {
+            // XOR the last block of every lane
+            long[] last = new long[QWORDS_IN_BLOCK];
+            for (int lane = 0; lane < lanes; lane++) {
+                int base = (lane * laneLength + laneLength - 1) * QWORDS_IN_BLOCK;
+                for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+                    last[i] ^= memory[base + i];
+                }
+            }
+
+            byte[] block = new byte[BLOCK_SIZE];
+            for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+                for (int j = 0; j < 8; j++) {
+                    block[i * 8 + j] = (byte) (last[i] >>> (8 * j));
+                }
+            }
+
+            byte[] hash = new byte[hashLength];
+            variableHash(block, hash, hashLength);
+            Arrays.fill(block, (byte) 0);
+            return hash;
+        }
+
+        void fillSegment(int pass, int lane, int slice) {
+            boolean dataIndependent = type == Argon2Type.I
+                    || (type == Argon2Type.ID && pass == 0 && slice < SYNC_POINTS / 2);
+
+            long[] r = new long[QWORDS_IN_BLOCK];
+            long[] z = new long[QWORDS_IN_BLOCK];
+            long[] address = null;
+            long[] input = null;
+            long[] zero = null;
+
+            int startIndex = 0;
+            if (pass == 0 && slice == 0) {
+                // the first two blocks of every lane are already initialized
+                startIndex = 2;
+            }
+
+            if (dataIndependent) {
+                address = new long[QWORDS_IN_BLOCK];
+                input = new long[QWORDS_IN_BLOCK];
+                zero = new long[QWORDS_IN_BLOCK];
+
+                input[0] = pass;
+                input[1] = lane;
+                input[2] = slice;
+                input[3] = blockCount;
+                input[4] = iterations;
+                input[5] = typeId(type);
+
+                if (startIndex != 0) {
+                    nextAddresses(input, address, zero, r, z);
+                }
+            }
+
+            int currentOffset = lane * laneLength + slice * segmentLength + startIndex;
+            int previousOffset = currentOffset % laneLength == 0 ? currentOffset + laneLength - 1 : currentOffset - 1;
+
+            for (int index = startIndex; index < segmentLength; index++, currentOffset++, previousOffset++) {
+                if (currentOffset % laneLength == 1) {
+                    previousOffset = currentOffset - 1;
+                }
+
+                long pseudoRandom;
+                if (dataIndependent) {
+                    if (index % ADDRESSES_IN_BLOCK == 0) {
+                        nextAddresses(input, address, zero, r, z);
+                    }
+                    pseudoRandom = address[index % ADDRESSES_IN_BLOCK];
+                } else {
+                    pseudoRandom = memory[previousOffset * QWORDS_IN_BLOCK];
+                }
+
+                int referenceLane = (int) ((pseudoRandom >>> 32) % lanes);
+                if (pass == 0 && slice == 0) {
+                    referenceLane = lane;
+                }
+
+                int referenceIndex = indexAlpha(pass, slice, index, pseudoRandom & 0xFFFFFFFFL, referenceLane == lane);
+                int referenceOffset = referenceLane * laneLength + referenceIndex;
+
+                boolean withXor = version != VERSION_10 && pass != 0;
+                fillBlock(memory, previousOffset * QWORDS_IN_BLOCK, memory, referenceOffset * QWORDS_IN_BLOCK,
+                        memory, currentOffset * QWORDS_IN_BLOCK, withXor, r, z);
+            }
+        }
+
+        private int indexAlpha(int pass, int slice, int index, long pseudoRandom, boolean sameLane) {
+            long referenceAreaSize;
+            if (pass == 0) {
+                if (slice == 0) {
+                    referenceAreaSize = index - 1;
+                } else if (sameLane) {
+                    referenceAreaSize = (long) slice * segmentLength + index - 1;
+                } else {
+                    referenceAreaSize = (long) slice * segmentLength + (index == 0 ? -1 : 0);
+                }
+            } else {
+                if (sameLane) {
+                    referenceAreaSize = laneLength - segmentLength + index - 1;
+                } else {
+                    referenceAreaSize = laneLength - segmentLength + (index == 0 ? -1 : 0);
+                }
+            }
+
+            long relativePosition = (pseudoRandom * pseudoRandom) >>> 32;
+            relativePosition = referenceAreaSize - 1 - ((referenceAreaSize * relativePosition) >>> 32);
+
+            long startPosition = 0;
+            if (pass != 0 && slice != SYNC_POINTS - 1) {
+                startPosition = (long) (slice + 1) * segmentLength;
+            }
+
+            return (int) ((startPosition + relativePosition) % laneLength);
+        }
+
+        private static void nextAddresses(long[] input, long[] address, long[] zero, long[] r, long[] z) {
+            input[6]++;
+            fillBlock(zero, 0, input, 0, address, 0, false, r, z);
+            fillBlock(zero, 0, address, 0, address, 0, false, r, z);
+        }
+    }
+
+    /**
+     * Compression function G: next = P(prev XOR ref) XOR prev XOR ref, optionally XORed into the old block.
+     */
+    private static void fillBlock(long[] previous, int previousOffset, long[] reference, int referenceOffset,
+                                  long[] next, int nextOffset, boolean withXor, long[] r, long[] z) {
+        for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+            r[i] = previous[previousOffset + i] ^ reference[referenceOffset + i];
+        }
+
+        if (withXor) {
+            for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+                z[i] = r[i] ^ next[nextOffset + i];
+            }
+        } else {
+            System.arraycopy(r, 0, z, 0, QWORDS_IN_BLOCK);
+        }
+
+        // apply the BLAKE2b round to each row of 16 words, then to each column of 8 pairs of words
+        for (int i = 0; i < 8; i++) {
+            int o = 16 * i;
+            round(r, o, o + 1, o + 2, o + 3, o + 4, o + 5, o + 6, o + 7,
+                    o + 8, o + 9, o + 10, o + 11, o + 12, o + 13, o + 14, o + 15);
+        }
+        for (int i = 0; i < 8; i++) {
+            int o = 2 * i;
+            round(r, o, o + 1, o + 16, o + 17, o + 32, o + 33, o + 48, o + 49,
+                    o + 64, o + 65, o + 80, o + 81, o + 96, o + 97, o + 112, o + 113);
+        }
+
+        for (int i = 0; i < QWORDS_IN_BLOCK; i++) {
+            next[nextOffset + i] = z[i] ^ r[i];
+        }
+    }
+
+    private static void round(long[] v, int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7,
+                              int v8, int v9, int v10, int v11, int v12, int v13, int v14, int v15) {
+        g(v, v0, v4, v8, v12);
+        g(v, v1, v5, v9, v13);
+        g(v, v2, v6, v10, v14);
+        g(v, v3, v7, v11, v15);
+        g(v, v0, v5, v10, v15);
+        g(v, v1, v6, v11, v12);
+        g(v, v2, v7, v8, v13);
+        g(v, v3, v4, v9, v14);
+    }
+
+    private static void g(long[] v, int a, int b, int c, int d) {
+        long va = v[a], vb = v[b], vc = v[c], vd = v[d];
+
+        va = va + vb + 2 * (va & 0xFFFFFFFFL) * (vb & 0xFFFFFFFFL);
+        vd = Long.rotateRight(vd ^ va, 32);
+        vc = vc + vd + 2 * (vc & 0xFFFFFFFFL) * (vd & 0xFFFFFFFFL);
+        vb = Long.rotateRight(vb ^ vc, 24);
+        va = va + vb + 2 * (va & 0xFFFFFFFFL) * (vb & 0xFFFFFFFFL);
+        vd = Long.rotateRight(vd ^ va, 16);
+        vc = vc + vd + 2 * (vc & 0xFFFFFFFFL) * (vd & 0xFFFFFFFFL);
+        vb = Long.rotateRight(vb ^ vc, 63);
+
+        v[a] = va;
+        v[b] = vb;
+        v[c] = vc;
+        v[d] = vd;
+    }
+}
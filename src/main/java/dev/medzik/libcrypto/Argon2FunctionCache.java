@@ -0,0 +1,202 @@
+package dev.medzik.libcrypto;
+
+import com.password4j.Argon2Function;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of password4j {@link Argon2Function} instances, keyed by the Argon2 parameters.
+ * <p>
+ * Used by {@link Argon2#verify(CharSequence, String)} so hashes sharing parameters reuse the same function.
+ * When the cache is full, an arbitrary entry is evicted to make room for the new one.
+ * <p>
+ * Every function holds a block matrix of its memory cost. {@link Argon2Function#getInstance} keeps every
+ * instance in an unbounded static map of password4j, so the functions are created with its package-private
+ * constructor instead, and evicted ones can be collected. If that constructor can't be accessed, for example
+ * with a different password4j version, {@code getInstance} is used and the bound only limits this cache.
+ */
+public class Argon2FunctionCache {
+    /**
+     * Default maximum number of cached functions.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final Argon2FunctionCache SHARED = new Argon2FunctionCache(DEFAULT_MAX_SIZE);
+    private static final Constructor<Argon2Function> CONSTRUCTOR = findConstructor();
+
+    private final int maxSize;
+    private final Map<Key, Argon2Function> functions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     * @param maxSize maximum number of cached functions
+     */
+    public Argon2FunctionCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cache shared by {@link Argon2}.
+     */
+    public static Argon2FunctionCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the function for the given parameters, creating it if it isn't cached.
+     * @param type Argon2 type
+     * @param version Argon2 version
+     * @param memory amount of memory, in KiB
+     * @param iterations number of iterations
+     * @param parallelism number of lanes
+     * @param hashLength length of the hash in bytes
+     * @return Argon2 function.
+     */
+    public Argon2Function get(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength) {
+        Key key = new Key(type, version, memory, iterations, parallelism, hashLength);
+
+        Argon2Function function = functions.get(key);
+        if (function != null) {
+            hits.increment();
+            return function;
+        }
+
+        misses.increment();
+        function = newFunction(type, version, memory, iterations, parallelism, hashLength);
+
+        // make room for the new entry
+        while (functions.size() >= maxSize) {
+            Iterator<Key> iterator = functions.keySet().iterator();
+            if (!iterator.hasNext()) {
+                break;
+            }
+            iterator.next();
+            iterator.remove();
+        }
+
+        Argon2Function previous = functions.putIfAbsent(key, function);
+        return previous != null ? previous : function;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached function.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to create a new function.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of cached functions.
+     */
+    public int size() {
+        return functions.size();
+    }
+
+    /**
+     * Returns the maximum number of cached functions.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes all cached functions and resets the counters.
+     */
+    public void clear() {
+        functions.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Creates a function that isn't kept in password4j's static instance map, if possible.
+     */
+    static Argon2Function newFunction(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength) {
+        if (CONSTRUCTOR != null) {
+            try {
+                return CONSTRUCTOR.newInstance(memory, iterations, parallelism, hashLength, type.toPassword4jType(), version);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (ReflectiveOperationException e) {
+                // fall back to getInstance
+            }
+        }
+        return Argon2Function.getInstance(memory, iterations, parallelism, hashLength, type.toPassword4jType(), version);
+    }
+
+    private static Constructor<Argon2Function> findConstructor() {
+        try {
+            Constructor<Argon2Function> constructor = Argon2Function.class.getDeclaredConstructor(
+                    int.class, int.class, int.class, int.class, com.password4j.types.Argon2.class, int.class);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not accessible, e.g. another password4j version or a module that isn't open
+            return null;
+        }
+    }
+
+    private static final class Key {
+        private final Argon2Type type;
+        private final int version;
+        private final int memory;
+        private final int iterations;
+        private final int parallelism;
+        private final int hashLength;
+
+        Key(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength) {
+            this.type = type;
+            this.version = version;
+            this.memory = memory;
+            this.iterations = iterations;
+            this.parallelism = parallelism;
+            this.hashLength = hashLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return type == key.type && version == key.version && memory == key.memory
+                    && iterations == key.iterations && parallelism == key.parallelism && hashLength == key.hashLength;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + version;
+            result = 31 * result + memory;
+            result = 31 * result + iterations;
+            result = 31 * result + parallelism;
+            result = 31 * result + hashLength;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dev.medzik.libcrypto;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for Argon2 jobs, bounding the total memory used by concurrent hashes.
+ * <p>
+ * Every job claims its memory cost from a fixed budget before it runs and returns it when it finishes.
+ * Jobs that don't fit wait in a first-come-first-served queue for up to the configured timeout and are
+ * rejected with {@link RejectedExecutionException} when it expires.
+ * <p>
+ * Use it with {@link Argon2.Builder#setScheduler(Argon2Scheduler)} and
+ * {@link Argon2#verify(CharSequence, String, Argon2Scheduler)}.
+ */
+public class Argon2Scheduler {
+    private final int memoryBudget;
+    private final long timeoutNanos;
+    private final Semaphore memory;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder admittedWaitNanos = new LongAdder();
+
+    /**
+     * Creates a new scheduler.
+     * @param memoryBudget total memory that running jobs may use, in KiB
+     * @param timeout maximum time a job waits for memory
+     * @param unit unit of the timeout
+     */
+    public Argon2Scheduler(int memoryBudget, long timeout, TimeUnit unit) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+
+        this.memoryBudget = memoryBudget;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.memory = new Semaphore(memoryBudget, true);
+    }
+
+    /**
+     * Runs a job once its memory can be admitted.
+     * @param memoryCost memory used by the job, in KiB
+     * @param job job to run on the calling thread
+     * @return Result of the job.
+     * @throws RejectedExecutionException If the job doesn't fit in the budget, the timeout expires or the thread is interrupted while waiting
+     */
+    public <T> T run(int memoryCost, Supplier<T> job) {
+        if (memoryCost < 1) {
+            throw new IllegalArgumentException("Memory cost must be positive");
+        }
+        if (memoryCost > memoryBudget) {
+            rejected.increment();
+            throw new RejectedExecutionException("Job needs " + memoryCost + " KiB, more than the budget of " + memoryBudget + " KiB");
+        }
+
+        acquire(memoryCost);
+        try {
+            return job.get();
+        } finally {
+            memory.release(memoryCost);
+        }
+    }
+
+    private void acquire(int memoryCost) {
+        // a zero timeout still respects fairness, unlike tryAcquire(int)
+        try {
+            if (memory.tryAcquire(memoryCost, 0, TimeUnit.NANOSECONDS)) {
+                admitted.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new RejectedExecutionException("Interrupted while waiting for Argon2 memory", e);
+        }
+
+        // only jobs that have to wait are queued
+        long start = System.nanoTime();
+        long waited;
+        queueDepth.incrementAndGet();
+        try {
+            if (!memory.tryAcquire(memoryCost, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                throw new RejectedExecutionException("Timed out waiting for " + memoryCost + " KiB of Argon2 memory");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new RejectedExecutionException("Interrupted while waiting for Argon2 memory", e);
+        } finally {
+            queueDepth.decrementAndGet();
+            waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+        }
+
+        admittedWaitNanos.add(waited);
+        admitted.increment();
+    }
+
+    /**
+     * Returns the total memory budget, in KiB.
+     */
+    public int getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the memory currently claimed by running jobs, in KiB.
+     */
+    public int getMemoryInUse() {
+        return memoryBudget - memory.availablePermits();
+    }
+
+    /**
+     * Returns the number of jobs currently waiting for memory, not counting jobs that were admitted immediately.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of jobs that were admitted.
+     */
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * Returns the number of jobs that were rejected.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the total time jobs spent waiting for memory, including jobs that timed out.
+     */
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(waitNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the average time an admitted job spent waiting for memory, jobs admitted immediately count as
+     * no wait. Rejected jobs are not included.
+     */
+    public long getAverageWaitTime(TimeUnit unit) {
+        long jobs = admitted.sum();
+        if (jobs == 0) {
+            return 0;
+        }
+        return unit.convert(admittedWaitNanos.sum() / jobs, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.medzik.libcrypto;
+
+import java.util.Arrays;
+
+/**
+ * Result of a batch operation, such as {@link AesContext#encryptBatch(byte[][])} or
+ * {@link RsaDecryptor#decryptBatch(byte[][])}. The outputs of all items are packed into one array; every item has its
+ * own offset and length in it. Items that failed have no output and carry their own error, so a single bad
+ * item does not abort the batch.
+ */
+public class BatchResult {
+    private final byte[] data;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final EncryptException[] errors;
+
+    BatchResult(byte[] data, int[] offsets, int[] lengths, EncryptException[] errors) {
+        this.data = data;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.errors = errors;
+    }
+
+    /**
+     * Returns the number of items in the batch.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the array all outputs are packed into. Use {@link #getOffset(int)} and {@link #getLength(int)}
+     * to locate the output of an item.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the offset of the output of the given item in {@link #getData()}.
+     */
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Returns the length of the output of the given item, or 0 if the item failed.
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Returns true if the given item was processed successfully.
+     */
+    public boolean isSuccess(int index) {
+        return errors[index] == null;
+    }
+
+    /**
+     * Returns the error of the given item, or null if it was processed successfully.
+     */
+    public EncryptException getError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * Returns the number of items that failed.
+     */
+    public int getFailureCount() {
+        int count = 0;
+        for (EncryptException error : errors) {
+            if (error != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy of the output of the given item.
+     * @param index index of the item
+     * @return Output of the item.
+     * @throws EncryptException The error of the item, if it failed.
+     */
+    public byte[] get(int index) throws EncryptException {
+        if (errors[index] != null) {
+            throw errors[index];
+        }
+        return Arrays.copyOfRange(data, offsets[index], offsets[index] + lengths[index]);
+    }
+}
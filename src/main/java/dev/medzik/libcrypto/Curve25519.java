@@ -2,33 +2,115 @@ package dev.medzik.libcrypto;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
+
+import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * Curve25519 implementation.
+ * <p>
+ * The hex methods are kept for compatibility. The {@code byte[]} and {@link ByteBuffer} methods, and
+ * {@link Curve25519PrivateKey} for keys used more than once, work on raw 32-byte keys without hex encoding.
+ * <p>
+ * The scalar multiplication is done by the x25519 dependency by default, or by the pure-Java implementation
+ * of this library once selected with {@link #setImplementation(Implementation)}.
  */
 public class Curve25519 {
+    /**
+     * Length of private keys, public keys and shared secrets in bytes.
+     */
+    public static final int KEY_LENGTH = 32;
+
+    private static volatile Implementation implementation = Implementation.DEPENDENCY;
+
+    /**
+     * Implementations of the X25519 function.
+     */
+    public enum Implementation {
+        /**
+         * The {@code com.github.netricecake:x25519} dependency. It does not ignore the most significant bit
+         * of public keys, so it differs from RFC 7748 for public keys with that bit set.
+         */
+        DEPENDENCY,
+        /**
+         * The pure-Java implementation of this library, following RFC 7748, which is faster and computes
+         * shared secrets directly into the output without intermediate arrays.
+         */
+        BUILT_IN
+    }
+
+    /**
+     * Selects the implementation used by all methods of this class and {@link Curve25519PrivateKey}.
+     * @param implementation implementation to use
+     */
+    public static void setImplementation(Implementation implementation) {
+        if (implementation == null) {
+            throw new NullPointerException("implementation");
+        }
+        Curve25519.implementation = implementation;
+    }
+
+    /**
+     * Returns the selected implementation.
+     */
+    public static Implementation getImplementation() {
+        return implementation;
+    }
+
     /**
      * Generate a new X25519 key pair.
      * @return X25519 key pair.
      */
     public static Curve25519KeyPair generateKeyPair() {
         byte[] privateKey = com.github.netricecake.ecdh.Curve25519.generateRandomKey();
-        byte[] publicKey = com.github.netricecake.ecdh.Curve25519.publicKey(privateKey);
+        byte[] publicKey = publicKey(privateKey);
 
         return new Curve25519KeyPair(publicKey, privateKey);
     }
 
+    /**
+     * Generate a new X25519 private key.
+     * @return X25519 private key.
+     */
+    public static Curve25519PrivateKey generatePrivateKey() {
+        return new Curve25519PrivateKey(com.github.netricecake.ecdh.Curve25519.generateRandomKey(), null);
+    }
+
     /**
      * Return a X25519 key pair from a private key.
      * @param privateKey private key to recover (hex encoded)
      * @return X25519 key pair.
      */
     public static Curve25519KeyPair fromPrivateKey(String privateKey) throws DecoderException, InvalidParameterException {
-        byte[] privateKeyBytes = Hex.decodeHex(privateKey);
-        byte[] publicKeyBytes = com.github.netricecake.ecdh.Curve25519.publicKey(privateKeyBytes);
+        return fromPrivateKey(Hex.decodeHex(privateKey));
+    }
 
-        return new Curve25519KeyPair(publicKeyBytes, privateKeyBytes);
+    /**
+     * Return a X25519 key pair from a private key.
+     * @param privateKey private key to recover (32 bytes)
+     * @return X25519 key pair.
+     * @throws InvalidParameterException If the private key is not 32 bytes.
+     */
+    public static Curve25519KeyPair fromPrivateKey(byte[] privateKey) throws InvalidParameterException {
+        return new Curve25519KeyPair(publicKey(privateKey), privateKey.clone());
+    }
+
+    /**
+     * Compute the public key of a private key.
+     * @param privateKey private key (32 bytes)
+     * @return Public key (32 bytes).
+     * @throws InvalidParameterException If the private key is not 32 bytes.
+     */
+    public static byte[] publicKey(byte[] privateKey) throws InvalidParameterException {
+        checkLength(privateKey, "Private key");
+        if (implementation == Implementation.BUILT_IN) {
+            byte[] publicKey = new byte[KEY_LENGTH];
+            X25519.scalarMultBase(privateKey, publicKey, 0);
+            return publicKey;
+        }
+        return com.github.netricecake.ecdh.Curve25519.publicKey(privateKey);
     }
 
     /**
@@ -38,11 +120,142 @@ public class Curve25519 {
      * @return Shared secret.
      */
     public static String computeSharedSecret(String ourPrivate, String theirPublic) throws DecoderException {
-        byte[] outPrivateBytes = Hex.decodeHex(ourPrivate);
+        byte[] ourPrivateBytes = Hex.decodeHex(ourPrivate);
         byte[] theirPublicBytes = Hex.decodeHex(theirPublic);
 
-        byte[] sharedSecret = com.github.netricecake.ecdh.Curve25519.sharedSecret(outPrivateBytes, theirPublicBytes);
+        byte[] sharedSecret = computeSharedSecret(ourPrivateBytes, theirPublicBytes);
+        try {
+            return Hex.encodeHexString(sharedSecret);
+        } finally {
+            Arrays.fill(ourPrivateBytes, (byte) 0);
+            Arrays.fill(sharedSecret, (byte) 0);
+        }
+    }
+
+    /**
+     * Compute a shared secret given our private key and their public key.
+     * @param ourPrivate our private key (32 bytes)
+     * @param theirPublic their public key (32 bytes)
+     * @return Shared secret (32 bytes).
+     * @throws InvalidParameterException If a key is not 32 bytes.
+     */
+    public static byte[] computeSharedSecret(byte[] ourPrivate, byte[] theirPublic) throws InvalidParameterException {
+        checkLength(ourPrivate, "Private key");
+        checkLength(theirPublic, "Public key");
+        if (implementation == Implementation.BUILT_IN) {
+            byte[] sharedSecret = new byte[KEY_LENGTH];
+            X25519.scalarMult(ourPrivate, theirPublic, sharedSecret, 0);
+            return sharedSecret;
+        }
+        return com.github.netricecake.ecdh.Curve25519.sharedSecret(ourPrivate, theirPublic);
+    }
+
+    /**
+     * Compute a shared secret given our private key and their public key and write it into the given array.
+     * @param ourPrivate our private key (32 bytes)
+     * @param theirPublic their public key (32 bytes)
+     * @param output array to write the shared secret into
+     * @param offset offset in the output array
+     * @throws InvalidParameterException If a key is not 32 bytes.
+     * @throws IndexOutOfBoundsException If the shared secret does not fit in the array
+     */
+    public static void computeSharedSecret(byte[] ourPrivate, byte[] theirPublic, byte[] output, int offset) throws InvalidParameterException {
+        if (offset < 0 || output.length - offset < KEY_LENGTH) {
+            throw new IndexOutOfBoundsException("Output array too small, " + KEY_LENGTH + " bytes required");
+        }
+
+        if (implementation == Implementation.BUILT_IN) {
+            checkLength(ourPrivate, "Private key");
+            checkLength(theirPublic, "Public key");
+            X25519.scalarMult(ourPrivate, theirPublic, output, offset);
+            return;
+        }
+
+        byte[] sharedSecret = computeSharedSecret(ourPrivate, theirPublic);
+        System.arraycopy(sharedSecret, 0, output, offset, KEY_LENGTH);
+        Arrays.fill(sharedSecret, (byte) 0);
+    }
+
+    /**
+     * Compute the shared secrets of our private key with many public keys, for example one server key with
+     * the keys of many clients. The secrets are computed in parallel on the common
+     * {@link java.util.concurrent.ForkJoinPool}.
+     * @param ourPrivate our private key (32 bytes)
+     * @param theirPublics their public keys (32 bytes each)
+     * @return Shared secret with every public key (32 bytes each).
+     * @throws InvalidParameterException If a key is not 32 bytes.
+     */
+    public static byte[][] computeSharedSecrets(byte[] ourPrivate, byte[][] theirPublics) throws InvalidParameterException {
+        byte[] output = new byte[theirPublics.length * KEY_LENGTH];
+        computeSharedSecrets(ourPrivate, theirPublics, output, 0);
+
+        byte[][] sharedSecrets = new byte[theirPublics.length][];
+        for (int i = 0; i < sharedSecrets.length; i++) {
+            sharedSecrets[i] = Arrays.copyOfRange(output, i * KEY_LENGTH, (i + 1) * KEY_LENGTH);
+        }
+        Arrays.fill(output, (byte) 0);
+        return sharedSecrets;
+    }
+
+    /**
+     * Compute the shared secrets of our private key with many public keys and write them one after another
+     * into the given array. The secrets are computed in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * @param ourPrivate our private key (32 bytes)
+     * @param theirPublics their public keys (32 bytes each)
+     * @param output array to write the shared secrets into, 32 bytes for every public key
+     * @param offset offset in the output array
+     * @throws InvalidParameterException If a key is not 32 bytes.
+     * @throws IndexOutOfBoundsException If the shared secrets do not fit in the array
+     */
+    public static void computeSharedSecrets(final byte[] ourPrivate, final byte[][] theirPublics, final byte[] output, final int offset) throws InvalidParameterException {
+        checkLength(ourPrivate, "Private key");
+        for (byte[] theirPublic : theirPublics) {
+            checkLength(theirPublic, "Public key");
+        }
+        if (offset < 0 || (output.length - offset) / KEY_LENGTH < theirPublics.length) {
+            throw new IndexOutOfBoundsException("Output array too small, " + (long) theirPublics.length * KEY_LENGTH + " bytes required");
+        }
+
+        // every item is a full scalar multiplication, so even small batches are worth splitting
+        IntStream.range(0, theirPublics.length).parallel()
+                .forEach(i -> computeSharedSecret(ourPrivate, theirPublics[i], output, offset + i * KEY_LENGTH));
+    }
+
+    /**
+     * Compute a shared secret given our private key and their public key and write it into the output buffer.
+     * The next 32 bytes of every buffer are consumed.
+     * @param ourPrivate buffer with our private key
+     * @param theirPublic buffer with their public key
+     * @param output buffer to write the shared secret into
+     * @throws InvalidParameterException If a buffer has less than 32 bytes remaining.
+     */
+    public static void computeSharedSecret(ByteBuffer ourPrivate, ByteBuffer theirPublic, ByteBuffer output) throws InvalidParameterException {
+        if (output.remaining() < KEY_LENGTH) {
+            throw new InvalidParameterException("Output buffer too small, " + KEY_LENGTH + " bytes required");
+        }
+
+        byte[] ourPrivateBytes = read(ourPrivate, "Private key");
+        byte[] theirPublicBytes = read(theirPublic, "Public key");
+        byte[] sharedSecret = computeSharedSecret(ourPrivateBytes, theirPublicBytes);
+        output.put(sharedSecret);
+
+        Arrays.fill(ourPrivateBytes, (byte) 0);
+        Arrays.fill(sharedSecret, (byte) 0);
+    }
+
+    static void checkLength(byte[] key, String name) throws InvalidParameterException {
+        if (key.length != KEY_LENGTH) {
+            throw new InvalidParameterException(name + " must be " + KEY_LENGTH + " bytes.");
+        }
+    }
+
+    static byte[] read(ByteBuffer buffer, String name) throws InvalidParameterException {
+        if (buffer.remaining() < KEY_LENGTH) {
+            throw new InvalidParameterException(name + " must be " + KEY_LENGTH + " bytes.");
+        }
 
-        return Hex.encodeHexString(sharedSecret);
+        byte[] key = new byte[KEY_LENGTH];
+        buffer.get(key);
+        return key;
     }
 }
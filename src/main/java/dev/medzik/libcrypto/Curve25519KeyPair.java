@@ -2,20 +2,63 @@ package dev.medzik.libcrypto;
 
 import org.apache.commons.codec.binary.Hex;
 
+/**
+ * X25519 key pair. The keys are stored as raw bytes and only hex encoded when requested.
+ */
 public class Curve25519KeyPair {
-    private final String publicKey;
-    private final String privateKey;
+    private final byte[] publicKey;
+    private final byte[] privateKey;
+    private String publicKeyHex;
+    private String privateKeyHex;
 
     Curve25519KeyPair(byte[] publicKey, byte[] privateKey) {
-        this.publicKey = Hex.encodeHexString(publicKey);
-        this.privateKey = Hex.encodeHexString(privateKey);
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
     }
 
+    /**
+     * Returns the public key (hex encoded).
+     */
     public String getPublicKey() {
-        return this.publicKey;
+        // racy but idempotent, every thread computes the same string
+        String hex = this.publicKeyHex;
+        if (hex == null) {
+            hex = Hex.encodeHexString(publicKey);
+            this.publicKeyHex = hex;
+        }
+        return hex;
     }
 
+    /**
+     * Returns the private key (hex encoded).
+     */
     public String getPrivateKey() {
-        return this.privateKey;
+        String hex = this.privateKeyHex;
+        if (hex == null) {
+            hex = Hex.encodeHexString(privateKey);
+            this.privateKeyHex = hex;
+        }
+        return hex;
+    }
+
+    /**
+     * Returns a copy of the public key (32 bytes).
+     */
+    public byte[] getPublicKeyBytes() {
+        return publicKey.clone();
+    }
+
+    /**
+     * Returns a copy of the private key (32 bytes).
+     */
+    public byte[] getPrivateKeyBytes() {
+        return privateKey.clone();
+    }
+
+    /**
+     * Returns the private key as a reusable key object, with the public key already known.
+     */
+    public Curve25519PrivateKey toPrivateKey() {
+        return new Curve25519PrivateKey(privateKey.clone(), publicKey);
     }
 }
@@ -0,0 +1,150 @@
+package dev.medzik.libcrypto;
+
+import javax.security.auth.Destroyable;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Reusable X25519 private key holding the raw 32-byte key.
+ * <p>
+ * The public key is derived on first use and cached, and shared secrets can be written directly into
+ * a caller-supplied array or buffer. Call {@link #destroy()} to wipe the key once it is no longer needed.
+ * A key is safe to share between threads, but must not be destroyed while other threads still use it.
+ */
+public final class Curve25519PrivateKey implements Destroyable {
+    private final byte[] key;
+    private volatile byte[] publicKey;
+    private volatile boolean destroyed;
+
+    /**
+     * Creates a new key from a copy of the given private key.
+     * @param privateKey private key (32 bytes)
+     * @throws InvalidParameterException If the private key is not 32 bytes.
+     */
+    public Curve25519PrivateKey(byte[] privateKey) throws InvalidParameterException {
+        Curve25519.checkLength(privateKey, "Private key");
+        this.key = privateKey.clone();
+    }
+
+    /**
+     * Takes ownership of the given private key and optional matching public key.
+     */
+    Curve25519PrivateKey(byte[] privateKey, byte[] publicKey) {
+        this.key = privateKey;
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * Returns a copy of the public key (32 bytes).
+     */
+    public byte[] getPublicKey() {
+        return publicKey().clone();
+    }
+
+    /**
+     * Writes the public key into the given array.
+     * @param output array to write the public key into
+     * @param offset offset in the output array
+     * @throws IndexOutOfBoundsException If the public key does not fit in the array
+     */
+    public void getPublicKey(byte[] output, int offset) {
+        System.arraycopy(publicKey(), 0, output, offset, Curve25519.KEY_LENGTH);
+    }
+
+    /**
+     * Returns a copy of the private key (32 bytes).
+     */
+    public byte[] getEncoded() {
+        checkDestroyed();
+        return key.clone();
+    }
+
+    /**
+     * Returns the key pair of this key.
+     */
+    public Curve25519KeyPair toKeyPair() {
+        return new Curve25519KeyPair(publicKey(), getEncoded());
+    }
+
+    /**
+     * Computes a shared secret with their public key.
+     * @param theirPublic their public key (32 bytes)
+     * @return Shared secret (32 bytes).
+     * @throws InvalidParameterException If the public key is not 32 bytes.
+     */
+    public byte[] computeSharedSecret(byte[] theirPublic) throws InvalidParameterException {
+        checkDestroyed();
+        return Curve25519.computeSharedSecret(key, theirPublic);
+    }
+
+    /**
+     * Computes a shared secret with their public key and writes it into the given array.
+     * @param theirPublic their public key (32 bytes)
+     * @param output array to write the shared secret into
+     * @param offset offset in the output array
+     * @throws InvalidParameterException If the public key is not 32 bytes.
+     * @throws IndexOutOfBoundsException If the shared secret does not fit in the array
+     */
+    public void computeSharedSecret(byte[] theirPublic, byte[] output, int offset) throws InvalidParameterException {
+        checkDestroyed();
+        Curve25519.computeSharedSecret(key, theirPublic, output, offset);
+    }
+
+    /**
+     * Computes the shared secrets with many public keys in parallel.
+     * @param theirPublics their public keys (32 bytes each)
+     * @return Shared secret with every public key (32 bytes each).
+     * @throws InvalidParameterException If a public key is not 32 bytes.
+     * @see Curve25519#computeSharedSecrets(byte[], byte[][])
+     */
+    public byte[][] computeSharedSecrets(byte[][] theirPublics) throws InvalidParameterException {
+        checkDestroyed();
+        return Curve25519.computeSharedSecrets(key, theirPublics);
+    }
+
+    /**
+     * Computes a shared secret with their public key and writes it into the output buffer.
+     * The next 32 bytes of both buffers are consumed.
+     * @param theirPublic buffer with their public key
+     * @param output buffer to write the shared secret into
+     * @throws InvalidParameterException If a buffer has less than 32 bytes remaining.
+     */
+    public void computeSharedSecret(ByteBuffer theirPublic, ByteBuffer output) throws InvalidParameterException {
+        checkDestroyed();
+        Curve25519.computeSharedSecret(ByteBuffer.wrap(key), theirPublic, output);
+    }
+
+    /**
+     * Wipes the private key. The key can't be used afterwards.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(key, (byte) 0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * Returns the cached public key itself, which must not be modified.
+     */
+    byte[] publicKey() {
+        byte[] cached = publicKey;
+        if (cached == null) {
+            checkDestroyed();
+            cached = Curve25519.publicKey(key);
+            publicKey = cached;
+        }
+        return cached;
+    }
+
+    void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Key destroyed");
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package dev.medzik.libcrypto;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of X25519 shared secrets for peers that exchange many messages.
+ * <p>
+ * Entries are keyed by SHA-256 of our public key followed by their public key, so the keys themselves are not
+ * stored. The cache holds either the raw shared secret or a session key derived from it with HKDF-SHA256
+ * (RFC 5869). The least recently used entry is evicted when the cache is full, and entries expire after the
+ * time to live. Evicted, expired and cleared entries are zeroed.
+ * <p>
+ * The cache is opt-in and safe to share between threads. Returned secrets are copies owned by the caller.
+ */
+public class Curve25519SecretCache {
+    /**
+     * Default maximum number of cached secrets.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final byte[] info;
+    private final int keyLength;
+    private final Map<Key, CachedSecret> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a new cache of raw shared secrets.
+     * @param maxSize maximum number of cached secrets
+     * @param ttl time to live of an entry, or 0 for no expiry
+     * @param unit unit of the time to live
+     */
+    public Curve25519SecretCache(int maxSize, long ttl, TimeUnit unit) {
+        this(maxSize, ttl, unit, null, Curve25519.KEY_LENGTH);
+    }
+
+    /**
+     * Creates a new cache of session keys derived from the shared secrets with HKDF-SHA256, without salt.
+     * @param maxSize maximum number of cached secrets
+     * @param ttl time to live of an entry, or 0 for no expiry
+     * @param unit unit of the time to live
+     * @param info HKDF context and application specific information, or null to cache raw shared secrets
+     * @param keyLength length of the session keys in bytes, at most 8160
+     */
+    public Curve25519SecretCache(int maxSize, long ttl, TimeUnit unit, byte[] info, int keyLength) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Time to live must not be negative");
+        }
+        if (keyLength < 1 || keyLength > 255 * Hkdf.HASH_LENGTH || (info == null && keyLength != Curve25519.KEY_LENGTH)) {
+            throw new IllegalArgumentException("Invalid key length: " + keyLength);
+        }
+
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.info = info != null ? info.clone() : null;
+        this.keyLength = keyLength;
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Key, CachedSecret>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedSecret> eldest) {
+                if (size() > Curve25519SecretCache.this.maxSize) {
+                    eldest.getValue().destroy();
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the shared secret (or session key) of our private key and their public key, computing it
+     * if it isn't cached.
+     * @param ourPrivate our private key
+     * @param theirPublic their public key (32 bytes)
+     * @return Copy of the shared secret or session key.
+     * @throws InvalidParameterException If the public key is not 32 bytes.
+     * @throws IllegalStateException If our private key was destroyed
+     */
+    public byte[] computeSharedSecret(Curve25519PrivateKey ourPrivate, byte[] theirPublic) throws InvalidParameterException {
+        byte[] output = new byte[keyLength];
+        computeSharedSecret(ourPrivate, theirPublic, output, 0);
+        return output;
+    }
+
+    /**
+     * Writes the shared secret (or session key) of our private key and their public key into the given array,
+     * computing it if it isn't cached.
+     * @param ourPrivate our private key
+     * @param theirPublic their public key (32 bytes)
+     * @param output array to write the secret into
+     * @param offset offset in the output array
+     * @throws InvalidParameterException If the public key is not 32 bytes.
+     * @throws IndexOutOfBoundsException If the secret does not fit in the array
+     * @throws IllegalStateException If our private key was destroyed
+     */
+    public void computeSharedSecret(Curve25519PrivateKey ourPrivate, byte[] theirPublic, byte[] output, int offset) throws InvalidParameterException {
+        Curve25519.checkLength(theirPublic, "Public key");
+        if (offset < 0 || output.length - offset < keyLength) {
+            throw new IndexOutOfBoundsException("Output array too small, " + keyLength + " bytes required");
+        }
+
+        // a destroyed key must not get its secrets from the cache either
+        ourPrivate.checkDestroyed();
+        Key key = new Key(ourPrivate.publicKey(), theirPublic);
+        long now = System.nanoTime();
+
+        synchronized (entries) {
+            CachedSecret entry = entries.get(key);
+            if (entry != null) {
+                if (ttlNanos == 0 || now - entry.created < ttlNanos) {
+                    hits.increment();
+                    System.arraycopy(entry.secret, 0, output, offset, keyLength);
+                    return;
+                }
+
+                entries.remove(key);
+                entry.destroy();
+                expirations.increment();
+            }
+        }
+        misses.increment();
+
+        // computed outside the lock, concurrent misses for the same peer may both compute the secret
+        byte[] secret = derive(ourPrivate, theirPublic);
+        System.arraycopy(secret, 0, output, offset, keyLength);
+
+        synchronized (entries) {
+            CachedSecret previous = entries.put(key, new CachedSecret(secret, now));
+            if (previous != null) {
+                previous.destroy();
+            }
+        }
+    }
+
+    private byte[] derive(Curve25519PrivateKey ourPrivate, byte[] theirPublic) {
+        byte[] sharedSecret = ourPrivate.computeSharedSecret(theirPublic);
+        if (info == null) {
+            return sharedSecret;
+        }
+
+        try {
+            return Hkdf.sha256(null, sharedSecret, info, keyLength);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(sharedSecret, (byte) 0);
+        }
+    }
+
+    /**
+     * Zeroes and removes all cached secrets.
+     */
+    public void clear() {
+        synchronized (entries) {
+            for (CachedSecret entry : entries.values()) {
+                entry.destroy();
+            }
+            entries.clear();
+        }
+    }
+
+    /**
+     * Zeroes and removes the expired secrets. Expired secrets are also removed when they are looked up.
+     */
+    public void removeExpired() {
+        if (ttlNanos == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Iterator<CachedSecret> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedSecret entry = iterator.next();
+                if (now - entry.created >= ttlNanos) {
+                    entry.destroy();
+                    iterator.remove();
+                    expirations.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached secrets, including expired ones not removed yet.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached secrets.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached secret.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to compute the secret.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that found a cached secret, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long total = hits + misses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of secrets evicted because the cache was full.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of secrets removed because they expired.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    private static final class Key {
+        private final byte[] hash;
+        private final int hashCode;
+
+        Key(byte[] ourPublic, byte[] theirPublic) {
+            try {
+                MessageDigest digest = EngineCache.getMessageDigest("SHA-256");
+                digest.update(ourPublic);
+                digest.update(theirPublic);
+                this.hash = digest.digest();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            this.hashCode = Arrays.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && MessageDigest.isEqual(hash, ((Key) o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class CachedSecret {
+        final byte[] secret;
+        final long created;
+
+        CachedSecret(byte[] secret, long created) {
+            this.secret = secret;
+            this.created = created;
+        }
+
+        void destroy() {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+}
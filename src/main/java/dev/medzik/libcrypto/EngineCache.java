@@ -0,0 +1,179 @@
+package dev.medzik.libcrypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread cache of JCA engines ({@link Cipher}, {@link Mac}, {@link MessageDigest}, {@link SecretKeyFactory},
+ * {@link KeyFactory}) used by
+ * {@link AES}, {@link RSA}, {@link Pbkdf2} and the other classes of this library.
+ * <p>
+ * {@code getInstance} resolves the provider on every call, through synchronized code inside the JCA.
+ * Every thread keeps one instance per algorithm instead, so it is only looked up once per thread.
+ * The cached engines must be used by the calling thread only, and only for one operation at a time:
+ * get, initialize and finish with it before getting it again. Long-lived users such as streams should
+ * take their own instance from {@link #newCipher(String)}.
+ * <p>
+ * By default engines come from the highest-priority provider supporting the algorithm. A specific provider
+ * can be pinned with {@link #setProvider(Provider)}, which also drops all cached engines.
+ */
+public final class EngineCache {
+    private static volatile Provider provider;
+    private static volatile int generation;
+
+    private static final ThreadLocal<Engines> ENGINES = new ThreadLocal<>();
+
+    private EngineCache() {
+    }
+
+    /**
+     * Pins the provider of all engines, or restores the default provider lookup if null.
+     * Engines already cached by any thread are replaced on their next use.
+     * @param provider provider to use, or null for the default
+     */
+    public static synchronized void setProvider(Provider provider) {
+        EngineCache.provider = provider;
+        generation++;
+    }
+
+    /**
+     * Returns the pinned provider, or null if the default lookup is used.
+     */
+    public static Provider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Drops the engines cached by all threads, they are created again on their next use.
+     */
+    public static synchronized void clear() {
+        generation++;
+    }
+
+    /**
+     * Returns the calling thread's cipher for the given transformation.
+     * @param transformation cipher transformation, for example {@code AES/GCM/NoPadding}
+     * @return Cached cipher, to be initialized before use.
+     * @throws GeneralSecurityException If the transformation is not supported.
+     */
+    public static Cipher getCipher(String transformation) throws GeneralSecurityException {
+        Engines engines = engines();
+        Cipher cipher = engines.ciphers.get(transformation);
+        if (cipher == null) {
+            cipher = newCipher(transformation);
+            engines.ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * Creates a new cipher that is not cached, using the pinned provider if set.
+     * @param transformation cipher transformation, for example {@code AES/GCM/NoPadding}
+     * @return New cipher.
+     * @throws GeneralSecurityException If the transformation is not supported.
+     */
+    public static Cipher newCipher(String transformation) throws GeneralSecurityException {
+        Provider pinned = provider;
+        return pinned != null ? Cipher.getInstance(transformation, pinned) : Cipher.getInstance(transformation);
+    }
+
+    /**
+     * Returns the calling thread's MAC for the given algorithm.
+     * @param algorithm algorithm name, for example {@code HmacSHA256}
+     * @return Cached MAC, to be initialized before use.
+     * @throws GeneralSecurityException If the algorithm is not supported.
+     */
+    public static Mac getMac(String algorithm) throws GeneralSecurityException {
+        Engines engines = engines();
+        Mac mac = engines.macs.get(algorithm);
+        if (mac == null) {
+            Provider pinned = provider;
+            mac = pinned != null ? Mac.getInstance(algorithm, pinned) : Mac.getInstance(algorithm);
+            engines.macs.put(algorithm, mac);
+        }
+        return mac;
+    }
+
+    /**
+     * Returns the calling thread's message digest for the given algorithm.
+     * @param algorithm algorithm name, for example {@code SHA-256}
+     * @return Cached message digest, reset before use.
+     * @throws GeneralSecurityException If the algorithm is not supported.
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws GeneralSecurityException {
+        Engines engines = engines();
+        MessageDigest digest = engines.digests.get(algorithm);
+        if (digest == null) {
+            Provider pinned = provider;
+            digest = pinned != null ? MessageDigest.getInstance(algorithm, pinned) : MessageDigest.getInstance(algorithm);
+            engines.digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the calling thread's secret key factory for the given algorithm.
+     * @param algorithm algorithm name, for example {@code PBKDF2WithHmacSHA256}
+     * @return Cached secret key factory.
+     * @throws GeneralSecurityException If the algorithm is not supported.
+     */
+    public static SecretKeyFactory getSecretKeyFactory(String algorithm) throws GeneralSecurityException {
+        Engines engines = engines();
+        SecretKeyFactory factory = engines.secretKeyFactories.get(algorithm);
+        if (factory == null) {
+            Provider pinned = provider;
+            factory = pinned != null ? SecretKeyFactory.getInstance(algorithm, pinned) : SecretKeyFactory.getInstance(algorithm);
+            engines.secretKeyFactories.put(algorithm, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Returns the calling thread's key factory for the given algorithm.
+     * @param algorithm algorithm name, for example {@code RSA}
+     * @return Cached key factory.
+     * @throws GeneralSecurityException If the algorithm is not supported.
+     */
+    public static KeyFactory getKeyFactory(String algorithm) throws GeneralSecurityException {
+        Engines engines = engines();
+        KeyFactory factory = engines.keyFactories.get(algorithm);
+        if (factory == null) {
+            Provider pinned = provider;
+            factory = pinned != null ? KeyFactory.getInstance(algorithm, pinned) : KeyFactory.getInstance(algorithm);
+            engines.keyFactories.put(algorithm, factory);
+        }
+        return factory;
+    }
+
+    private static Engines engines() {
+        int current = generation;
+        Engines engines = ENGINES.get();
+        if (engines == null || engines.generation != current) {
+            engines = new Engines(current);
+            ENGINES.set(engines);
+        }
+        return engines;
+    }
+
+    private static final class Engines {
+        final int generation;
+        final Map<String, Cipher> ciphers = new HashMap<>();
+        final Map<String, Mac> macs = new HashMap<>();
+        final Map<String, MessageDigest> digests = new HashMap<>();
+        final Map<String, SecretKeyFactory> secretKeyFactories = new HashMap<>();
+        final Map<String, KeyFactory> keyFactories = new HashMap<>();
+
+        Engines(int generation) {
+            this.generation = generation;
+        }
+    }
+}
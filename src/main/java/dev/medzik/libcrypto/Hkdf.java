@@ -0,0 +1,54 @@
+package dev.medzik.libcrypto;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * HKDF-SHA256 (RFC 5869).
+ */
+final class Hkdf {
+    static final int HASH_LENGTH = 32;
+
+    private Hkdf() {
+    }
+
+    /**
+     * Derives a key of the given length.
+     * @param salt salt, or null for none (a string of zeros)
+     * @param inputKey input key material
+     * @param info context and application specific information
+     * @param length length of the derived key in bytes, at most 8160
+     * @return Derived key.
+     */
+    static byte[] sha256(byte[] salt, byte[] inputKey, byte[] info, int length) throws GeneralSecurityException {
+        Mac mac = EngineCache.getMac("HmacSHA256");
+
+        // extract, an absent salt is a string of zeros
+        mac.init(new SecretKeySpec(salt != null && salt.length > 0 ? salt : new byte[HASH_LENGTH], "HmacSHA256"));
+        byte[] prk = mac.doFinal(inputKey);
+
+        // expand
+        byte[] output = new byte[length];
+        byte[] block = new byte[0];
+        try {
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            for (int i = 0, position = 0; position < length; i++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) (i + 1));
+                Arrays.fill(block, (byte) 0);
+                block = mac.doFinal();
+
+                int n = Math.min(HASH_LENGTH, length - position);
+                System.arraycopy(block, 0, output, position, n);
+                position += n;
+            }
+            return output;
+        } finally {
+            Arrays.fill(prk, (byte) 0);
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+}
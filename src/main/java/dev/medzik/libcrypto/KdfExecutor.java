@@ -0,0 +1,134 @@
+package dev.medzik.libcrypto;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the asynchronous password hashing APIs ({@link Argon2#hashAsync(String, byte[])},
+ * {@link Pbkdf2#sha256Async(String, byte[])}, ...).
+ * <p>
+ * By default, the jobs run on a shared fixed pool of daemon threads, one per available processor, so password
+ * hashing can't occupy more than the machine's cores and starve the rest of the application.
+ */
+public final class KdfExecutor {
+    private static volatile Executor defaultExecutor;
+
+    private KdfExecutor() {
+    }
+
+    /**
+     * Returns the executor used by the asynchronous methods without an executor argument.
+     * A fixed pool with one thread per available processor is created on first use, unless another executor was set.
+     */
+    public static Executor getDefault() {
+        Executor executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (KdfExecutor.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = newFixed(Runtime.getRuntime().availableProcessors());
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the executor used by the asynchronous methods without an executor argument.
+     * The previous executor is not shut down.
+     * @param executor executor to use
+     */
+    public static void setDefault(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Creates a fixed pool of daemon threads for hashing.
+     * @param threads number of threads
+     * @return New executor service.
+     */
+    public static ExecutorService newFixed(int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "libcrypto-kdf-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns true if virtual threads are available (JDK 21 or newer).
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an executor that runs every job on a new virtual thread, with at most {@code maxConcurrency}
+     * jobs hashing at the same time. Waiting jobs park their virtual thread instead of blocking a platform thread.
+     * @param maxConcurrency maximum number of jobs hashing at the same time
+     * @return New executor.
+     * @throws UnsupportedOperationException If virtual threads are not available
+     */
+    public static Executor newVirtualThreadExecutor(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+
+        final ExecutorService virtualThreads;
+        try {
+            // resolved at runtime, the library is compiled for Java 8
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            virtualThreads = (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or newer");
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Failed to create virtual thread executor", e);
+        }
+
+        final Semaphore permits = new Semaphore(maxConcurrency, true);
+        return command -> virtualThreads.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Runs a job on the executor, completing the future with the job's result or exception.
+     */
+    static <T> CompletableFuture<T> supply(Callable<T> job, Executor executor) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(job.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,293 @@
+package dev.medzik.libcrypto;
+
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pre-generated key pairs, refilled in the background.
+ * <p>
+ * Generating a key pair can take a long time ({@link RSA#generateKeyPair(int)} with 4096-bit keys takes seconds),
+ * which shows up as latency spikes when it happens on a request thread. A pool keeps up to {@code capacity} key
+ * pairs ready and generates new ones on a background executor whenever it drops below capacity. When the pool
+ * is empty, {@link #take()} generates a key pair synchronously instead of waiting for the refill.
+ * <p>
+ * Every key pair is handed out only once. Close the pool to stop refilling and drop the pooled key pairs.
+ * @param <T> type of the key pairs
+ */
+public class KeyPairPool<T> implements AutoCloseable {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final Generator<T> generator;
+    private final int capacity;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final BlockingQueue<T> pool;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder refillFailures = new LongAdder();
+    private final LongAdder refillNanos = new LongAdder();
+    private volatile long maxRefillNanos;
+
+    /**
+     * Generates a single key pair.
+     * @param <T> type of the key pairs
+     */
+    public interface Generator<T> {
+        /**
+         * Generates a new key pair.
+         * @return Generated key pair.
+         * @throws EncryptException If the key pair generation fails.
+         */
+        T generate() throws EncryptException;
+    }
+
+    /**
+     * Creates a new pool refilled by its own low-priority daemon thread, and starts filling it.
+     * @param generator generator of the key pairs
+     * @param capacity maximum number of pooled key pairs
+     */
+    public KeyPairPool(Generator<T> generator, int capacity) {
+        this(generator, capacity, null);
+    }
+
+    /**
+     * Creates a new pool and starts filling it.
+     * @param generator generator of the key pairs
+     * @param capacity maximum number of pooled key pairs
+     * @param executor executor to refill the pool on, or null for a low-priority daemon thread owned by the pool
+     */
+    public KeyPairPool(Generator<T> generator, int capacity, Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.generator = generator;
+        this.capacity = capacity;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        if (executor != null) {
+            this.executor = executor;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = newRefillExecutor();
+            this.executor = ownedExecutor;
+        }
+
+        scheduleRefill();
+    }
+
+    /**
+     * Creates a pool of RSA key pairs.
+     * @param keySize key size in bits
+     * @param capacity maximum number of pooled key pairs
+     * @return New pool.
+     */
+    public static KeyPairPool<KeyPair> rsa(final int keySize, int capacity) {
+        return new KeyPairPool<>(() -> RSA.generateKeyPair(keySize), capacity);
+    }
+
+    /**
+     * Creates a pool of X25519 key pairs.
+     * @param capacity maximum number of pooled key pairs
+     * @return New pool.
+     */
+    public static KeyPairPool<Curve25519KeyPair> curve25519(int capacity) {
+        return new KeyPairPool<>(Curve25519::generateKeyPair, capacity);
+    }
+
+    /**
+     * Takes a key pair from the pool, or generates one synchronously if the pool is empty.
+     * @return Key pair that is not handed out again.
+     * @throws EncryptException If the pool is empty and the key pair generation fails.
+     * @throws IllegalStateException If the pool is closed
+     */
+    public T take() throws EncryptException {
+        if (closed) {
+            throw new IllegalStateException("Pool closed");
+        }
+
+        T keyPair = pool.poll();
+        if (keyPair != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        scheduleRefill();
+
+        return keyPair != null ? keyPair : generator.generate();
+    }
+
+    /**
+     * Fills the pool up to its capacity on the calling thread, for example to warm it up before serving requests.
+     * @throws EncryptException If the key pair generation fails.
+     */
+    public void fill() throws EncryptException {
+        while (!closed && pool.size() < capacity) {
+            if (!offer(generator.generate())) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stops refilling and drops the pooled key pairs. The pool's own refill thread is shut down,
+     * an executor passed to the constructor is not.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pool.clear();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private void scheduleRefill() {
+        if (closed || pool.size() >= capacity || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::refill);
+        } catch (RejectedExecutionException e) {
+            refilling.set(false);
+        }
+    }
+
+    private void refill() {
+        long start = System.nanoTime();
+        try {
+            while (!closed && pool.size() < capacity) {
+                if (!offer(generator.generate())) {
+                    break;
+                }
+            }
+
+            long lag = System.nanoTime() - start;
+            refills.increment();
+            refillNanos.add(lag);
+            if (lag > maxRefillNanos) {
+                maxRefillNanos = lag;
+            }
+        } catch (Exception e) {
+            // retried on the next take, instead of spinning on a failing generator
+            refillFailures.increment();
+            refilling.set(false);
+            return;
+        }
+
+        refilling.set(false);
+        // a key pair may have been taken after the last check
+        scheduleRefill();
+    }
+
+    /**
+     * Adds a generated key pair, unless the pool was closed while it was being generated.
+     */
+    private boolean offer(T keyPair) {
+        if (closed || !pool.offer(keyPair)) {
+            return false;
+        }
+
+        // close() may have cleared the pool between the check and the offer
+        if (closed) {
+            pool.clear();
+            return false;
+        }
+        return true;
+    }
+
+    private static ExecutorService newRefillExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "libcrypto-keygen-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        // an idle pool doesn't keep a thread around
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Returns the maximum number of pooled key pairs.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of key pairs ready in the pool.
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of key pairs taken from the pool.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of key pairs generated synchronously because the pool was empty.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of {@link #take()} calls served from the pool, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = this.hits.sum();
+        long total = hits + misses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of background refills that brought the pool back to capacity.
+     */
+    public long getRefillCount() {
+        return refills.sum();
+    }
+
+    /**
+     * Returns the number of background refills stopped by a failing generator.
+     */
+    public long getRefillFailureCount() {
+        return refillFailures.sum();
+    }
+
+    /**
+     * Returns the average time a background refill took to bring the pool back to capacity.
+     */
+    public long getAverageRefillLag(TimeUnit unit) {
+        long count = refills.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return unit.convert(refillNanos.sum() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a background refill took to bring the pool back to capacity.
+     */
+    public long getMaxRefillLag(TimeUnit unit) {
+        return unit.convert(maxRefillNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,71 @@
+package dev.medzik.libcrypto;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Converts passwords between chars and UTF-8 bytes without intermediate Strings.
+ * The returned arrays hold the secret and must be zeroed by the caller once the hash is computed.
+ */
+final class Passwords {
+    private Passwords() {
+    }
+
+    /**
+     * Encodes the password as UTF-8. Unpaired surrogates are replaced with '?', like {@link String#getBytes}.
+     */
+    static byte[] toUtf8(CharSequence password) {
+        if (password instanceof String) {
+            return ((String) password).getBytes(StandardCharsets.UTF_8);
+        }
+
+        // ASCII passwords map one char to one byte
+        int length = password.length();
+        byte[] ascii = new byte[length];
+        int i = 0;
+        for (; i < length; i++) {
+            char c = password.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            ascii[i] = (byte) c;
+        }
+        if (i == length) {
+            return ascii;
+        }
+        Arrays.fill(ascii, (byte) 0);
+
+        CharBuffer chars = password instanceof CharBuffer
+                ? ((CharBuffer) password).duplicate()
+                : CharBuffer.wrap(password);
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // at most 3 bytes per char, the exact size is copied out afterwards
+        byte[] buffer = new byte[chars.remaining() * 3];
+        ByteBuffer out = ByteBuffer.wrap(buffer);
+        try {
+            encoder.encode(chars, out, true);
+            encoder.flush(out);
+
+            return Arrays.copyOf(buffer, out.position());
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    /**
+     * Copies the remaining chars of the buffer without changing its position.
+     */
+    static char[] toChars(CharBuffer password) {
+        char[] chars = new char[password.remaining()];
+        password.duplicate().get(chars);
+        return chars;
+    }
+}
@@ -2,9 +2,19 @@ package dev.medzik.libcrypto;
 
 import org.apache.commons.codec.binary.Hex;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import java.nio.CharBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * PBKDF2-SHA256/512 hashing.
@@ -12,9 +22,20 @@ import javax.crypto.spec.PBEKeySpec;
  */
 public class Pbkdf2 {
     int iterations;
+    private final Pbkdf2Engine engine;
 
     public Pbkdf2(int passwordIterations) {
+        this(passwordIterations, null);
+    }
+
+    /**
+     * Creates a new instance that hashes with the given engine instead of the JDK's {@link SecretKeyFactory}.
+     * @param passwordIterations number of iterations
+     * @param engine engine to use, or null to use the JDK
+     */
+    public Pbkdf2(int passwordIterations, Pbkdf2Engine engine) {
         iterations = passwordIterations;
+        this.engine = engine;
     }
 
     /**
@@ -39,17 +60,389 @@ public class Pbkdf2 {
         return hash("PBKDF2WithHmacSHA512", 512, password, salt);
     }
 
+    /**
+     * Compute a PBKDF2-SHA256 hash with the given output length. Keys longer than 256 bits are derived
+     * in parallel (on the engine if one was set, otherwise with the JDK's HMAC on the common {@link ForkJoinPool}),
+     * since their blocks are independent.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param keyLength length of the hash in bits, a multiple of 8
+     * @return Password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha256(String password, byte[] salt, int keyLength) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA256", keyLength, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash with the given output length. Internal copies of the password are zeroed afterwards.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param keyLength length of the hash in bits, a multiple of 8
+     * @return Password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     * @see #sha256(String, byte[], int)
+     */
+    public String sha256(char[] password, byte[] salt, int keyLength) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA256", keyLength, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash with the given output length. Keys longer than 512 bits are derived
+     * in parallel (on the engine if one was set, otherwise with the JDK's HMAC on the common {@link ForkJoinPool}),
+     * since their blocks are independent.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param keyLength length of the hash in bits, a multiple of 8
+     * @return Password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha512(String password, byte[] salt, int keyLength) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA512", keyLength, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash with the given output length. Internal copies of the password are zeroed afterwards.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param keyLength length of the hash in bits, a multiple of 8
+     * @return Password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     * @see #sha512(String, byte[], int)
+     */
+    public String sha512(char[] password, byte[] salt, int keyLength) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA512", keyLength, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash. Internal copies of the password are zeroed afterwards,
+     * the given array is left to the caller to clear.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return 256-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha256(char[] password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA256", 256, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash of the remaining chars of the buffer, without changing its position.
+     * Internal copies of the password are zeroed afterwards.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return 256-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha256(CharBuffer password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA256", 256, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash of a raw password. The bytes are used as they are, so a UTF-8 encoded password
+     * gives the same hash as the {@link String} overload. Internal copies of the password are zeroed afterwards.
+     * @param password password bytes to hash
+     * @param salt salt to use
+     * @return 256-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha256(byte[] password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA256", 256, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash. Internal copies of the password are zeroed afterwards,
+     * the given array is left to the caller to clear.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return 512-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha512(char[] password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA512", 512, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash of the remaining chars of the buffer, without changing its position.
+     * Internal copies of the password are zeroed afterwards.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return 512-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha512(CharBuffer password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA512", 512, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash of a raw password. The bytes are used as they are, so a UTF-8 encoded password
+     * gives the same hash as the {@link String} overload. Internal copies of the password are zeroed afterwards.
+     * @param password password bytes to hash
+     * @param salt salt to use
+     * @return 512-bit password hash encoded as hex string.
+     * @throws EncryptException If the hashing fails.
+     */
+    public String sha512(byte[] password, byte[] salt) throws EncryptException {
+        return hash("PBKDF2WithHmacSHA512", 512, password, salt);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash on the default {@link KdfExecutor}.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Future completed with the 256-bit password hash encoded as hex string,
+     * or with {@link EncryptException} if the hashing fails.
+     */
+    public CompletableFuture<String> sha256Async(String password, byte[] salt) {
+        return sha256Async(password, salt, KdfExecutor.getDefault());
+    }
+
+    /**
+     * Compute a PBKDF2-SHA256 hash on the given executor.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param executor executor to hash on
+     * @return Future completed with the 256-bit password hash encoded as hex string,
+     * or with {@link EncryptException} if the hashing fails.
+     */
+    public CompletableFuture<String> sha256Async(String password, byte[] salt, Executor executor) {
+        return KdfExecutor.supply(() -> sha256(password, salt), executor);
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash on the default {@link KdfExecutor}.
+     * @param password password to hash
+     * @param salt salt to use
+     * @return Future completed with the 512-bit password hash encoded as hex string,
+     * or with {@link EncryptException} if the hashing fails.
+     */
+    public CompletableFuture<String> sha512Async(String password, byte[] salt) {
+        return sha512Async(password, salt, KdfExecutor.getDefault());
+    }
+
+    /**
+     * Compute a PBKDF2-SHA512 hash on the given executor.
+     * @param password password to hash
+     * @param salt salt to use
+     * @param executor executor to hash on
+     * @return Future completed with the 512-bit password hash encoded as hex string,
+     * or with {@link EncryptException} if the hashing fails.
+     */
+    public CompletableFuture<String> sha512Async(String password, byte[] salt, Executor executor) {
+        return KdfExecutor.supply(() -> sha512(password, salt), executor);
+    }
+
     private String hash(String algorithm, int keyLength, String password, byte[] salt) throws EncryptException {
+        char[] chars = password.toCharArray();
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(algorithm);
+            return hash(algorithm, keyLength, chars, salt);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    private String hash(String algorithm, int keyLength, CharBuffer password, byte[] salt) throws EncryptException {
+        char[] chars = Passwords.toChars(password);
+        try {
+            return hash(algorithm, keyLength, chars, salt);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    private String hash(String algorithm, int keyLength, byte[] password, byte[] salt) throws EncryptException {
+        checkKeyLength(keyLength);
+
+        // PBEKeySpec only takes chars, so raw bytes are always derived with HMAC
+        byte[] copy = password.clone();
+        try {
+            if (engine != null) {
+                return hashWithEngine(engine, algorithm, keyLength, copy, salt);
+            }
+            return hashParallel(algorithm, keyLength / 8, digestLength(algorithm) / 8, copy, salt);
+        } finally {
+            Arrays.fill(copy, (byte) 0);
+        }
+    }
 
-            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyLength);
+    private String hash(String algorithm, int keyLength, char[] password, byte[] salt) throws EncryptException {
+        checkKeyLength(keyLength);
+
+        // the JDK derives the blocks of long keys one after another
+        int digestLength = digestLength(algorithm);
+        if (engine != null || keyLength > digestLength) {
+            byte[] passwordBytes = Passwords.toUtf8(CharBuffer.wrap(password));
+            try {
+                if (engine != null) {
+                    return hashWithEngine(engine, algorithm, keyLength, passwordBytes, salt);
+                }
+                return hashParallel(algorithm, keyLength / 8, digestLength / 8, passwordBytes, salt);
+            } finally {
+                Arrays.fill(passwordBytes, (byte) 0);
+            }
+        }
+
+        PBEKeySpec spec = null;
+        byte[] res = null;
+        try {
+            SecretKeyFactory skf = EngineCache.getSecretKeyFactory(algorithm);
+
+            // PBEKeySpec keeps its own copy of the password
+            spec = new PBEKeySpec(password, salt, iterations, keyLength);
             SecretKey key = skf.generateSecret(spec);
-            byte[] res = key.getEncoded();
+            res = key.getEncoded();
+
+            return Hex.encodeHexString(res);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        } finally {
+            if (spec != null) {
+                spec.clearPassword();
+            }
+            if (res != null) {
+                Arrays.fill(res, (byte) 0);
+            }
+        }
+    }
+
+    private static void checkKeyLength(int keyLength) throws EncryptException {
+        if (keyLength < 8 || keyLength % 8 != 0) {
+            throw new EncryptException("Key length must be a positive multiple of 8 bits");
+        }
+    }
+
+    private static int digestLength(String algorithm) {
+        return algorithm.equals("PBKDF2WithHmacSHA256") ? 256 : 512;
+    }
+
+    private String hashWithEngine(Pbkdf2Engine engine, String algorithm, int keyLength, byte[] password, byte[] salt) throws EncryptException {
+        byte[] res = null;
+        try {
+            if (algorithm.equals("PBKDF2WithHmacSHA256")) {
+                res = engine.sha256(password, salt, iterations, keyLength);
+            } else {
+                res = engine.sha512(password, salt, iterations, keyLength);
+            }
 
             return Hex.encodeHexString(res);
         } catch (Exception e) {
             throw new EncryptException(e);
+        } finally {
+            if (res != null) {
+                Arrays.fill(res, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Derives the independent output blocks of a key with the JDK's HMAC (which uses the SHA intrinsics),
+     * blocks after the first on the common {@link ForkJoinPool} and the first on the calling thread.
+     */
+    private String hashParallel(String algorithm, int keyLength, int digestLength, byte[] password, byte[] salt) throws EncryptException {
+        final String macAlgorithm = algorithm.equals("PBKDF2WithHmacSHA256") ? "HmacSHA256" : "HmacSHA512";
+        final PasswordKey key = new PasswordKey(password.clone(), macAlgorithm);
+        final byte[] output = new byte[keyLength];
+        int blocks = (keyLength + digestLength - 1) / digestLength;
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(blocks - 1);
+        try {
+            for (int block = 2; block <= blocks; block++) {
+                final int index = block;
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    try {
+                        deriveBlock(macAlgorithm, key, salt, index, output);
+                    } catch (GeneralSecurityException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+
+            deriveBlock(macAlgorithm, key, salt, 1, output);
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+
+            return Hex.encodeHexString(output);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        } finally {
+            // a failed block must not leave the others writing into the cleared key
+            for (ForkJoinTask<?> task : tasks) {
+                task.quietlyJoin();
+            }
+            key.destroy();
+            Arrays.fill(output, (byte) 0);
+        }
+    }
+
+    /**
+     * Computes T_i = U_1 ^ U_2 ^ ... ^ U_c into its place in the output.
+     */
+    private void deriveBlock(String macAlgorithm, PasswordKey key, byte[] salt, int index, byte[] output) throws GeneralSecurityException {
+        Mac mac = EngineCache.getMac(macAlgorithm);
+        int digestLength = mac.getMacLength();
+        byte[] u = new byte[digestLength];
+        byte[] t = new byte[digestLength];
+        try {
+            mac.init(key);
+
+            mac.update(salt);
+            mac.update((byte) (index >>> 24));
+            mac.update((byte) (index >>> 16));
+            mac.update((byte) (index >>> 8));
+            mac.update((byte) index);
+            mac.doFinal(u, 0);
+            System.arraycopy(u, 0, t, 0, digestLength);
+
+            for (int i = 1; i < iterations; i++) {
+                mac.update(u);
+                mac.doFinal(u, 0);
+                for (int j = 0; j < digestLength; j++) {
+                    t[j] ^= u[j];
+                }
+            }
+
+            int offset = (index - 1) * digestLength;
+            System.arraycopy(t, 0, output, offset, Math.min(digestLength, output.length - offset));
+        } finally {
+            Arrays.fill(u, (byte) 0);
+            Arrays.fill(t, (byte) 0);
+        }
+    }
+
+    /**
+     * Raw password as an HMAC key. Unlike {@link javax.crypto.spec.SecretKeySpec}, it accepts an empty password
+     * (which PBKDF2 allows) and can be cleared.
+     */
+    private static final class PasswordKey implements SecretKey {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] password;
+        private final String algorithm;
+
+        PasswordKey(byte[] password, String algorithm) {
+            this.password = password;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return password.clone();
+        }
+
+        @Override
+        public void destroy() {
+            Arrays.fill(password, (byte) 0);
         }
     }
 }
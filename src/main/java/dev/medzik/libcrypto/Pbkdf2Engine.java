@@ -0,0 +1,561 @@
+package dev.medzik.libcrypto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Pure-Java PBKDF2-HMAC-SHA256/SHA512 (RFC 8018).
+ * <p>
+ * The HMAC inner and outer pad states are computed once per password, so every iteration costs exactly two
+ * compression function calls on preallocated arrays, without allocating or rehashing the key.
+ * The output is identical to the JDK's {@code PBKDF2WithHmacSHA256} and {@code PBKDF2WithHmacSHA512}
+ * for UTF-8 encoded passwords.
+ * <p>
+ * The engine avoids the JDK's allocation of two digests per iteration and is faster for SHA-512. On CPUs where
+ * the JVM computes SHA-256 with dedicated instructions (x86 SHA extensions, ARMv8 crypto), the JDK's single-block
+ * PBKDF2-HMAC-SHA256 is faster than this pure-Java compression function.
+ * <p>
+ * Select it for a {@link Pbkdf2} instance with {@link Pbkdf2#Pbkdf2(int, Pbkdf2Engine)}.
+ * An engine is safe to share between threads.
+ */
+public class Pbkdf2Engine {
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new engine that derives multi-block keys on the common {@link ForkJoinPool}.
+     */
+    public Pbkdf2Engine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new engine.
+     * @param pool pool to derive the blocks of multi-block keys on, the calling thread derives the first block
+     */
+    public Pbkdf2Engine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Computes PBKDF2-HMAC-SHA256.
+     * @param password password bytes
+     * @param salt salt to use
+     * @param iterations number of iterations
+     * @param keyLength length of the derived key in bits, a multiple of 8
+     * @return Derived key.
+     */
+    public byte[] sha256(byte[] password, byte[] salt, int iterations, int keyLength) {
+        checkParameters(salt, iterations, keyLength);
+        return derive(new Sha256(password), salt, iterations, keyLength);
+    }
+
+    /**
+     * Computes PBKDF2-HMAC-SHA512.
+     * @param password password bytes
+     * @param salt salt to use
+     * @param iterations number of iterations
+     * @param keyLength length of the derived key in bits, a multiple of 8
+     * @return Derived key.
+     */
+    public byte[] sha512(byte[] password, byte[] salt, int iterations, int keyLength) {
+        checkParameters(salt, iterations, keyLength);
+        return derive(new Sha512(password), salt, iterations, keyLength);
+    }
+
+    /**
+     * Derives the output blocks T1..Tn. They are independent, so blocks after the first are derived in parallel
+     * on the pool, each by a copy of the PRF sharing the precomputed pad states.
+     */
+    private byte[] derive(Prf prf, byte[] salt, int iterations, int keyLength) {
+        byte[] output = new byte[keyLength / 8];
+        int blocks = (output.length + prf.digestLength() - 1) / prf.digestLength();
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(blocks - 1);
+        try {
+            for (int block = 2; block <= blocks; block++) {
+                final int index = block;
+                final Prf copy = prf.copy();
+                tasks.add(pool.submit(() -> {
+                    try {
+                        copy.deriveBlock(salt, index, iterations, output, (index - 1) * copy.digestLength());
+                    } finally {
+                        copy.destroy();
+                    }
+                }));
+            }
+
+            prf.deriveBlock(salt, 1, iterations, output, 0);
+
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            return output;
+        } finally {
+            prf.destroy();
+        }
+    }
+
+    private static void checkParameters(byte[] salt, int iterations, int keyLength) {
+        if (salt == null) {
+            throw new IllegalArgumentException("Salt must not be null");
+        }
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Invalid iterations parameter: " + iterations);
+        }
+        if (keyLength < 8 || keyLength % 8 != 0) {
+            throw new IllegalArgumentException("Key length must be a positive multiple of 8 bits");
+        }
+    }
+
+    private static byte[] blockIndex(int block) {
+        return new byte[]{(byte) (block >>> 24), (byte) (block >>> 16), (byte) (block >>> 8), (byte) block};
+    }
+
+    /**
+     * HMAC-based pseudorandom function computing one PBKDF2 output block at a time.
+     */
+    private abstract static class Prf {
+        abstract int digestLength();
+
+        abstract void deriveBlock(byte[] salt, int block, int iterations, byte[] output, int offset);
+
+        /**
+         * Returns a copy sharing the pad states, with its own working arrays.
+         */
+        abstract Prf copy();
+
+        abstract void destroy();
+    }
+
+    /**
+     * HMAC-SHA256 with precomputed pad states.
+     */
+    private static final class Sha256 extends Prf {
+        static final int BLOCK_LENGTH = 64;
+        static final int DIGEST_LENGTH = 32;
+
+        private static final int[] IV = {
+                0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+        };
+
+        private static final int[] K = {
+                0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+                0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+                0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+                0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+                0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+                0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+                0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+                0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+        };
+
+        private final int[] innerState = new int[8];
+        private final int[] outerState = new int[8];
+        private final int[] state = new int[8];
+        private final int[] w = new int[64];
+        private final int[] u = new int[8];
+        private final int[] result = new int[8];
+
+        private Sha256(Sha256 other) {
+            System.arraycopy(other.innerState, 0, innerState, 0, 8);
+            System.arraycopy(other.outerState, 0, outerState, 0, 8);
+        }
+
+        @Override
+        int digestLength() {
+            return DIGEST_LENGTH;
+        }
+
+        @Override
+        Prf copy() {
+            return new Sha256(this);
+        }
+
+        Sha256(byte[] password) {
+            byte[] key = new byte[BLOCK_LENGTH];
+            if (password.length > BLOCK_LENGTH) {
+                hash(IV, 0, password, key);
+            } else {
+                System.arraycopy(password, 0, key, 0, password.length);
+            }
+
+            byte[] pad = new byte[BLOCK_LENGTH];
+            for (int i = 0; i < BLOCK_LENGTH; i++) {
+                pad[i] = (byte) (key[i] ^ 0x36);
+            }
+            System.arraycopy(IV, 0, innerState, 0, 8);
+            loadBlock(pad, 0);
+            compress(innerState);
+
+            for (int i = 0; i < BLOCK_LENGTH; i++) {
+                pad[i] = (byte) (key[i] ^ 0x5c);
+            }
+            System.arraycopy(IV, 0, outerState, 0, 8);
+            loadBlock(pad, 0);
+            compress(outerState);
+
+            Arrays.fill(key, (byte) 0);
+            Arrays.fill(pad, (byte) 0);
+        }
+
+        @Override
+        void deriveBlock(byte[] salt, int block, int iterations, byte[] output, int offset) {
+            // U1 = HMAC(salt || INT(block))
+            byte[] message = new byte[salt.length + 4];
+            System.arraycopy(salt, 0, message, 0, salt.length);
+            System.arraycopy(blockIndex(block), 0, message, salt.length, 4);
+            byte[] inner = new byte[DIGEST_LENGTH];
+            hash(innerState, BLOCK_LENGTH, message, inner);
+            for (int i = 0; i < 8; i++) {
+                u[i] = bigEndianInt(inner, i * 4);
+            }
+            Arrays.fill(inner, (byte) 0);
+            outer(u);
+            System.arraycopy(u, 0, result, 0, 8);
+
+            // U2..Uc, each one inner and one outer compression of a single padded block
+            for (int i = 1; i < iterations; i++) {
+                System.arraycopy(innerState, 0, state, 0, 8);
+                loadDigestBlock(u);
+                compress(state);
+                System.arraycopy(state, 0, u, 0, 8);
+
+                outer(u);
+                for (int j = 0; j < 8; j++) {
+                    result[j] ^= u[j];
+                }
+            }
+
+            int length = Math.min(DIGEST_LENGTH, output.length - offset);
+            for (int i = 0; i < length; i++) {
+                output[offset + i] = (byte) (result[i >>> 2] >>> (24 - 8 * (i & 3)));
+            }
+        }
+
+        /**
+         * Replaces the inner digest with HMAC's outer hash of it.
+         */
+        private void outer(int[] digest) {
+            System.arraycopy(outerState, 0, state, 0, 8);
+            loadDigestBlock(digest);
+            compress(state);
+            System.arraycopy(state, 0, digest, 0, 8);
+        }
+
+        /**
+         * Loads a 32-byte digest padded as the last block of a message with one block before it.
+         */
+        private void loadDigestBlock(int[] digest) {
+            System.arraycopy(digest, 0, w, 0, 8);
+            w[8] = 0x80000000;
+            for (int i = 9; i < 15; i++) {
+                w[i] = 0;
+            }
+            w[15] = (BLOCK_LENGTH + DIGEST_LENGTH) * 8;
+        }
+
+        /**
+         * Hashes a message, continuing from the state after {@code prefixLength} bytes.
+         */
+        private void hash(int[] startState, int prefixLength, byte[] message, byte[] digest) {
+            long bitLength = ((long) prefixLength + message.length) * 8;
+            int paddedLength = (message.length + 9 + BLOCK_LENGTH - 1) / BLOCK_LENGTH * BLOCK_LENGTH;
+            byte[] padded = Arrays.copyOf(message, paddedLength);
+            padded[message.length] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                padded[paddedLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+            }
+
+            System.arraycopy(startState, 0, state, 0, 8);
+            for (int offset = 0; offset < paddedLength; offset += BLOCK_LENGTH) {
+                loadBlock(padded, offset);
+                compress(state);
+            }
+            Arrays.fill(padded, (byte) 0);
+
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                digest[i] = (byte) (state[i >>> 2] >>> (24 - 8 * (i & 3)));
+            }
+        }
+
+        private void loadBlock(byte[] block, int offset) {
+            for (int i = 0; i < 16; i++) {
+                w[i] = bigEndianInt(block, offset + i * 4);
+            }
+        }
+
+        private void compress(int[] h) {
+            for (int i = 16; i < 64; i++) {
+                int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+                int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+                w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+            }
+
+            int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+            for (int i = 0; i < 64; i++) {
+                int t1 = hh + (Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25))
+                        + ((e & f) ^ (~e & g)) + K[i] + w[i];
+                int t2 = (Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22))
+                        + ((a & b) ^ (a & c) ^ (b & c));
+                hh = g;
+                g = f;
+                f = e;
+                e = d + t1;
+                d = c;
+                c = b;
+                b = a;
+                a = t1 + t2;
+            }
+
+            h[0] += a;
+            h[1] += b;
+            h[2] += c;
+            h[3] += d;
+            h[4] += e;
+            h[5] += f;
+            h[6] += g;
+            h[7] += hh;
+        }
+
+        @Override
+        void destroy() {
+            Arrays.fill(innerState, 0);
+            Arrays.fill(outerState, 0);
+            Arrays.fill(state, 0);
+            Arrays.fill(w, 0);
+            Arrays.fill(u, 0);
+            Arrays.fill(result, 0);
+        }
+
+        private static int bigEndianInt(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                    | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+        }
+    }
+
+    /**
+     * HMAC-SHA512 with precomputed pad states.
+     */
+    private static final class Sha512 extends Prf {
+        static final int BLOCK_LENGTH = 128;
+        static final int DIGEST_LENGTH = 64;
+
+        private static final long[] IV = {
+                0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+                0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+        };
+
+        private static final long[] K = {
+                0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+                0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+                0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+                0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+                0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+                0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+                0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+                0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+                0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+                0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+                0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+                0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+                0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+                0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+                0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+                0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+                0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+                0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+                0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+                0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+        };
+
+        private final long[] innerState = new long[8];
+        private final long[] outerState = new long[8];
+        private final long[] state = new long[8];
+        private final long[] w = new long[80];
+        private final long[] u = new long[8];
+        private final long[] result = new long[8];
+
+        private Sha512(Sha512 other) {
+            System.arraycopy(other.innerState, 0, innerState, 0, 8);
+            System.arraycopy(other.outerState, 0, outerState, 0, 8);
+        }
+
+        @Override
+        int digestLength() {
+            return DIGEST_LENGTH;
+        }
+
+        @Override
+        Prf copy() {
+            return new Sha512(this);
+        }
+
+        Sha512(byte[] password) {
+            byte[] key = new byte[BLOCK_LENGTH];
+            if (password.length > BLOCK_LENGTH) {
+                hash(IV, 0, password, key);
+            } else {
+                System.arraycopy(password, 0, key, 0, password.length);
+            }
+
+            byte[] pad = new byte[BLOCK_LENGTH];
+            for (int i = 0; i < BLOCK_LENGTH; i++) {
+                pad[i] = (byte) (key[i] ^ 0x36);
+            }
+            System.arraycopy(IV, 0, innerState, 0, 8);
+            loadBlock(pad, 0);
+            compress(innerState);
+
+            for (int i = 0; i < BLOCK_LENGTH; i++) {
+                pad[i] = (byte) (key[i] ^ 0x5c);
+            }
+            System.arraycopy(IV, 0, outerState, 0, 8);
+            loadBlock(pad, 0);
+            compress(outerState);
+
+            Arrays.fill(key, (byte) 0);
+            Arrays.fill(pad, (byte) 0);
+        }
+
+        @Override
+        void deriveBlock(byte[] salt, int block, int iterations, byte[] output, int offset) {
+            // U1 = HMAC(salt || INT(block))
+            byte[] message = new byte[salt.length + 4];
+            System.arraycopy(salt, 0, message, 0, salt.length);
+            System.arraycopy(blockIndex(block), 0, message, salt.length, 4);
+            byte[] inner = new byte[DIGEST_LENGTH];
+            hash(innerState, BLOCK_LENGTH, message, inner);
+            for (int i = 0; i < 8; i++) {
+                u[i] = bigEndianLong(inner, i * 8);
+            }
+            Arrays.fill(inner, (byte) 0);
+            outer(u);
+            System.arraycopy(u, 0, result, 0, 8);
+
+            // U2..Uc, each one inner and one outer compression of a single padded block
+            for (int i = 1; i < iterations; i++) {
+                System.arraycopy(innerState, 0, state, 0, 8);
+                loadDigestBlock(u);
+                compress(state);
+                System.arraycopy(state, 0, u, 0, 8);
+
+                outer(u);
+                for (int j = 0; j < 8; j++) {
+                    result[j] ^= u[j];
+                }
+            }
+
+            int length = Math.min(DIGEST_LENGTH, output.length - offset);
+            for (int i = 0; i < length; i++) {
+                output[offset + i] = (byte) (result[i >>> 3] >>> (56 - 8 * (i & 7)));
+            }
+        }
+
+        /**
+         * Replaces the inner digest with HMAC's outer hash of it.
+         */
+        private void outer(long[] digest) {
+            System.arraycopy(outerState, 0, state, 0, 8);
+            loadDigestBlock(digest);
+            compress(state);
+            System.arraycopy(state, 0, digest, 0, 8);
+        }
+
+        /**
+         * Loads a 64-byte digest padded as the last block of a message with one block before it.
+         */
+        private void loadDigestBlock(long[] digest) {
+            System.arraycopy(digest, 0, w, 0, 8);
+            w[8] = 0x8000000000000000L;
+            for (int i = 9; i < 15; i++) {
+                w[i] = 0;
+            }
+            w[15] = (BLOCK_LENGTH + DIGEST_LENGTH) * 8;
+        }
+
+        /**
+         * Hashes a message, continuing from the state after {@code prefixLength} bytes.
+         */
+        private void hash(long[] startState, int prefixLength, byte[] message, byte[] digest) {
+            long bitLength = ((long) prefixLength + message.length) * 8;
+            // 128-bit length field, the upper 64 bits are always zero here
+            int paddedLength = (message.length + 17 + BLOCK_LENGTH - 1) / BLOCK_LENGTH * BLOCK_LENGTH;
+            byte[] padded = Arrays.copyOf(message, paddedLength);
+            padded[message.length] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                padded[paddedLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+            }
+
+            System.arraycopy(startState, 0, state, 0, 8);
+            for (int offset = 0; offset < paddedLength; offset += BLOCK_LENGTH) {
+                loadBlock(padded, offset);
+                compress(state);
+            }
+            Arrays.fill(padded, (byte) 0);
+
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                digest[i] = (byte) (state[i >>> 3] >>> (56 - 8 * (i & 7)));
+            }
+        }
+
+        private void loadBlock(byte[] block, int offset) {
+            for (int i = 0; i < 16; i++) {
+                w[i] = bigEndianLong(block, offset + i * 8);
+            }
+        }
+
+        private void compress(long[] h) {
+            for (int i = 16; i < 80; i++) {
+                long s0 = Long.rotateRight(w[i - 15], 1) ^ Long.rotateRight(w[i - 15], 8) ^ (w[i - 15] >>> 7);
+                long s1 = Long.rotateRight(w[i - 2], 19) ^ Long.rotateRight(w[i - 2], 61) ^ (w[i - 2] >>> 6);
+                w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+            }
+
+            long a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+            for (int i = 0; i < 80; i++) {
+                long t1 = hh + (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41))
+                        + ((e & f) ^ (~e & g)) + K[i] + w[i];
+                long t2 = (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39))
+                        + ((a & b) ^ (a & c) ^ (b & c));
+                hh = g;
+                g = f;
+                f = e;
+                e = d + t1;
+                d = c;
+                c = b;
+                b = a;
+                a = t1 + t2;
+            }
+
+            h[0] += a;
+            h[1] += b;
+            h[2] += c;
+            h[3] += d;
+            h[4] += e;
+            h[5] += f;
+            h[6] += g;
+            h[7] += hh;
+        }
+
+        @Override
+        void destroy() {
+            Arrays.fill(innerState, 0);
+            Arrays.fill(outerState, 0);
+            Arrays.fill(state, 0);
+            Arrays.fill(w, 0);
+            Arrays.fill(u, 0);
+            Arrays.fill(result, 0);
+        }
+
+        private static long bigEndianLong(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (bytes[offset + i] & 0xff);
+            }
+            return value;
+        }
+    }
+}
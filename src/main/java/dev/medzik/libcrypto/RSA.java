@@ -11,7 +11,7 @@ import java.security.spec.X509EncodedKeySpec;
  * RSA encryption/decryption with PKCS5 padding and base64 encoding.
  */
 public class RSA {
-    private static final String ALGORITHM = "RSA";
+    static final String ALGORITHM = "RSA";
 
     /**
      * Generates a new RSA key pair.
@@ -39,7 +39,7 @@ public class RSA {
     public static String encrypt(String clearText, PublicKey publicKey) throws EncryptException {
         try {
             // initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            Cipher cipher = EngineCache.getCipher(ALGORITHM);
             cipher.init(Cipher.ENCRYPT_MODE, publicKey);
 
             // encrypt
@@ -62,7 +62,7 @@ public class RSA {
     public static String decrypt(String cipherText, PrivateKey privateKey) throws EncryptException {
         try {
             // initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            Cipher cipher = EngineCache.getCipher(ALGORITHM);
             cipher.init(Cipher.DECRYPT_MODE, privateKey);
 
             // decrypt
@@ -111,7 +111,7 @@ public class RSA {
         public static PublicKey getPublicKey(byte[] publicKey) throws EncryptException {
             try {
                 X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKey);
-                KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+                KeyFactory keyFactory = EngineCache.getKeyFactory(ALGORITHM);
                 return keyFactory.generatePublic(keySpec);
             } catch (Exception e) {
                 throw new EncryptException(e);
@@ -147,7 +147,7 @@ public class RSA {
         public static PrivateKey getPrivateKey(byte[] privateKey) throws EncryptException {
             try {
                 PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKey);
-                KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+                KeyFactory keyFactory = EngineCache.getKeyFactory(ALGORITHM);
                 return keyFactory.generatePrivate(keySpec);
             } catch (Exception e) {
                 throw new EncryptException(e);
@@ -0,0 +1,148 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reusable RSA decryption bound to a single private key.
+ * <p>
+ * {@link RSA#decrypt(String, PrivateKey)} looks up and initializes a cipher with the private key on every call,
+ * which is expensive compared to decrypting a small message. A decryptor keeps one cipher per thread that is
+ * initialized with the key once and reused across calls. The output is identical to {@link RSA#decrypt}.
+ * <p>
+ * A decryptor is safe to share between threads. Create one per key and keep it.
+ * <p>
+ * The batch methods decrypt many cipher texts in one call and pack their outputs into a single
+ * {@link BatchResult}. Batches are spread across the common {@link java.util.concurrent.ForkJoinPool}.
+ */
+public class RsaDecryptor {
+    // every item is a full private key operation, so even small batches are worth splitting
+    private static final int PARALLEL_MIN_ITEMS = 2;
+
+    private final PrivateKey privateKey;
+    private final ThreadLocal<Cipher> cipher = new ThreadLocal<>();
+
+    /**
+     * Creates a new decryptor.
+     * @param privateKey private key to use for decryption
+     */
+    public RsaDecryptor(PrivateKey privateKey) {
+        this.privateKey = privateKey;
+    }
+
+    /**
+     * Returns the private key of this decryptor.
+     */
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    /**
+     * Decrypts the given cipher text.
+     * @param cipherText cipher text to decrypt (base64 encoded)
+     * @return Clear text as string.
+     * @throws EncryptException If the decryption fails.
+     * @see RSA#decrypt(String, PrivateKey)
+     */
+    public String decrypt(String cipherText) throws EncryptException {
+        return new String(decrypt(Base64.decodeBase64(cipherText)));
+    }
+
+    /**
+     * Decrypts the given cipher text.
+     * @param cipherText cipher text to decrypt
+     * @return Clear text.
+     * @throws EncryptException If the decryption fails.
+     */
+    public byte[] decrypt(byte[] cipherText) throws EncryptException {
+        try {
+            return getCipher().doFinal(cipherText);
+        } catch (Exception e) {
+            // start over with a fresh cipher, the failed one may be left in an undefined state
+            cipher.remove();
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts every given cipher text in parallel. Items that fail to decrypt are reported in the result.
+     * @param cipherTexts cipher texts to decrypt
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public BatchResult decryptBatch(byte[][] cipherTexts) throws EncryptException {
+        return decryptBatch(cipherTexts, cipherTexts.length >= PARALLEL_MIN_ITEMS);
+    }
+
+    /**
+     * Decrypts every given cipher text. Items that fail to decrypt are reported in the result.
+     * @param cipherTexts cipher texts to decrypt
+     * @param parallel whether to spread the items across threads
+     * @return Clear text of every item, packed into one array.
+     * @throws EncryptException If the total output does not fit into an array.
+     */
+    public BatchResult decryptBatch(final byte[][] cipherTexts, boolean parallel) throws EncryptException {
+        int count = cipherTexts.length;
+        final int[] outputOffsets = new int[count];
+        final int[] outputLengths = new int[count];
+        final EncryptException[] errors = new EncryptException[count];
+
+        // reserve the maximum clear text length, the actual length is only known after removing the padding
+        long total = 0;
+        try {
+            Cipher instance = getCipher();
+            for (int i = 0; i < count; i++) {
+                outputOffsets[i] = (int) total;
+                if (cipherTexts[i] != null) {
+                    total += instance.getOutputSize(cipherTexts[i].length);
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new EncryptException(e);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new EncryptException("Batch output too large: " + total + " bytes");
+        }
+        final byte[] output = new byte[(int) total];
+
+        forEach(count, parallel, i -> {
+            try {
+                if (cipherTexts[i] == null) {
+                    throw new EncryptException("Missing item " + i);
+                }
+                outputLengths[i] = getCipher().doFinal(cipherTexts[i], 0, cipherTexts[i].length, output, outputOffsets[i]);
+            } catch (Exception e) {
+                cipher.remove();
+                outputLengths[i] = 0;
+                errors[i] = e instanceof EncryptException ? (EncryptException) e : new EncryptException(e);
+            }
+        });
+
+        return new BatchResult(output, outputOffsets, outputLengths, errors);
+    }
+
+    private static void forEach(int count, boolean parallel, IntConsumer action) {
+        if (parallel) {
+            IntStream.range(0, count).parallel().forEach(action);
+        } else {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+        }
+    }
+
+    private Cipher getCipher() throws GeneralSecurityException {
+        Cipher instance = cipher.get();
+        if (instance == null) {
+            instance = EngineCache.newCipher(RSA.ALGORITHM);
+            instance.init(Cipher.DECRYPT_MODE, privateKey);
+            cipher.set(instance);
+        }
+        return instance;
+    }
+}
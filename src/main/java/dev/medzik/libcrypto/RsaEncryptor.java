@@ -0,0 +1,73 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+
+/**
+ * Reusable RSA encryption bound to a single public key.
+ * <p>
+ * {@link RSA#encrypt(String, PublicKey)} looks up and initializes a cipher with the key on every call.
+ * An encryptor keeps one cipher per thread that is initialized with the key once and reused across calls.
+ * The output is compatible with {@link RSA#decrypt(String, java.security.PrivateKey)} and {@link RsaDecryptor}.
+ * <p>
+ * An encryptor is safe to share between threads. Create one per key and keep it.
+ */
+public class RsaEncryptor {
+    private final PublicKey publicKey;
+    private final ThreadLocal<Cipher> cipher = new ThreadLocal<>();
+
+    /**
+     * Creates a new encryptor.
+     * @param publicKey public key to use for encryption
+     */
+    public RsaEncryptor(PublicKey publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * Returns the public key of this encryptor.
+     */
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    /**
+     * Encrypts the given clear text.
+     * @param clearText clear text to encrypt
+     * @return Cipher text as base64 string.
+     * @throws EncryptException If the encryption fails.
+     * @see RSA#encrypt(String, PublicKey)
+     */
+    public String encrypt(String clearText) throws EncryptException {
+        return Base64.encodeBase64String(encrypt(clearText.getBytes()));
+    }
+
+    /**
+     * Encrypts the given clear text.
+     * @param clearText clear text to encrypt
+     * @return Cipher text.
+     * @throws EncryptException If the encryption fails.
+     */
+    public byte[] encrypt(byte[] clearText) throws EncryptException {
+        try {
+            return getCipher().doFinal(clearText);
+        } catch (Exception e) {
+            // start over with a fresh cipher, the failed one may be left in an undefined state
+            cipher.remove();
+            throw new EncryptException(e);
+        }
+    }
+
+    private Cipher getCipher() throws GeneralSecurityException {
+        Cipher instance = cipher.get();
+        if (instance == null) {
+            instance = EngineCache.newCipher(RSA.ALGORITHM);
+            instance.init(Cipher.ENCRYPT_MODE, publicKey);
+            cipher.set(instance);
+        }
+        return instance;
+    }
+}
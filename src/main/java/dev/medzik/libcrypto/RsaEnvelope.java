@@ -0,0 +1,203 @@
+package dev.medzik.libcrypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Arrays;
+
+/**
+ * Hybrid RSA + AES envelope encryption for payloads of any size.
+ * <p>
+ * Every envelope has its own random 256-bit data key. The payload is encrypted with the data key in the
+ * {@link SegmentedAesGcm} format, and only the data key is encrypted with RSA-OAEP (SHA-256, MGF1 with SHA-256),
+ * so every envelope costs a single RSA operation regardless of the payload size. The layout is:
+ * <pre>
+ * header:  version (1 byte) | wrapped key length (2 bytes, big endian) | wrapped data key
+ * payload: cipher text in the {@link SegmentedAesGcm} format
+ * </pre>
+ * Tampering with the wrapped key is detected by the OAEP padding check, and tampering with the payload
+ * by the GCM tags of its segments.
+ */
+public class RsaEnvelope {
+    private static final String OAEP = "RSA/ECB/OAEPPadding";
+    private static final OAEPParameterSpec OAEP_SHA256 = new OAEPParameterSpec(
+            "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
+    private static final byte VERSION = 1;
+    private static final int HEADER_PREFIX_LENGTH = 3;
+    private static final int DATA_KEY_LENGTH = 32;
+
+    /**
+     * Encrypts the given clear text into an envelope.
+     * @param clearText clear text to encrypt
+     * @param publicKey public key to wrap the data key with
+     * @return Envelope.
+     * @throws EncryptException If the encryption fails.
+     */
+    public static byte[] encrypt(byte[] clearText, PublicKey publicKey) throws EncryptException {
+        byte[] dataKey = Salt.generate(DATA_KEY_LENGTH);
+        try {
+            byte[] header = header(wrap(dataKey, publicKey));
+            SegmentedAesGcm aes = new SegmentedAesGcm(dataKey);
+
+            long length = header.length + aes.getCipherTextLength(clearText.length);
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new EncryptException("Clear text too large");
+            }
+
+            byte[] output = new byte[(int) length];
+            System.arraycopy(header, 0, output, 0, header.length);
+            aes.encrypt(ByteBuffer.wrap(clearText), ByteBuffer.wrap(output, header.length, output.length - header.length));
+            return output;
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Decrypts the given envelope.
+     * @param envelope envelope to decrypt
+     * @param privateKey private key to unwrap the data key with
+     * @return Clear text.
+     * @throws EncryptException If the envelope is invalid, has been modified or was not encrypted for this key.
+     */
+    public static byte[] decrypt(byte[] envelope, PrivateKey privateKey) throws EncryptException {
+        if (envelope.length < HEADER_PREFIX_LENGTH) {
+            throw new EncryptException("Envelope too short");
+        }
+        int wrappedLength = readHeaderPrefix(envelope);
+        int headerLength = HEADER_PREFIX_LENGTH + wrappedLength;
+        if (envelope.length < headerLength) {
+            throw new EncryptException("Envelope too short");
+        }
+
+        byte[] dataKey = unwrap(envelope, HEADER_PREFIX_LENGTH, wrappedLength, privateKey);
+        try {
+            return new SegmentedAesGcm(dataKey).decrypt(ByteBuffer.wrap(envelope, headerLength, envelope.length - headerLength));
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns an output stream that encrypts everything written to it into an envelope. The header is
+     * written right away, the payload segment by segment; closing the stream writes the last segment
+     * and closes the underlying stream.
+     * @param out underlying output stream to write the envelope to
+     * @param publicKey public key to wrap the data key with
+     * @return Encrypting output stream.
+     * @throws EncryptException If the data key cannot be wrapped or the header cannot be written.
+     */
+    public static OutputStream newEncryptingStream(OutputStream out, PublicKey publicKey) throws EncryptException {
+        byte[] dataKey = Salt.generate(DATA_KEY_LENGTH);
+        try {
+            out.write(header(wrap(dataKey, publicKey)));
+            return new SegmentedAesGcm(dataKey).newEncryptingStream(out);
+        } catch (IOException e) {
+            throw new EncryptException(e);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns an input stream that decrypts an envelope read from the given stream. The header is read
+     * and the data key unwrapped right away; the payload is authenticated segment by segment as it is read.
+     * @param in underlying input stream to read the envelope from
+     * @param privateKey private key to unwrap the data key with
+     * @return Decrypting input stream.
+     * @throws EncryptException If the header is invalid, cannot be read or was not encrypted for this key.
+     */
+    public static InputStream newDecryptingStream(InputStream in, PrivateKey privateKey) throws EncryptException {
+        byte[] dataKey;
+        try {
+            byte[] prefix = new byte[HEADER_PREFIX_LENGTH];
+            readFully(in, prefix);
+            byte[] wrapped = new byte[readHeaderPrefix(prefix)];
+            readFully(in, wrapped);
+
+            dataKey = unwrap(wrapped, 0, wrapped.length, privateKey);
+        } catch (IOException e) {
+            throw new EncryptException(e);
+        }
+
+        try {
+            return new SegmentedAesGcm(dataKey).newDecryptingStream(in);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    private static byte[] wrap(byte[] dataKey, PublicKey publicKey) throws EncryptException {
+        try {
+            Cipher cipher = EngineCache.getCipher(OAEP);
+            cipher.init(Cipher.ENCRYPT_MODE, publicKey, OAEP_SHA256);
+            return cipher.doFinal(dataKey);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    private static byte[] unwrap(byte[] wrapped, int offset, int length, PrivateKey privateKey) throws EncryptException {
+        byte[] dataKey;
+        try {
+            Cipher cipher = EngineCache.getCipher(OAEP);
+            cipher.init(Cipher.DECRYPT_MODE, privateKey, OAEP_SHA256);
+            dataKey = cipher.doFinal(wrapped, offset, length);
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+
+        if (dataKey.length != DATA_KEY_LENGTH) {
+            Arrays.fill(dataKey, (byte) 0);
+            throw new EncryptException("Invalid data key length");
+        }
+        return dataKey;
+    }
+
+    private static byte[] header(byte[] wrapped) throws EncryptException {
+        if (wrapped.length > 0xFFFF) {
+            throw new EncryptException("Wrapped key too large");
+        }
+
+        byte[] header = new byte[HEADER_PREFIX_LENGTH + wrapped.length];
+        header[0] = VERSION;
+        header[1] = (byte) (wrapped.length >>> 8);
+        header[2] = (byte) wrapped.length;
+        System.arraycopy(wrapped, 0, header, HEADER_PREFIX_LENGTH, wrapped.length);
+        return header;
+    }
+
+    /**
+     * Validates the version and returns the length of the wrapped key.
+     */
+    private static int readHeaderPrefix(byte[] prefix) throws EncryptException {
+        if (prefix[0] != VERSION) {
+            throw new EncryptException("Unsupported envelope version: " + prefix[0]);
+        }
+
+        int length = (prefix[1] & 0xff) << 8 | prefix[2] & 0xff;
+        if (length == 0) {
+            throw new EncryptException("Invalid wrapped key length");
+        }
+        return length;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException, EncryptException {
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count == -1) {
+                throw new EncryptException("Envelope too short");
+            }
+            read += count;
+        }
+    }
+}
@@ -1,17 +1,151 @@
 package dev.medzik.libcrypto;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
+/**
+ * Random salts, IVs and keys.
+ * <p>
+ * Every thread keeps its own {@link SecureRandom}, a DRBG (NIST SP 800-90A) where available (JDK 9 or newer)
+ * and the default {@link SecureRandom} otherwise, so it is seeded once per thread instead of on every call and
+ * threads don't contend on a shared instance.
+ * <p>
+ * In buffered mode, enabled with {@link #setBufferSize(int)}, every thread fills a buffer of random bytes in
+ * bulk and hands out slices of it, which makes small requests such as IVs cheaper. Bytes are zeroed in the
+ * buffer once handed out, but the bytes not handed out yet stay in memory until they are used.
+ */
 public class Salt {
+    /**
+     * Largest partial range filled through a reused scratch array instead of a temporary one.
+     */
+    private static final int MAX_SCRATCH_LENGTH = 64;
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<>();
+
+    private static volatile int bufferSize;
+
     /**
      * Generate a random salt slice.
      * @param length length of salt slice in bytes
      * @return Salt slice.
      */
     public static byte[] generate(int length) {
-        SecureRandom rd = new SecureRandom();
         byte[] salt = new byte[length];
-        rd.nextBytes(salt);
+        generate(salt, 0, length);
         return salt;
     }
+
+    /**
+     * Fill a range of the given array with random bytes.
+     * @param dest array to write the random bytes into
+     * @param offset offset in the array
+     * @param length number of random bytes
+     * @throws IndexOutOfBoundsException If the range is outside the array
+     */
+    public static void generate(byte[] dest, int offset, int length) {
+        if (offset < 0 || length < 0 || length > dest.length - offset) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + dest.length);
+        }
+
+        State state = state();
+        if (state.buffer == null || length > state.buffer.length / 2) {
+            // large requests are not worth copying through the buffer
+            nextBytes(state, dest, offset, length);
+            return;
+        }
+
+        if (state.buffer.length - state.position < length) {
+            state.random.nextBytes(state.buffer);
+            state.position = 0;
+        }
+        System.arraycopy(state.buffer, state.position, dest, offset, length);
+        Arrays.fill(state.buffer, state.position, state.position + length, (byte) 0);
+        state.position += length;
+    }
+
+    /**
+     * Enables the buffered mode with the given per-thread buffer size, or disables it if the size is 0.
+     * Threads switch to the new size on their next call.
+     * @param size size of the per-thread buffer in bytes, or 0 to disable buffering
+     */
+    public static void setBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Buffer size must not be negative");
+        }
+        bufferSize = size;
+    }
+
+    /**
+     * Returns the per-thread buffer size, or 0 if buffering is disabled.
+     */
+    public static int getBufferSize() {
+        return bufferSize;
+    }
+
+    private static State state() {
+        State state = STATE.get();
+        if (state == null) {
+            state = new State(newRandom());
+            STATE.set(state);
+        }
+
+        int size = bufferSize;
+        if (size == 0) {
+            if (state.buffer != null) {
+                Arrays.fill(state.buffer, (byte) 0);
+                state.buffer = null;
+            }
+        } else if (state.buffer == null || state.buffer.length != size) {
+            if (state.buffer != null) {
+                Arrays.fill(state.buffer, (byte) 0);
+            }
+            state.buffer = new byte[size];
+            // empty, filled on first use
+            state.position = size;
+        }
+        return state;
+    }
+
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            // JDK 8
+            return new SecureRandom();
+        }
+    }
+
+    private static void nextBytes(State state, byte[] dest, int offset, int length) {
+        if (offset == 0 && length == dest.length) {
+            state.random.nextBytes(dest);
+            return;
+        }
+
+        // SecureRandom only fills whole arrays, IV and nonce sized ranges reuse a scratch array of that length
+        byte[] bytes;
+        if (length <= MAX_SCRATCH_LENGTH) {
+            bytes = state.scratch[length];
+            if (bytes == null) {
+                bytes = new byte[length];
+                state.scratch[length] = bytes;
+            }
+        } else {
+            bytes = new byte[length];
+        }
+        state.random.nextBytes(bytes);
+        System.arraycopy(bytes, 0, dest, offset, length);
+        Arrays.fill(bytes, (byte) 0);
+    }
+
+    private static final class State {
+        final SecureRandom random;
+        final byte[][] scratch = new byte[MAX_SCRATCH_LENGTH + 1][];
+        byte[] buffer;
+        int position;
+
+        State(SecureRandom random) {
+            this.random = random;
+        }
+    }
 }
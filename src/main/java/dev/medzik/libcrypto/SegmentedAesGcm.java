@@ -0,0 +1,827 @@
+package dev.medzik.libcrypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Segmented AES-GCM container format with parallel and random-access decryption.
+ * <p>
+ * The clear text is split into segments of a fixed size and every segment is encrypted with AES-GCM on
+ * its own, so segments can be encrypted and decrypted in parallel and a byte range can be decrypted
+ * without processing the whole cipher text. The layout is:
+ * <pre>
+ * header:  version (1 byte) | segment size (4 bytes, big endian) | salt (16 random bytes) | nonce prefix (7 random bytes)
+ * segment: cipher text (segment size bytes, the last segment may be shorter) | GCM tag (16 bytes)
+ * </pre>
+ * Every cipher text is encrypted with its own key, derived from the given key and the salt with HKDF-SHA256.
+ * The nonce of each segment is the nonce prefix, followed by the segment index (4 bytes, big endian) and
+ * a final-segment flag (1 byte). The header is authenticated as additional data of every segment. Because
+ * only the last segment is encrypted with the flag set, removing segments from the end of the cipher text
+ * is detected, and segments cannot be reordered or moved between cipher texts.
+ * <p>
+ * Because of the per-message key, nonces only have to be unique within a single cipher text, and the number
+ * of cipher texts per key is limited by salt collisions (about 2<sup>48</sup>) instead of the 56-bit nonce
+ * prefix.
+ */
+public class SegmentedAesGcm {
+    /**
+     * Default clear text segment size in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    static final int TAG_LENGTH = 16;
+    static final int HEADER_LENGTH = 28;
+
+    private static final byte VERSION = 2;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final long MAX_SEGMENTS = 0xFFFFFFFFL;
+    private static final int MAX_WINDOW = 1 << 30;
+    private static final byte[] KEY_INFO = "libcrypto segmented AES-GCM".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] key;
+    private final int segmentSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new instance with the default segment size that runs on the common {@link ForkJoinPool}.
+     * @param key secret key to use for encryption and decryption
+     */
+    public SegmentedAesGcm(byte[] key) {
+        this(key, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new instance.
+     * @param key secret key to use for encryption and decryption
+     * @param segmentSize clear text segment size in bytes used for encryption
+     * @param pool pool to encrypt and decrypt segments on
+     */
+    public SegmentedAesGcm(byte[] key, int segmentSize, ForkJoinPool pool) {
+        if (segmentSize <= 0 || segmentSize > MAX_WINDOW - TAG_LENGTH) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("Empty key");
+        }
+
+        this.key = key.clone();
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the clear text segment size used for encryption.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Returns the length of the cipher text produced by encrypting a clear text of the given length.
+     * @param clearTextLength length of the clear text in bytes
+     * @return Length of the cipher text in bytes.
+     */
+    public long getCipherTextLength(long clearTextLength) {
+        return HEADER_LENGTH + clearTextLength + segmentCount(clearTextLength, segmentSize) * TAG_LENGTH;
+    }
+
+    /**
+     * Encrypts the given clear text.
+     * @param clearText clear text to encrypt
+     * @return Cipher text in the segmented format.
+     * @throws EncryptException If the encryption fails.
+     */
+    public byte[] encrypt(byte[] clearText) throws EncryptException {
+        byte[] output = new byte[toIntLength(getCipherTextLength(clearText.length))];
+        encrypt(ByteBuffer.wrap(clearText), ByteBuffer.wrap(output));
+        return output;
+    }
+
+    /**
+     * Encrypts the remaining bytes of the given buffer and writes the cipher text into the output buffer.
+     * Heap, direct and memory-mapped buffers are supported.
+     * @param clearText buffer with the clear text to encrypt, consumed up to its limit
+     * @param output buffer to write the cipher text into, see {@link #getCipherTextLength(long)}
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the encryption fails or the output buffer is too small.
+     */
+    public int encrypt(ByteBuffer clearText, ByteBuffer output) throws EncryptException {
+        final int length = clearText.remaining();
+        int cipherTextLength = toIntLength(getCipherTextLength(length));
+        if (output.remaining() < cipherTextLength) {
+            throw new EncryptException("Output buffer too small, " + cipherTextLength + " bytes required");
+        }
+
+        final Header header = Header.create(segmentSize);
+        output.duplicate().put(header.bytes);
+
+        final ByteBuffer in = clearText;
+        final ByteBuffer out = slice(output, HEADER_LENGTH, cipherTextLength - HEADER_LENGTH);
+        final long count = segmentCount(length, segmentSize);
+
+        runSegments(0, count, index -> {
+            int start = (int) index * segmentSize;
+            int size = Math.min(segmentSize, length - start);
+            encryptSegment(header, index, index == count - 1,
+                    slice(in, start, size), slice(out, (int) index * (segmentSize + TAG_LENGTH), size + TAG_LENGTH));
+        });
+
+        advance(clearText, length);
+        advance(output, cipherTextLength);
+        return cipherTextLength;
+    }
+
+    /**
+     * Decrypts the given cipher text.
+     * @param cipherText cipher text in the segmented format
+     * @return Clear text.
+     * @throws EncryptException If the cipher text is invalid or has been modified.
+     */
+    public byte[] decrypt(byte[] cipherText) throws EncryptException {
+        return decrypt(ByteBuffer.wrap(cipherText));
+    }
+
+    /**
+     * Decrypts the remaining bytes of the given buffer into a new array.
+     */
+    byte[] decrypt(ByteBuffer cipherText) throws EncryptException {
+        Header header = Header.read(cipherText);
+
+        byte[] output = new byte[(int) getClearTextLength(header, cipherText.remaining())];
+        decrypt(cipherText, ByteBuffer.wrap(output));
+        return output;
+    }
+
+    /**
+     * Decrypts the remaining bytes of the given buffer and writes the clear text into the output buffer.
+     * Heap, direct and memory-mapped buffers are supported.
+     * @param cipherText buffer with the cipher text to decrypt, consumed up to its limit
+     * @param output buffer to write the clear text into
+     * @return Number of bytes written into {@code output}.
+     * @throws EncryptException If the cipher text is invalid, has been modified or the output buffer is too small.
+     */
+    public int decrypt(ByteBuffer cipherText, ByteBuffer output) throws EncryptException {
+        final Header header = Header.read(cipherText);
+        final int cipherTextLength = cipherText.remaining();
+        final int length = (int) getClearTextLength(header, cipherTextLength);
+        if (output.remaining() < length) {
+            throw new EncryptException("Output buffer too small, " + length + " bytes required");
+        }
+
+        final int size = header.segmentSize;
+        final ByteBuffer in = slice(cipherText, HEADER_LENGTH, cipherTextLength - HEADER_LENGTH);
+        final ByteBuffer out = output;
+        final long count = segmentCount(length, size);
+
+        runSegments(0, count, index -> {
+            int start = (int) index * size;
+            int segmentLength = Math.min(size, length - start);
+            decryptSegment(header, index, index == count - 1,
+                    slice(in, (int) index * (size + TAG_LENGTH), segmentLength + TAG_LENGTH), slice(out, start, segmentLength));
+        });
+
+        advance(cipherText, cipherTextLength);
+        advance(output, length);
+        return length;
+    }
+
+    /**
+     * Decrypts a range of the clear text without decrypting the whole cipher text. Only the segments
+     * that overlap the range are decrypted and authenticated.
+     * @param cipherText buffer with the whole cipher text, from its position to its limit (not consumed)
+     * @param offset offset of the range in the clear text
+     * @param length length of the range
+     * @return Clear text of the range.
+     * @throws EncryptException If the range is out of bounds, or the cipher text is invalid or has been modified.
+     */
+    public byte[] decrypt(ByteBuffer cipherText, long offset, int length) throws EncryptException {
+        Header header = Header.read(cipherText);
+        long clearTextLength = getClearTextLength(header, cipherText.remaining());
+        checkRange(offset, length, clearTextLength);
+
+        long first = offset / header.segmentSize;
+        long regionStart = HEADER_LENGTH + first * (header.segmentSize + TAG_LENGTH);
+        ByteBuffer region = slice(cipherText, (int) regionStart, (int) (cipherText.remaining() - regionStart));
+
+        return decryptRange(header, clearTextLength, region, offset, length);
+    }
+
+    /**
+     * Encrypts a file into another file. The files are memory-mapped in windows of up to 1 GiB, so files
+     * larger than the heap are processed without copying them through the heap.
+     * @param source file with the clear text
+     * @param target file to write the cipher text to, created or truncated
+     * @throws EncryptException If the encryption fails.
+     */
+    public void encryptFile(Path source, Path target) throws EncryptException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long length = in.size();
+            final long count = segmentCount(length, segmentSize);
+            checkSegmentCount(count);
+
+            final Header header = Header.create(segmentSize);
+            out.write(ByteBuffer.wrap(header.bytes), 0);
+
+            long window = Math.max(1, MAX_WINDOW / (segmentSize + TAG_LENGTH));
+            for (long first = 0; first < count; first += window) {
+                final long from = first;
+                long to = Math.min(first + window, count);
+
+                long inStart = from * segmentSize;
+                long inEnd = Math.min(to * segmentSize, length);
+                final ByteBuffer inMap = in.map(FileChannel.MapMode.READ_ONLY, inStart, inEnd - inStart);
+                final ByteBuffer outMap = out.map(FileChannel.MapMode.READ_WRITE, HEADER_LENGTH + from * (segmentSize + TAG_LENGTH),
+                        inEnd - inStart + (to - from) * TAG_LENGTH);
+
+                runSegments(from, to, index -> {
+                    int size = (int) Math.min(segmentSize, length - index * segmentSize);
+                    int relative = (int) (index - from);
+                    encryptSegment(header, index, index == count - 1,
+                            slice(inMap, relative * segmentSize, size), slice(outMap, relative * (segmentSize + TAG_LENGTH), size + TAG_LENGTH));
+                });
+            }
+        } catch (EncryptException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Decrypts a file into another file. The files are memory-mapped in windows of up to 1 GiB, so files
+     * larger than the heap are processed without copying them through the heap.
+     * @param source file with the cipher text
+     * @param target file to write the clear text to, created or truncated, and deleted if decryption fails
+     * @throws EncryptException If the cipher text is invalid or has been modified.
+     */
+    public void decryptFile(Path source, Path target) throws EncryptException {
+        boolean success = false;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final Header header = Header.read(in);
+            final int size = header.segmentSize;
+            final long length = getClearTextLength(header, in.size());
+            final long count = segmentCount(length, size);
+
+            long window = Math.max(1, MAX_WINDOW / (size + TAG_LENGTH));
+            for (long first = 0; first < count; first += window) {
+                final long from = first;
+                long to = Math.min(first + window, count);
+
+                long outStart = from * size;
+                long outEnd = Math.min(to * size, length);
+                final ByteBuffer inMap = in.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH + from * (size + TAG_LENGTH),
+                        outEnd - outStart + (to - from) * TAG_LENGTH);
+                final ByteBuffer outMap = out.map(FileChannel.MapMode.READ_WRITE, outStart, outEnd - outStart);
+
+                runSegments(from, to, index -> {
+                    int segmentLength = (int) Math.min(size, length - index * size);
+                    int relative = (int) (index - from);
+                    decryptSegment(header, index, index == count - 1,
+                            slice(inMap, relative * (size + TAG_LENGTH), segmentLength + TAG_LENGTH), slice(outMap, relative * size, segmentLength));
+                });
+            }
+            success = true;
+        } catch (EncryptException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        } finally {
+            if (!success) {
+                // don't leave the clear text of the segments before a tampered or truncated one
+                deleteQuietly(target);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the decryption failure is reported instead
+        }
+    }
+
+    /**
+     * Decrypts a range of the clear text from an encrypted file. Only the part of the file holding the
+     * segments that overlap the range is mapped, decrypted and authenticated.
+     * @param source file with the cipher text
+     * @param offset offset of the range in the clear text
+     * @param length length of the range
+     * @return Clear text of the range.
+     * @throws EncryptException If the range is out of bounds, or the cipher text is invalid or has been modified.
+     */
+    public byte[] decryptFile(Path source, long offset, int length) throws EncryptException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            Header header = Header.read(in);
+            long size = in.size();
+            long clearTextLength = getClearTextLength(header, size);
+            checkRange(offset, length, clearTextLength);
+
+            long regionStart = HEADER_LENGTH + offset / header.segmentSize * (header.segmentSize + TAG_LENGTH);
+            long regionEnd = length == 0 ? regionStart
+                    : Math.min(size, HEADER_LENGTH + ((offset + length - 1) / header.segmentSize + 1) * (header.segmentSize + TAG_LENGTH));
+            ByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, regionStart, regionEnd - regionStart);
+
+            return decryptRange(header, clearTextLength, region, offset, length);
+        } catch (EncryptException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptException(e);
+        }
+    }
+
+    /**
+     * Returns an output stream that encrypts everything written to it into the segmented format.
+     * Segments are encrypted sequentially as they fill up; the last segment is written when the
+     * stream is closed, which also closes the underlying stream.
+     * @param out underlying output stream to write the cipher text to
+     * @return Encrypting output stream.
+     */
+    public OutputStream newEncryptingStream(OutputStream out) {
+        return new EncryptingStream(out);
+    }
+
+    /**
+     * Returns an input stream that decrypts cipher text in the segmented format read from the given stream.
+     * Every segment is authenticated before its clear text is returned, so memory use is bounded by the
+     * segment size.
+     * @param in underlying input stream to read the cipher text from
+     * @return Decrypting input stream.
+     */
+    public InputStream newDecryptingStream(InputStream in) {
+        return new DecryptingStream(in);
+    }
+
+    private byte[] decryptRange(final Header header, long clearTextLength, final ByteBuffer region, long offset, int length) throws EncryptException {
+        if (length == 0) {
+            return new byte[0];
+        }
+
+        final int size = header.segmentSize;
+        final long first = offset / size;
+        long last = (offset + length - 1) / size;
+        final long count = segmentCount(clearTextLength, size);
+        final long end = Math.min((last + 1) * size, clearTextLength);
+
+        final ByteBuffer segments = ByteBuffer.allocate(toIntLength(end - first * size));
+
+        runSegments(first, last + 1, index -> {
+            int relative = (int) (index - first);
+            int segmentLength = (int) Math.min(size, end - index * size);
+            decryptSegment(header, index, index == count - 1,
+                    slice(region, relative * (size + TAG_LENGTH), segmentLength + TAG_LENGTH), slice(segments, relative * size, segmentLength));
+        });
+
+        byte[] output = new byte[length];
+        System.arraycopy(segments.array(), (int) (offset - first * size), output, 0, length);
+        return output;
+    }
+
+    private void encryptSegment(Header header, long index, boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        Cipher instance = getCipher();
+        instance.init(Cipher.ENCRYPT_MODE, header.key(key), new GCMParameterSpec(TAG_LENGTH * 8, header.nonce(index, last)));
+        instance.updateAAD(header.bytes);
+        instance.doFinal(in, out);
+    }
+
+    private void decryptSegment(Header header, long index, boolean last, ByteBuffer in, ByteBuffer out) throws GeneralSecurityException {
+        Cipher instance = getCipher();
+        instance.init(Cipher.DECRYPT_MODE, header.key(key), new GCMParameterSpec(TAG_LENGTH * 8, header.nonce(index, last)));
+        instance.updateAAD(header.bytes);
+        instance.doFinal(in, out);
+    }
+
+    private Cipher getCipher() throws GeneralSecurityException {
+        return EngineCache.getCipher(AES.GCM.getMode());
+    }
+
+    private void runSegments(long from, long to, SegmentTask task) throws EncryptException {
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        if (to - from == 1) {
+            new SegmentAction(from, to, task, failure).compute();
+        } else {
+            pool.invoke(new SegmentAction(from, to, task, failure));
+        }
+
+        if (failure.get() != null) {
+            throw new EncryptException(failure.get());
+        }
+    }
+
+    private static long getClearTextLength(Header header, long cipherTextLength) throws EncryptException {
+        long body = cipherTextLength - HEADER_LENGTH;
+        long fullSegment = header.segmentSize + TAG_LENGTH;
+
+        long count = (body + fullSegment - 1) / fullSegment;
+        if (body < TAG_LENGTH || body - (count - 1) * fullSegment < TAG_LENGTH) {
+            throw new EncryptException("Invalid cipher text length");
+        }
+        checkSegmentCount(count);
+
+        return body - count * TAG_LENGTH;
+    }
+
+    private static long segmentCount(long clearTextLength, int segmentSize) {
+        return clearTextLength == 0 ? 1 : (clearTextLength + segmentSize - 1) / segmentSize;
+    }
+
+    private static void checkSegmentCount(long count) throws EncryptException {
+        if (count > MAX_SEGMENTS) {
+            throw new EncryptException("Too many segments");
+        }
+    }
+
+    private static void checkRange(long offset, int length, long clearTextLength) throws EncryptException {
+        if (offset < 0 || length < 0 || offset + length > clearTextLength) {
+            throw new EncryptException("Range out of bounds");
+        }
+    }
+
+    private static int toIntLength(long length) throws EncryptException {
+        if (length > Integer.MAX_VALUE) {
+            throw new EncryptException("Data too large for a single buffer");
+        }
+        return (int) length;
+    }
+
+    // The casts to Buffer keep the compiled code compatible with the Java 8 ByteBuffer API.
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        int start = buffer.position() + offset;
+        ((Buffer) duplicate).limit(start + length);
+        ((Buffer) duplicate).position(start);
+        return duplicate.slice();
+    }
+
+    private static void advance(ByteBuffer buffer, int length) {
+        ((Buffer) buffer).position(buffer.position() + length);
+    }
+
+    private interface SegmentTask {
+        void run(long index) throws GeneralSecurityException;
+    }
+
+    private static class SegmentAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final SegmentTask task;
+        private final AtomicReference<Exception> failure;
+
+        SegmentAction(long from, long to, SegmentTask task, AtomicReference<Exception> failure) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long middle = (from + to) >>> 1;
+                invokeAll(new SegmentAction(from, middle, task, failure), new SegmentAction(middle, to, task, failure));
+                return;
+            }
+
+            // stop early once any segment failed
+            if (failure.get() != null) {
+                return;
+            }
+
+            try {
+                task.run(from);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private static class Header {
+        final byte[] bytes;
+        final int segmentSize;
+        // derived on first use, segments of the same cipher text may race to derive it
+        private volatile SecretKeySpec key;
+
+        private Header(byte[] bytes) {
+            this.bytes = bytes;
+            this.segmentSize = (bytes[1] & 0xff) << 24 | (bytes[2] & 0xff) << 16 | (bytes[3] & 0xff) << 8 | bytes[4] & 0xff;
+        }
+
+        static Header create(int segmentSize) {
+            byte[] bytes = new byte[HEADER_LENGTH];
+            bytes[0] = VERSION;
+            bytes[1] = (byte) (segmentSize >>> 24);
+            bytes[2] = (byte) (segmentSize >>> 16);
+            bytes[3] = (byte) (segmentSize >>> 8);
+            bytes[4] = (byte) segmentSize;
+            Salt.generate(bytes, 5, SALT_LENGTH + NONCE_PREFIX_LENGTH);
+            return new Header(bytes);
+        }
+
+        static Header read(ByteBuffer buffer) throws EncryptException {
+            if (buffer.remaining() < HEADER_LENGTH) {
+                throw new EncryptException("Cipher text too short");
+            }
+
+            byte[] bytes = new byte[HEADER_LENGTH];
+            buffer.duplicate().get(bytes);
+            return validate(bytes);
+        }
+
+        static Header read(FileChannel channel) throws IOException, EncryptException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) == -1) {
+                    throw new EncryptException("Cipher text too short");
+                }
+            }
+            return validate(buffer.array());
+        }
+
+        static Header read(InputStream in) throws IOException {
+            byte[] bytes = new byte[HEADER_LENGTH];
+            if (readFully(in, bytes, 0, HEADER_LENGTH) < HEADER_LENGTH) {
+                throw new IOException("Cipher text too short");
+            }
+
+            try {
+                return validate(bytes);
+            } catch (EncryptException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private static Header validate(byte[] bytes) throws EncryptException {
+            if (bytes[0] != VERSION) {
+                throw new EncryptException("Unsupported segmented cipher text version: " + bytes[0]);
+            }
+
+            Header header = new Header(bytes);
+            if (header.segmentSize <= 0 || header.segmentSize > MAX_WINDOW - TAG_LENGTH) {
+                throw new EncryptException("Invalid segment size: " + header.segmentSize);
+            }
+            return header;
+        }
+
+        SecretKeySpec key(byte[] masterKey) throws GeneralSecurityException {
+            SecretKeySpec derived = key;
+            if (derived == null) {
+                byte[] salt = Arrays.copyOfRange(bytes, 5, 5 + SALT_LENGTH);
+                byte[] keyBytes = Hkdf.sha256(salt, masterKey, KEY_INFO, masterKey.length);
+                derived = new SecretKeySpec(keyBytes, AES.ALGORITHM);
+                Arrays.fill(keyBytes, (byte) 0);
+                key = derived;
+            }
+            return derived;
+        }
+
+        byte[] nonce(long index, boolean last) {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            System.arraycopy(bytes, 5 + SALT_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+            nonce[7] = (byte) (index >>> 24);
+            nonce[8] = (byte) (index >>> 16);
+            nonce[9] = (byte) (index >>> 8);
+            nonce[10] = (byte) index;
+            nonce[11] = (byte) (last ? 1 : 0);
+            return nonce;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, offset + read, length - read);
+            if (count == -1) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private class EncryptingStream extends FilterOutputStream {
+        private final Header header = Header.create(segmentSize);
+        private final byte[] segment = new byte[segmentSize];
+        private final byte[] output = new byte[segmentSize + TAG_LENGTH];
+        private final byte[] singleByte = new byte[1];
+        private int segmentLength;
+        private long index;
+        private boolean headerWritten;
+        private boolean closed;
+
+        EncryptingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            singleByte[0] = (byte) b;
+            write(singleByte, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            while (len > 0) {
+                // a full segment is only written once more data arrives, the last one must carry the final flag
+                if (segmentLength == segmentSize) {
+                    writeSegment(false);
+                }
+
+                int n = Math.min(len, segmentSize - segmentLength);
+                System.arraycopy(b, off, segment, segmentLength, n);
+                segmentLength += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                writeSegment(true);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void writeSegment(boolean last) throws IOException {
+            if (index > MAX_SEGMENTS - 1) {
+                throw new IOException("Too many segments");
+            }
+
+            if (!headerWritten) {
+                out.write(header.bytes);
+                headerWritten = true;
+            }
+
+            try {
+                encryptSegment(header, index++, last, ByteBuffer.wrap(segment, 0, segmentLength), ByteBuffer.wrap(output));
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+
+            out.write(output, 0, segmentLength + TAG_LENGTH);
+            segmentLength = 0;
+        }
+    }
+
+    private class DecryptingStream extends FilterInputStream {
+        private final byte[] singleByte = new byte[1];
+        private Header header;
+        private byte[] input;
+        private byte[] output;
+        private int inputLength;
+        private int outputPosition;
+        private int outputLength;
+        private long index;
+        private boolean finished;
+
+        DecryptingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(singleByte, 0, 1);
+            return n == -1 ? -1 : singleByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            while (outputPosition == outputLength) {
+                if (finished) {
+                    return -1;
+                }
+                readSegment();
+            }
+
+            int n = Math.min(len, outputLength - outputPosition);
+            System.arraycopy(output, outputPosition, b, off, n);
+            outputPosition += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                if (outputPosition == outputLength) {
+                    if (finished) {
+                        break;
+                    }
+                    readSegment();
+                    continue;
+                }
+
+                int count = (int) Math.min(n - skipped, outputLength - outputPosition);
+                outputPosition += count;
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return outputLength - outputPosition;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        private void readSegment() throws IOException {
+            if (header == null) {
+                header = Header.read(in);
+                // one extra byte to look ahead whether another segment follows
+                input = new byte[header.segmentSize + TAG_LENGTH + 1];
+                output = new byte[header.segmentSize];
+            }
+
+            int segment = header.segmentSize + TAG_LENGTH;
+            inputLength += readFully(in, input, inputLength, input.length - inputLength);
+
+            boolean last = inputLength <= segment;
+            int length = Math.min(inputLength, segment);
+            if (length < TAG_LENGTH) {
+                throw new IOException("Invalid cipher text length");
+            }
+            if (index > MAX_SEGMENTS - 1) {
+                throw new IOException("Too many segments");
+            }
+
+            try {
+                outputPosition = 0;
+                outputLength = length - TAG_LENGTH;
+                decryptSegment(header, index++, last, ByteBuffer.wrap(input, 0, length), ByteBuffer.wrap(output));
+            } catch (GeneralSecurityException e) {
+                outputLength = 0;
+                throw new IOException(e);
+            }
+
+            if (last) {
+                finished = true;
+            } else {
+                // keep the look-ahead byte as the start of the next segment
+                input[0] = input[segment];
+                inputLength = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package dev.medzik.libcrypto;
+
+import java.util.Arrays;
+
+/**
+ * Pure-Java X25519 (RFC 7748).
+ * <p>
+ * Field elements of GF(2^255 - 19) are stored in ten signed limbs of alternating 26 and 25 bits, the
+ * representation of the ref10 implementation. Products of two limbs fit in a {@code long}, so a field
+ * multiplication is 100 64-bit multiplications without 128-bit intermediates, which Java 8 does not have.
+ * The scalar multiplication is a Montgomery ladder with a conditional swap driven by masks instead of
+ * branches, so the sequence of operations and memory accesses does not depend on the secret scalar.
+ */
+final class X25519 {
+    private static final int A24 = 121665;
+
+    private X25519() {
+    }
+
+    /**
+     * Computes the X25519 function of the scalar and u-coordinate and writes the result into the output.
+     * @param scalar scalar (32 bytes), clamped on a copy
+     * @param u u-coordinate (32 bytes)
+     * @param output array to write the result into
+     * @param offset offset in the output array
+     */
+    static void scalarMult(byte[] scalar, byte[] u, byte[] output, int offset) {
+        byte[] e = clamp(scalar);
+        try {
+            int[] x1 = new int[10];
+            fromBytes(x1, u);
+            ladder(e, x1, output, offset);
+        } finally {
+            Arrays.fill(e, (byte) 0);
+        }
+    }
+
+    /**
+     * Computes the public key of the scalar (the X25519 function of the scalar and the base point 9).
+     * @param scalar scalar (32 bytes), clamped on a copy
+     * @param output array to write the public key into
+     * @param offset offset in the output array
+     */
+    static void scalarMultBase(byte[] scalar, byte[] output, int offset) {
+        byte[] e = clamp(scalar);
+        try {
+            int[] x1 = new int[10];
+            x1[0] = 9;
+            ladder(e, x1, output, offset);
+        } finally {
+            Arrays.fill(e, (byte) 0);
+        }
+    }
+
+    private static byte[] clamp(byte[] scalar) {
+        byte[] e = Arrays.copyOf(scalar, 32);
+        e[0] &= (byte) 248;
+        e[31] &= 127;
+        e[31] |= 64;
+        return e;
+    }
+
+    private static void ladder(byte[] e, int[] x1, byte[] output, int offset) {
+        int[] x2 = new int[10];
+        int[] z2 = new int[10];
+        int[] x3 = x1.clone();
+        int[] z3 = new int[10];
+        int[] a = new int[10];
+        int[] aa = new int[10];
+        int[] b = new int[10];
+        int[] bb = new int[10];
+        int[] c = new int[10];
+        int[] d = new int[10];
+        int[] t = new int[10];
+        x2[0] = 1;
+        z3[0] = 1;
+
+        int swap = 0;
+        for (int pos = 254; pos >= 0; pos--) {
+            int bit = (e[pos >>> 3] >>> (pos & 7)) & 1;
+            swap ^= bit;
+            cswap(x2, x3, swap);
+            cswap(z2, z3, swap);
+            swap = bit;
+
+            add(a, x2, z2);
+            sub(b, x2, z2);
+            add(c, x3, z3);
+            sub(d, x3, z3);
+            sq(aa, a);
+            sq(bb, b);
+            // d = DA, c = CB
+            mul(d, d, a);
+            mul(c, c, b);
+            add(x3, d, c);
+            sq(x3, x3);
+            sub(z3, d, c);
+            sq(z3, z3);
+            mul(z3, z3, x1);
+            mul(x2, aa, bb);
+            // t = E, z2 = E * (AA + a24 * E)
+            sub(t, aa, bb);
+            mulSmall(z2, t, A24);
+            add(z2, z2, aa);
+            mul(z2, z2, t);
+        }
+        cswap(x2, x3, swap);
+        cswap(z2, z3, swap);
+
+        invert(z2, z2);
+        mul(x2, x2, z2);
+        toBytes(output, offset, x2);
+
+        for (int[] fe : new int[][]{x2, z2, x3, z3, a, aa, b, bb, c, d, t}) {
+            Arrays.fill(fe, 0);
+        }
+    }
+
+    /**
+     * Swaps f and g if swap is 1, leaves them unchanged if it is 0.
+     */
+    private static void cswap(int[] f, int[] g, int swap) {
+        int mask = -swap;
+        for (int i = 0; i < 10; i++) {
+            int x = mask & (f[i] ^ g[i]);
+            f[i] ^= x;
+            g[i] ^= x;
+        }
+    }
+
+    private static void add(int[] h, int[] f, int[] g) {
+        for (int i = 0; i < 10; i++) {
+            h[i] = f[i] + g[i];
+        }
+    }
+
+    private static void sub(int[] h, int[] f, int[] g) {
+        for (int i = 0; i < 10; i++) {
+            h[i] = f[i] - g[i];
+        }
+    }
+
+    private static void mul(int[] h, int[] f, int[] g) {
+        long f0 = f[0], f1 = f[1], f2 = f[2], f3 = f[3], f4 = f[4], f5 = f[5], f6 = f[6], f7 = f[7], f8 = f[8], f9 = f[9];
+        long g0 = g[0], g1 = g[1], g2 = g[2], g3 = g[3], g4 = g[4], g5 = g[5], g6 = g[6], g7 = g[7], g8 = g[8], g9 = g[9];
+        long g1_19 = 19 * g1, g2_19 = 19 * g2, g3_19 = 19 * g3, g4_19 = 19 * g4, g5_19 = 19 * g5;
+        long g6_19 = 19 * g6, g7_19 = 19 * g7, g8_19 = 19 * g8, g9_19 = 19 * g9;
+        long f1_2 = 2 * f1, f3_2 = 2 * f3, f5_2 = 2 * f5, f7_2 = 2 * f7, f9_2 = 2 * f9;
+
+        long h0 = f0 * g0 + f1_2 * g9_19 + f2 * g8_19 + f3_2 * g7_19 + f4 * g6_19 + f5_2 * g5_19 + f6 * g4_19 + f7_2 * g3_19 + f8 * g2_19 + f9_2 * g1_19;
+        long h1 = f0 * g1 + f1 * g0 + f2 * g9_19 + f3 * g8_19 + f4 * g7_19 + f5 * g6_19 + f6 * g5_19 + f7 * g4_19 + f8 * g3_19 + f9 * g2_19;
+        long h2 = f0 * g2 + f1_2 * g1 + f2 * g0 + f3_2 * g9_19 + f4 * g8_19 + f5_2 * g7_19 + f6 * g6_19 + f7_2 * g5_19 + f8 * g4_19 + f9_2 * g3_19;
+        long h3 = f0 * g3 + f1 * g2 + f2 * g1 + f3 * g0 + f4 * g9_19 + f5 * g8_19 + f6 * g7_19 + f7 * g6_19 + f8 * g5_19 + f9 * g4_19;
+        long h4 = f0 * g4 + f1_2 * g3 + f2 * g2 + f3_2 * g1 + f4 * g0 + f5_2 * g9_19 + f6 * g8_19 + f7_2 * g7_19 + f8 * g6_19 + f9_2 * g5_19;
+        long h5 = f0 * g5 + f1 * g4 + f2 * g3 + f3 * g2 + f4 * g1 + f5 * g0 + f6 * g9_19 + f7 * g8_19 + f8 * g7_19 + f9 * g6_19;
+        long h6 = f0 * g6 + f1_2 * g5 + f2 * g4 + f3_2 * g3 + f4 * g2 + f5_2 * g1 + f6 * g0 + f7_2 * g9_19 + f8 * g8_19 + f9_2 * g7_19;
+        long h7 = f0 * g7 + f1 * g6 + f2 * g5 + f3 * g4 + f4 * g3 + f5 * g2 + f6 * g1 + f7 * g0 + f8 * g9_19 + f9 * g8_19;
+        long h8 = f0 * g8 + f1_2 * g7 + f2 * g6 + f3_2 * g5 + f4 * g4 + f5_2 * g3 + f6 * g2 + f7_2 * g1 + f8 * g0 + f9_2 * g9_19;
+        long h9 = f0 * g9 + f1 * g8 + f2 * g7 + f3 * g6 + f4 * g5 + f5 * g4 + f6 * g3 + f7 * g2 + f8 * g1 + f9 * g0;
+
+        long carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+        long carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry1 = (h1 + (1L << 24)) >> 25; h2 += carry1; h1 -= carry1 << 25;
+        long carry5 = (h5 + (1L << 24)) >> 25; h6 += carry5; h5 -= carry5 << 25;
+        long carry2 = (h2 + (1L << 25)) >> 26; h3 += carry2; h2 -= carry2 << 26;
+        long carry6 = (h6 + (1L << 25)) >> 26; h7 += carry6; h6 -= carry6 << 26;
+        long carry3 = (h3 + (1L << 24)) >> 25; h4 += carry3; h3 -= carry3 << 25;
+        long carry7 = (h7 + (1L << 24)) >> 25; h8 += carry7; h7 -= carry7 << 25;
+        carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry8 = (h8 + (1L << 25)) >> 26; h9 += carry8; h8 -= carry8 << 26;
+        long carry9 = (h9 + (1L << 24)) >> 25; h0 += carry9 * 19; h9 -= carry9 << 25;
+        carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+
+        store(h, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+
+    private static void sq(int[] h, int[] f) {
+        long f0 = f[0], f1 = f[1], f2 = f[2], f3 = f[3], f4 = f[4], f5 = f[5], f6 = f[6], f7 = f[7], f8 = f[8], f9 = f[9];
+        long f0_2 = 2 * f0, f1_2 = 2 * f1, f2_2 = 2 * f2, f3_2 = 2 * f3, f4_2 = 2 * f4, f5_2 = 2 * f5, f6_2 = 2 * f6, f7_2 = 2 * f7;
+        long f5_38 = 38 * f5, f6_19 = 19 * f6, f7_38 = 38 * f7, f8_19 = 19 * f8, f9_38 = 38 * f9;
+
+        long h0 = f0 * f0 + f1_2 * f9_38 + f2_2 * f8_19 + f3_2 * f7_38 + f4_2 * f6_19 + f5 * f5_38;
+        long h1 = f0_2 * f1 + f2 * f9_38 + f3_2 * f8_19 + f4 * f7_38 + f5_2 * f6_19;
+        long h2 = f0_2 * f2 + f1_2 * f1 + f3_2 * f9_38 + f4_2 * f8_19 + f5_2 * f7_38 + f6 * f6_19;
+        long h3 = f0_2 * f3 + f1_2 * f2 + f4 * f9_38 + f5_2 * f8_19 + f6 * f7_38;
+        long h4 = f0_2 * f4 + f1_2 * f3_2 + f2 * f2 + f5_2 * f9_38 + f6_2 * f8_19 + f7 * f7_38;
+        long h5 = f0_2 * f5 + f1_2 * f4 + f2_2 * f3 + f6 * f9_38 + f7_2 * f8_19;
+        long h6 = f0_2 * f6 + f1_2 * f5_2 + f2_2 * f4 + f3_2 * f3 + f7_2 * f9_38 + f8 * f8_19;
+        long h7 = f0_2 * f7 + f1_2 * f6 + f2_2 * f5 + f3_2 * f4 + f8 * f9_38;
+        long h8 = f0_2 * f8 + f1_2 * f7_2 + f2_2 * f6 + f3_2 * f5_2 + f4 * f4 + f9 * f9_38;
+        long h9 = f0_2 * f9 + f1_2 * f8 + f2_2 * f7 + f3_2 * f6 + f4_2 * f5;
+
+        long carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+        long carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry1 = (h1 + (1L << 24)) >> 25; h2 += carry1; h1 -= carry1 << 25;
+        long carry5 = (h5 + (1L << 24)) >> 25; h6 += carry5; h5 -= carry5 << 25;
+        long carry2 = (h2 + (1L << 25)) >> 26; h3 += carry2; h2 -= carry2 << 26;
+        long carry6 = (h6 + (1L << 25)) >> 26; h7 += carry6; h6 -= carry6 << 26;
+        long carry3 = (h3 + (1L << 24)) >> 25; h4 += carry3; h3 -= carry3 << 25;
+        long carry7 = (h7 + (1L << 24)) >> 25; h8 += carry7; h7 -= carry7 << 25;
+        carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry8 = (h8 + (1L << 25)) >> 26; h9 += carry8; h8 -= carry8 << 26;
+        long carry9 = (h9 + (1L << 24)) >> 25; h0 += carry9 * 19; h9 -= carry9 << 25;
+        carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+
+        store(h, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+
+    private static void mulSmall(int[] h, int[] f, int n) {
+        long h0 = (long) f[0] * n, h1 = (long) f[1] * n, h2 = (long) f[2] * n, h3 = (long) f[3] * n, h4 = (long) f[4] * n;
+        long h5 = (long) f[5] * n, h6 = (long) f[6] * n, h7 = (long) f[7] * n, h8 = (long) f[8] * n, h9 = (long) f[9] * n;
+
+        long carry9 = (h9 + (1L << 24)) >> 25; h0 += carry9 * 19; h9 -= carry9 << 25;
+        long carry1 = (h1 + (1L << 24)) >> 25; h2 += carry1; h1 -= carry1 << 25;
+        long carry3 = (h3 + (1L << 24)) >> 25; h4 += carry3; h3 -= carry3 << 25;
+        long carry5 = (h5 + (1L << 24)) >> 25; h6 += carry5; h5 -= carry5 << 25;
+        long carry7 = (h7 + (1L << 24)) >> 25; h8 += carry7; h7 -= carry7 << 25;
+        long carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+        long carry2 = (h2 + (1L << 25)) >> 26; h3 += carry2; h2 -= carry2 << 26;
+        long carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry6 = (h6 + (1L << 25)) >> 26; h7 += carry6; h6 -= carry6 << 26;
+        long carry8 = (h8 + (1L << 25)) >> 26; h9 += carry8; h8 -= carry8 << 26;
+
+        store(h, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+
+    private static void store(int[] h, long h0, long h1, long h2, long h3, long h4, long h5, long h6, long h7, long h8, long h9) {
+        h[0] = (int) h0;
+        h[1] = (int) h1;
+        h[2] = (int) h2;
+        h[3] = (int) h3;
+        h[4] = (int) h4;
+        h[5] = (int) h5;
+        h[6] = (int) h6;
+        h[7] = (int) h7;
+        h[8] = (int) h8;
+        h[9] = (int) h9;
+    }
+
+    /**
+     * Computes z^(p - 2) = 1 / z with the addition chain of ref10.
+     */
+    private static void invert(int[] out, int[] z) {
+        int[] t0 = new int[10];
+        int[] t1 = new int[10];
+        int[] t2 = new int[10];
+        int[] t3 = new int[10];
+
+        sq(t0, z);
+        sq(t1, t0);
+        sq(t1, t1);
+        mul(t1, z, t1);
+        mul(t0, t0, t1);
+        sq(t2, t0);
+        mul(t1, t1, t2);
+        sq(t2, t1);
+        sqTimes(t2, 4);
+        mul(t1, t2, t1);
+        sq(t2, t1);
+        sqTimes(t2, 9);
+        mul(t2, t2, t1);
+        sq(t3, t2);
+        sqTimes(t3, 19);
+        mul(t2, t3, t2);
+        sq(t2, t2);
+        sqTimes(t2, 9);
+        mul(t1, t2, t1);
+        sq(t2, t1);
+        sqTimes(t2, 49);
+        mul(t2, t2, t1);
+        sq(t3, t2);
+        sqTimes(t3, 99);
+        mul(t2, t3, t2);
+        sq(t2, t2);
+        sqTimes(t2, 49);
+        mul(t1, t2, t1);
+        sq(t1, t1);
+        sqTimes(t1, 4);
+        mul(out, t1, t0);
+    }
+
+    private static void sqTimes(int[] f, int times) {
+        for (int i = 0; i < times; i++) {
+            sq(f, f);
+        }
+    }
+
+    private static long load3(byte[] s, int i) {
+        return (s[i] & 0xffL) | (s[i + 1] & 0xffL) << 8 | (s[i + 2] & 0xffL) << 16;
+    }
+
+    private static long load4(byte[] s, int i) {
+        return load3(s, i) | (s[i + 3] & 0xffL) << 24;
+    }
+
+    /**
+     * Decodes a u-coordinate, ignoring the most significant bit as required by RFC 7748.
+     */
+    private static void fromBytes(int[] h, byte[] s) {
+        long h0 = load4(s, 0);
+        long h1 = load3(s, 4) << 6;
+        long h2 = load3(s, 7) << 5;
+        long h3 = load3(s, 10) << 3;
+        long h4 = load3(s, 13) << 2;
+        long h5 = load4(s, 16);
+        long h6 = load3(s, 20) << 7;
+        long h7 = load3(s, 23) << 5;
+        long h8 = load3(s, 26) << 4;
+        long h9 = (load3(s, 29) & 0x7fffff) << 2;
+
+        long carry9 = (h9 + (1L << 24)) >> 25; h0 += carry9 * 19; h9 -= carry9 << 25;
+        long carry1 = (h1 + (1L << 24)) >> 25; h2 += carry1; h1 -= carry1 << 25;
+        long carry3 = (h3 + (1L << 24)) >> 25; h4 += carry3; h3 -= carry3 << 25;
+        long carry5 = (h5 + (1L << 24)) >> 25; h6 += carry5; h5 -= carry5 << 25;
+        long carry7 = (h7 + (1L << 24)) >> 25; h8 += carry7; h7 -= carry7 << 25;
+        long carry0 = (h0 + (1L << 25)) >> 26; h1 += carry0; h0 -= carry0 << 26;
+        long carry2 = (h2 + (1L << 25)) >> 26; h3 += carry2; h2 -= carry2 << 26;
+        long carry4 = (h4 + (1L << 25)) >> 26; h5 += carry4; h4 -= carry4 << 26;
+        long carry6 = (h6 + (1L << 25)) >> 26; h7 += carry6; h6 -= carry6 << 26;
+        long carry8 = (h8 + (1L << 25)) >> 26; h9 += carry8; h8 -= carry8 << 26;
+
+        store(h, h0, h1, h2, h3, h4, h5, h6, h7, h8, h9);
+    }
+
+    /**
+     * Encodes the fully reduced field element in little endian.
+     */
+    private static void toBytes(byte[] s, int offset, int[] h) {
+        int h0 = h[0], h1 = h[1], h2 = h[2], h3 = h[3], h4 = h[4], h5 = h[5], h6 = h[6], h7 = h[7], h8 = h[8], h9 = h[9];
+
+        // q is 1 if h >= p, 0 otherwise
+        int q = (19 * h9 + (1 << 24)) >> 25;
+        q = (h0 + q) >> 26;
+        q = (h1 + q) >> 25;
+        q = (h2 + q) >> 26;
+        q = (h3 + q) >> 25;
+        q = (h4 + q) >> 26;
+        q = (h5 + q) >> 25;
+        q = (h6 + q) >> 26;
+        q = (h7 + q) >> 25;
+        q = (h8 + q) >> 26;
+        q = (h9 + q) >> 25;
+
+        // h - p * q, computed as h + 19 * q - 2^255 * q
+        h0 += 19 * q;
+        int carry0 = h0 >> 26; h1 += carry0; h0 -= carry0 << 26;
+        int carry1 = h1 >> 25; h2 += carry1; h1 -= carry1 << 25;
+        int carry2 = h2 >> 26; h3 += carry2; h2 -= carry2 << 26;
+        int carry3 = h3 >> 25; h4 += carry3; h3 -= carry3 << 25;
+        int carry4 = h4 >> 26; h5 += carry4; h4 -= carry4 << 26;
+        int carry5 = h5 >> 25; h6 += carry5; h5 -= carry5 << 25;
+        int carry6 = h6 >> 26; h7 += carry6; h6 -= carry6 << 26;
+        int carry7 = h7 >> 25; h8 += carry7; h7 -= carry7 << 25;
+        int carry8 = h8 >> 26; h9 += carry8; h8 -= carry8 << 26;
+        int carry9 = h9 >> 25; h9 -= carry9 << 25;
+
+        s[offset] = (byte) h0;
+        s[offset + 1] = (byte) (h0 >> 8);
+        s[offset + 2] = (byte) (h0 >> 16);
+        s[offset + 3] = (byte) ((h0 >> 24) | (h1 << 2));
+        s[offset + 4] = (byte) (h1 >> 6);
+        s[offset + 5] = (byte) (h1 >> 14);
+        s[offset + 6] = (byte) ((h1 >> 22) | (h2 << 3));
+        s[offset + 7] = (byte) (h2 >> 5);
+        s[offset + 8] = (byte) (h2 >> 13);
+        s[offset + 9] = (byte) ((h2 >> 21) | (h3 << 5));
+        s[offset + 10] = (byte) (h3 >> 3);
+        s[offset + 11] = (byte) (h3 >> 11);
+        s[offset + 12] = (byte) ((h3 >> 19) | (h4 << 6));
+        s[offset + 13] = (byte) (h4 >> 2);
+        s[offset + 14] = (byte) (h4 >> 10);
+        s[offset + 15] = (byte) (h4 >> 18);
+        s[offset + 16] = (byte) h5;
+        s[offset + 17] = (byte) (h5 >> 8);
+        s[offset + 18] = (byte) (h5 >> 16);
+        s[offset + 19] = (byte) ((h5 >> 24) | (h6 << 1));
+        s[offset + 20] = (byte) (h6 >> 7);
+        s[offset + 21] = (byte) (h6 >> 15);
+        s[offset + 22] = (byte) ((h6 >> 23) | (h7 << 3));
+        s[offset + 23] = (byte) (h7 >> 5);
+        s[offset + 24] = (byte) (h7 >> 13);
+        s[offset + 25] = (byte) ((h7 >> 21) | (h8 << 4));
+        s[offset + 26] = (byte) (h8 >> 4);
+        s[offset + 27] = (byte) (h8 >> 12);
+        s[offset + 28] = (byte) ((h8 >> 20) | (h9 << 6));
+        s[offset + 29] = (byte) (h9 >> 2);
+        s[offset + 30] = (byte) (h9 >> 10);
+        s[offset + 31] = (byte) (h9 >> 18);
+    }
+}
@@ -1,8 +1,16 @@
 package dev.medzik.libcrypto;
 
+import org.apache.commons.codec.binary.Hex;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class AESTests {
     @Test
@@ -46,4 +54,126 @@ public class AESTests {
 
         assertEquals("hello world", clearText);
     }
+
+    @Test
+    void encryptAndDecryptBytes() throws Exception {
+        byte[] secretKey = Hex.decodeHex(new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes()));
+
+        for (AES.AesType type : AES.AesType.values()) {
+            byte[] input = "Hello World!".getBytes();
+            byte[] cipherText = AES.encrypt(type, secretKey, input);
+
+            assertEquals(AES.getEncryptedLength(type, input.length), cipherText.length);
+            assertArrayEquals(input, AES.decrypt(type, secretKey, cipherText));
+        }
+    }
+
+    @Test
+    void decryptBytesFromHexOutput() throws Exception {
+        String secretKey = new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes());
+
+        byte[] cipherText = Hex.decodeHex("0996c65a72a60e748415dc6d32da1d4dcb65f41c71d4bec9554424218839b5d4b9d9195e5eea9d");
+        byte[] clearText = AES.decrypt(AES.GCM, Hex.decodeHex(secretKey), cipherText);
+
+        assertEquals("hello world", new String(clearText));
+    }
+
+    @Test
+    void encryptAndDecryptIntoArrays() throws Exception {
+        byte[] secretKey = Hex.decodeHex(new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes()));
+
+        for (AES.AesType type : AES.AesType.values()) {
+            byte[] input = "xxHello World!xx".getBytes();
+
+            byte[] cipherText = new byte[4 + AES.getEncryptedLength(type, 12)];
+            int cipherLength = AES.encrypt(type, secretKey, input, 2, 12, cipherText, 4);
+            assertEquals(AES.getEncryptedLength(type, 12), cipherLength);
+
+            byte[] clearText = new byte[AES.getMaxDecryptedLength(type, cipherLength)];
+            int clearLength = AES.decrypt(type, secretKey, cipherText, 4, cipherLength, clearText, 0);
+            assertEquals("Hello World!", new String(clearText, 0, clearLength));
+        }
+    }
+
+    @Test
+    void encryptAndDecryptDirectBuffers() throws Exception {
+        byte[] secretKey = Hex.decodeHex(new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes()));
+
+        for (AES.AesType type : AES.AesType.values()) {
+            byte[] input = "Hello World!".getBytes();
+
+            ByteBuffer clearBuffer = ByteBuffer.allocateDirect(input.length);
+            clearBuffer.put(input);
+            clearBuffer.flip();
+
+            ByteBuffer cipherBuffer = ByteBuffer.allocateDirect(AES.getEncryptedLength(type, input.length));
+            AES.encrypt(type, secretKey, clearBuffer, cipherBuffer);
+            cipherBuffer.flip();
+
+            ByteBuffer outputBuffer = ByteBuffer.allocateDirect(AES.getMaxDecryptedLength(type, cipherBuffer.remaining()));
+            int clearLength = AES.decrypt(type, secretKey, cipherBuffer, outputBuffer);
+            outputBuffer.flip();
+
+            byte[] clearText = new byte[clearLength];
+            outputBuffer.get(clearText);
+            assertArrayEquals(input, clearText);
+        }
+    }
+
+    @Test
+    void encryptIntoTooSmallBuffer() throws Exception {
+        byte[] secretKey = Hex.decodeHex(new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes()));
+
+        byte[] input = "Hello World!".getBytes();
+        byte[] output = new byte[input.length];
+
+        assertThrows(EncryptException.class, () -> AES.encrypt(AES.GCM, secretKey, input, 0, input.length, output, 0));
+    }
+
+    @Test
+    void decryptParallelCBC() throws Exception {
+        byte[] secretKey = Salt.generate(32);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (int length : new int[]{0, 100, 1024 * 1024, 3 * 1024 * 1024 + 7, 4 * 1024 * 1024}) {
+                byte[] input = new byte[length];
+                new Random(length).nextBytes(input);
+
+                byte[] cipherText = AES.encrypt(AES.CBC, secretKey, input);
+
+                assertArrayEquals(input, AES.decryptParallel(AES.CBC, secretKey, cipherText, pool));
+                assertArrayEquals(AES.decrypt(AES.CBC, secretKey, cipherText), AES.decryptParallel(AES.CBC, secretKey, cipherText));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void decryptParallelWithInvalidPaddingFails() throws Exception {
+        byte[] secretKey = Salt.generate(32);
+        byte[] iv = Salt.generate(16);
+
+        // encrypt without padding, a final block ending with 0 is never valid PKCS5 padding
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(secretKey, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(new byte[2 * 1024 * 1024]);
+
+        byte[] cipherText = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, cipherText, 0, iv.length);
+        System.arraycopy(encrypted, 0, cipherText, iv.length, encrypted.length);
+
+        assertThrows(EncryptException.class, () -> AES.decryptParallel(AES.CBC, secretKey, cipherText));
+    }
+
+    @Test
+    void decryptParallelGCM() throws Exception {
+        byte[] secretKey = Salt.generate(32);
+        byte[] input = new byte[1024 * 1024];
+
+        byte[] cipherText = AES.encrypt(AES.GCM, secretKey, input);
+
+        assertArrayEquals(input, AES.decryptParallel(AES.GCM, secretKey, cipherText));
+    }
 }
@@ -0,0 +1,167 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AesContextTests {
+    @Test
+    void encryptAndDecrypt() throws Exception {
+        String secretKey = new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes());
+
+        for (AES.AesType type : AES.AesType.values()) {
+            AesContext context = new AesContext(type, secretKey);
+
+            for (int i = 0; i < 10; i++) {
+                String input = "Hello World! " + i;
+                String cipherText = context.encrypt(input);
+
+                assertEquals(input, context.decrypt(cipherText));
+                // compatible with the static methods
+                assertEquals(input, AES.decrypt(type, secretKey, cipherText));
+            }
+        }
+    }
+
+    @Test
+    void decryptStaticOutput() throws EncryptException {
+        String secretKey = new Pbkdf2(1000).sha256("secret passphrase", "salt".getBytes());
+
+        AesContext cbc = new AesContext(AES.CBC, secretKey);
+        assertEquals("hello world", cbc.decrypt("ae77d812f4494a766a94b5dff8e7aa3c8408544b9fd30cd13b886cc5dd1b190e"));
+
+        AesContext gcm = new AesContext(AES.GCM, secretKey);
+        assertEquals("hello world", gcm.decrypt("0996c65a72a60e748415dc6d32da1d4dcb65f41c71d4bec9554424218839b5d4b9d9195e5eea9d"));
+    }
+
+    @Test
+    void decryptWithWrongKeyFails() throws Exception {
+        AesContext context = new AesContext(AES.GCM, Salt.generate(32));
+        AesContext other = new AesContext(AES.GCM, Salt.generate(32));
+
+        byte[] cipherText = context.encrypt("Hello World!".getBytes());
+
+        assertThrows(EncryptException.class, () -> other.decrypt(cipherText));
+        // a failed decryption doesn't break the cached cipher
+        assertArrayEquals("Hello World!".getBytes(), context.decrypt(cipherText));
+    }
+
+    @Test
+    void shareBetweenThreads() throws Exception {
+        AesContext context = new AesContext(AES.GCM, Hex.encodeHexString(Salt.generate(32)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String input = "message " + i;
+                results.add(executor.submit(() -> context.decrypt(context.encrypt(input))));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals("message " + i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void encryptAndDecryptBatch() throws Exception {
+        for (AES.AesType type : AES.AesType.values()) {
+            AesContext context = new AesContext(type, Salt.generate(32));
+
+            for (boolean parallel : new boolean[]{false, true}) {
+                byte[][] clearTexts = new byte[200][];
+                for (int i = 0; i < clearTexts.length; i++) {
+                    clearTexts[i] = ("record " + i).getBytes();
+                }
+
+                AesBatchResult encrypted = context.encryptBatch(clearTexts, parallel);
+                assertEquals(clearTexts.length, encrypted.size());
+                assertEquals(0, encrypted.getFailureCount());
+
+                byte[][] cipherTexts = new byte[clearTexts.length][];
+                for (int i = 0; i < clearTexts.length; i++) {
+                    cipherTexts[i] = encrypted.get(i);
+                    assertArrayEquals(clearTexts[i], context.decrypt(cipherTexts[i]));
+                }
+
+                AesBatchResult decrypted = context.decryptBatch(cipherTexts, parallel);
+                for (int i = 0; i < clearTexts.length; i++) {
+                    assertArrayEquals(clearTexts[i], decrypted.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void decryptBatchReportsFailures() throws Exception {
+        byte[] key = Salt.generate(32);
+        AesContext context = new AesContext(AES.GCM, key);
+
+        byte[] tampered = context.encrypt("second".getBytes());
+        tampered[tampered.length - 1] ^= 1;
+
+        byte[][] cipherTexts = {
+                context.encrypt("first".getBytes()),
+                tampered,
+                new byte[3],
+                null,
+                AES.encrypt(AES.GCM, key, "fifth".getBytes())
+        };
+
+        AesBatchResult result = AES.decryptBatch(AES.GCM, key, cipherTexts);
+
+        assertEquals(3, result.getFailureCount());
+        assertArrayEquals("first".getBytes(), result.get(0));
+        assertFalse(result.isSuccess(1));
+        assertFalse(result.isSuccess(2));
+        assertFalse(result.isSuccess(3));
+        assertThrows(EncryptException.class, () -> result.get(1));
+        assertArrayEquals("fifth".getBytes(), result.get(4));
+    }
+
+    @Test
+    void encryptPackedBatch() throws Exception {
+        AesContext context = new AesContext(AES.CBC, Salt.generate(32));
+
+        byte[] data = "onetwothree".getBytes();
+        int[] offsets = {0, 3, 6};
+        int[] lengths = {3, 3, 5};
+
+        AesBatchResult encrypted = context.encryptBatch(data, offsets, lengths);
+        AesBatchResult decrypted = context.decryptBatch(encrypted.getData(),
+                new int[]{encrypted.getOffset(0), encrypted.getOffset(1), encrypted.getOffset(2)},
+                new int[]{encrypted.getLength(0), encrypted.getLength(1), encrypted.getLength(2)});
+
+        assertEquals("one", new String(decrypted.get(0)));
+        assertEquals("two", new String(decrypted.get(1)));
+        assertEquals("three", new String(decrypted.get(2)));
+    }
+
+    @Test
+    void packedBatchReportsInvalidRanges() throws Exception {
+        AesContext context = new AesContext(AES.GCM, Salt.generate(32));
+
+        byte[] data = "onetwothree".getBytes();
+        int[] offsets = {0, 3, -1, 6, 8};
+        int[] lengths = {3, -100, 3, 5, 5};
+
+        AesBatchResult encrypted = context.encryptBatch(data, offsets, lengths);
+
+        assertEquals(3, encrypted.getFailureCount());
+        assertFalse(encrypted.isSuccess(1));
+        assertFalse(encrypted.isSuccess(2));
+        assertFalse(encrypted.isSuccess(4));
+        assertEquals("one", new String(context.decrypt(encrypted.get(0))));
+        assertEquals("three", new String(context.decrypt(encrypted.get(3))));
+    }
+}
@@ -0,0 +1,124 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AesStreamTests {
+    byte[] key = Salt.generate(32);
+
+    @Test
+    void encryptAndDecryptStream() throws Exception {
+        byte[] input = new byte[100_000];
+        new Random(1).nextBytes(input);
+
+        for (AES.AesType type : AES.AesType.values()) {
+            ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            try (OutputStream out = new AesOutputStream(type, key, cipherText)) {
+                // write in uneven pieces to cross chunk and block boundaries
+                int offset = 0;
+                int piece = 1;
+                while (offset < input.length) {
+                    int length = Math.min(piece, input.length - offset);
+                    out.write(input, offset, length);
+                    offset += length;
+                    piece = piece * 3 + 1;
+                }
+            }
+
+            assertEquals(AES.getEncryptedLength(type, input.length), cipherText.size());
+
+            if (type == AES.GCM) {
+                assertArrayEquals(input, AES.decrypt(type, key, cipherText.toByteArray()));
+                continue;
+            }
+            try (InputStream in = new AesInputStream(type, key, new ByteArrayInputStream(cipherText.toByteArray()))) {
+                assertArrayEquals(input, readAll(in));
+            }
+        }
+    }
+
+    @Test
+    void compatibleWithAesMethods() throws Exception {
+        byte[] input = "Hello World!".getBytes();
+
+        for (AES.AesType type : AES.AesType.values()) {
+            ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            try (OutputStream out = new AesOutputStream(type, key, cipherText)) {
+                out.write(input);
+            }
+            assertArrayEquals(input, AES.decrypt(type, key, cipherText.toByteArray()));
+        }
+
+        byte[] encrypted = AES.encrypt(AES.CBC, key, input);
+        try (InputStream in = new AesInputStream(AES.CBC, key, new ByteArrayInputStream(encrypted))) {
+            assertArrayEquals(input, readAll(in));
+        }
+    }
+
+    @Test
+    void encryptEmptyStream() throws Exception {
+        for (AES.AesType type : AES.AesType.values()) {
+            ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            new AesOutputStream(type, key, cipherText).close();
+
+            assertEquals(0, AES.decrypt(type, key, cipherText.toByteArray()).length);
+        }
+    }
+
+    @Test
+    void tamperedStreamFails() throws Exception {
+        byte[] cipherText = AES.encrypt(AES.CBC, key, "Hello World!".getBytes());
+        cipherText[cipherText.length - 1] ^= 1;
+
+        try (InputStream in = new AesInputStream(AES.CBC, key, new ByteArrayInputStream(cipherText))) {
+            assertThrows(IOException.class, () -> readAll(in));
+        }
+    }
+
+    @Test
+    void gcmStreamDecryptionRejected() throws EncryptException {
+        byte[] cipherText = AES.encrypt(AES.GCM, key, "Hello World!".getBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> new AesInputStream(AES.GCM, key, new ByteArrayInputStream(cipherText)));
+        assertThrows(IllegalArgumentException.class, () -> AesChannels.newDecryptingChannel(AES.GCM, key, Channels.newChannel(new ByteArrayInputStream(cipherText))));
+        assertThrows(IllegalArgumentException.class, () -> AesChannels.newEncryptingChannel(AES.GCM, key, Channels.newChannel(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    void encryptAndDecryptChannel() throws Exception {
+        byte[] input = new byte[50_000];
+        new Random(2).nextBytes(input);
+
+        ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+        try (WritableByteChannel channel = AesChannels.newEncryptingChannel(AES.CBC, key, Channels.newChannel(cipherText))) {
+            channel.write(ByteBuffer.wrap(input));
+        }
+
+        ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(cipherText.toByteArray()));
+        try (ReadableByteChannel channel = AesChannels.newDecryptingChannel(AES.CBC, key, source)) {
+            assertArrayEquals(input, readAll(Channels.newInputStream(channel)));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
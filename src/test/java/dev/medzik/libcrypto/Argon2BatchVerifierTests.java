@@ -0,0 +1,189 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Argon2BatchVerifierTests {
+    @Test
+    void verifyBatch() {
+        Argon2 small = new Argon2(32, 1, 1024, 1);
+        Argon2 large = new Argon2.Builder().setMemory(2048).setIterations(2).setParallelism(2).build();
+
+        List<String> passwords = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Argon2 argon2 = i % 2 == 0 ? small : large;
+            hashes.add(argon2.hash("password " + i, Salt.generate(16)).toString());
+            // every third password is wrong
+            passwords.add(i % 3 == 0 ? "wrong" : "password " + i);
+        }
+        passwords.add("password");
+        hashes.add("$argon2id$invalid");
+
+        AtomicInteger results = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger lastProgress = new AtomicInteger();
+
+        ExecutorService executor = KdfExecutor.newFixed(3);
+        try {
+            Argon2BatchVerifier verifier = new Argon2BatchVerifier(executor, 4, new Argon2Scheduler(4096, 10, TimeUnit.SECONDS));
+            Argon2BatchVerifier.Result result = verifier.verify(passwords, hashes, new Argon2BatchVerifier.Listener() {
+                @Override
+                public void onResult(int index, boolean matches) {
+                    results.incrementAndGet();
+                }
+
+                @Override
+                public void onFailure(int index, Exception error) {
+                    failures.incrementAndGet();
+                }
+
+                @Override
+                public void onProgress(int completed, int total) {
+                    lastProgress.accumulateAndGet(completed, Math::max);
+                    assertEquals(13, total);
+                }
+            });
+
+            assertEquals(13, result.size());
+            for (int i = 0; i < 12; i++) {
+                assertTrue(result.isSuccess(i));
+                assertEquals(i % 3 != 0, result.matches(i), "item " + i);
+            }
+            assertFalse(result.isSuccess(12));
+            assertInstanceOf(IllegalArgumentException.class, result.getError(12));
+
+            assertEquals(8, result.getMatchCount());
+            assertEquals(1, result.getFailureCount());
+            assertEquals(12, results.get());
+            assertEquals(1, failures.get());
+            assertEquals(13, lastProgress.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void throwingListener() {
+        Argon2 argon2 = new Argon2(32, 1, 1024, 1);
+        List<String> passwords = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            passwords.add("password " + i);
+            hashes.add(argon2.hash("password " + i, Salt.generate(16)).toString());
+        }
+        passwords.add("password");
+        hashes.add("$argon2id$invalid");
+
+        AtomicInteger lastProgress = new AtomicInteger();
+        RuntimeException thrown = assertThrows(IllegalStateException.class, () -> new Argon2BatchVerifier().verify(passwords, hashes, new Argon2BatchVerifier.Listener() {
+            @Override
+            public void onResult(int index, boolean matches) {
+                throw new IllegalStateException("listener failed");
+            }
+
+            @Override
+            public void onFailure(int index, Exception error) {
+                throw new IllegalStateException("listener failed");
+            }
+
+            @Override
+            public void onProgress(int completed, int total) {
+                lastProgress.accumulateAndGet(completed, Math::max);
+            }
+        }));
+
+        // every item was still completed once, and the other listener exceptions are suppressed
+        assertEquals("listener failed", thrown.getMessage());
+        assertEquals(4, thrown.getSuppressed().length);
+        assertEquals(5, lastProgress.get());
+    }
+
+    @Test
+    void errorOnPoolThread() {
+        Argon2 argon2 = new Argon2(32, 1, 1024, 1);
+        List<CharSequence> passwords = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            passwords.add("password " + i);
+            hashes.add(argon2.hash("password " + i, Salt.generate(16)).toString());
+        }
+        // reading this password fails like an exhausted heap
+        passwords.set(2, new CharSequence() {
+            @Override
+            public int length() {
+                throw new OutOfMemoryError("test");
+            }
+
+            @Override
+            public char charAt(int index) {
+                throw new OutOfMemoryError("test");
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new OutOfMemoryError("test");
+            }
+        });
+
+        // runs the worker on a pool thread, which works through all items before the calling thread starts
+        Executor executor = command -> {
+            Thread thread = new Thread(command);
+            thread.start();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        AtomicInteger completed = new AtomicInteger();
+        OutOfMemoryError error = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+                assertThrows(OutOfMemoryError.class, () -> new Argon2BatchVerifier(executor, 2, null).verify(passwords, hashes, new Argon2BatchVerifier.Listener() {
+                    @Override
+                    public void onResult(int index, boolean matches) {
+                        assertTrue(matches);
+                        completed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onFailure(int index, Exception error) {
+                        assertEquals(2, index);
+                        completed.incrementAndGet();
+                    }
+                })));
+
+        assertEquals("test", error.getMessage());
+        assertEquals(4, completed.get());
+    }
+
+    @Test
+    void memoryLimit() {
+        Argon2 argon2 = new Argon2(32, 1, 2048, 1);
+        List<String> passwords = new ArrayList<>();
+        List<String> hashes = new ArrayList<>();
+        passwords.add("password");
+        hashes.add(argon2.hash("password", Salt.generate(16)).toString());
+
+        Argon2BatchVerifier.Result result = new Argon2BatchVerifier(KdfExecutor.getDefault(), 2, null, 1024).verify(passwords, hashes);
+
+        assertFalse(result.isSuccess(0));
+        assertTrue(new Argon2BatchVerifier(KdfExecutor.getDefault(), 2, null, 2048).verify(passwords, hashes).matches(0));
+    }
+
+    @Test
+    void emptyBatch() {
+        Argon2BatchVerifier.Result result = new Argon2BatchVerifier().verify(new ArrayList<String>(), new ArrayList<>());
+
+        assertEquals(0, result.size());
+    }
+}
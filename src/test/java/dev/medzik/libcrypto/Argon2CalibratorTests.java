@@ -0,0 +1,82 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Argon2CalibratorTests {
+    @Test
+    void calibrate() {
+        Argon2Calibrator.Result result = new Argon2Calibrator.Builder()
+                .setTargetLatency(10, TimeUnit.SECONDS)
+                .setMinMemory(1024)
+                .setMaxMemory(3000)
+                .setMaxIterations(3)
+                .setWarmupRuns(1)
+                .setSamples(2)
+                .build()
+                .calibrate();
+
+        // 1024, 2048, 3000 KiB with one iteration, then two and three iterations
+        assertEquals(5, result.getMeasurements().size());
+        assertEquals(3000, result.getBest().getMemory());
+        assertEquals(3, result.getBest().getIterations());
+
+        Argon2Hash hash = result.getArgon2().hash("secret password", Salt.generate(16));
+        assertEquals(3000, hash.getMemory());
+        assertEquals(3, hash.getIterations());
+    }
+
+    @Test
+    void bisectMemory() {
+        // about 1 ms per 100 KiB, so the target is met up to about 7000 KiB
+        Argon2Engine engine = new Argon2Engine() {
+            @Override
+            public byte[] hash(Argon2Type type, int version, int memory, int iterations, int parallelism, int hashLength,
+                               byte[] password, byte[] salt) {
+                try {
+                    Thread.sleep(memory / 100);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new byte[hashLength];
+            }
+        };
+
+        Argon2Calibrator.Result result = new Argon2Calibrator.Builder()
+                .setTargetLatency(70, TimeUnit.MILLISECONDS)
+                .setMinMemory(1024)
+                .setMaxMemory(65536)
+                .setMaxIterations(1)
+                .setWarmupRuns(0)
+                .setSamples(1)
+                .setEngine(engine)
+                .build()
+                .calibrate();
+
+        // 1024, 2048 and 4096 KiB pass and 8192 KiB fails, then 6144 KiB and more are measured in between
+        List<Argon2Calibrator.Measurement> measurements = result.getMeasurements();
+        assertEquals(8192, measurements.get(3).getMemory());
+        assertFalse(measurements.get(3).meetsTarget());
+        assertTrue(measurements.size() > 4);
+        for (Argon2Calibrator.Measurement measurement : measurements.subList(4, measurements.size())) {
+            assertTrue(measurement.getMemory() > 4096 && measurement.getMemory() < 8192);
+        }
+        assertTrue(result.getBest().getMemory() >= 6144 && result.getBest().getMemory() < 8192);
+    }
+
+    @Test
+    void unreachableTarget() {
+        Argon2Calibrator calibrator = new Argon2Calibrator.Builder()
+                .setTargetLatency(1, TimeUnit.NANOSECONDS)
+                .setMinMemory(1024)
+                .setWarmupRuns(0)
+                .setSamples(1)
+                .build();
+
+        assertThrows(IllegalStateException.class, calibrator::calibrate);
+    }
+}
@@ -0,0 +1,100 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Argon2EncodingUtilsTests {
+    private static final String ENCODED = "$argon2id$v=19$m=15360,t=2,p=1$bWVkemlrQGR1Y2suY29t$n7wCfzdczbjclMnpvw+t/4D+mCcCFUU+hm6Z85k81PQ";
+
+    @Test
+    void decode() {
+        Argon2Hash hash = Argon2EncodingUtils.decode(ENCODED);
+
+        assertEquals(Argon2Type.ID, hash.getType());
+        assertEquals(19, hash.getVersion());
+        assertEquals(15360, hash.getMemory());
+        assertEquals(2, hash.getIterations());
+        assertEquals(1, hash.getParallelism());
+        assertEquals("medzik@duck.com", new String(hash.getSalt(), StandardCharsets.UTF_8));
+        assertArrayEquals(Base64.getDecoder().decode("n7wCfzdczbjclMnpvw+t/4D+mCcCFUU+hm6Z85k81PQ"), hash.getHash());
+    }
+
+    @Test
+    void roundTrip() {
+        for (Argon2Type type : Argon2Type.values()) {
+            for (int length = 4; length <= 20; length++) {
+                Argon2Hash hash = new Argon2Hash(type, 16, 65536, 3, 4, Salt.generate(length + 4), Salt.generate(length));
+
+                String encoded = Argon2EncodingUtils.encode(hash);
+                assertEquals(Argon2EncodingUtils.encodedLength(hash), encoded.length());
+
+                Argon2Hash decoded = Argon2EncodingUtils.decode(encoded);
+                assertEquals(type, decoded.getType());
+                assertArrayEquals(hash.getSalt(), decoded.getSalt());
+                assertArrayEquals(hash.getHash(), decoded.getHash());
+                assertEquals(encoded, decoded.toString());
+            }
+        }
+    }
+
+    @Test
+    void encodeMatchesBase64() {
+        Argon2Hash hash = new Argon2Hash(Argon2Type.I, 19, 4096, 1, 2, Salt.generate(17), Salt.generate(33));
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+
+        String expected = "$argon2i$v=19$m=4096,t=1,p=2$" + encoder.encodeToString(hash.getSalt()) + "$" + encoder.encodeToString(hash.getHash());
+
+        assertEquals(expected, Argon2EncodingUtils.encode(hash));
+    }
+
+    @Test
+    void encodeIntoArrays() {
+        Argon2Hash hash = Argon2EncodingUtils.decode(ENCODED);
+
+        char[] chars = new char[ENCODED.length() + 2];
+        assertEquals(ENCODED.length(), Argon2EncodingUtils.encode(hash, chars, 2));
+        assertEquals(ENCODED, new String(chars, 2, ENCODED.length()));
+
+        byte[] bytes = new byte[ENCODED.length() + 1];
+        assertEquals(ENCODED.length(), Argon2EncodingUtils.encode(hash, bytes, 1));
+        assertEquals(ENCODED, new String(bytes, 1, ENCODED.length(), StandardCharsets.US_ASCII));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> Argon2EncodingUtils.encode(hash, new char[ENCODED.length() - 1], 0));
+    }
+
+    @Test
+    void decodeToleratesPadding() {
+        Argon2Hash hash = Argon2EncodingUtils.decode("$argon2i$v=19$m=4096,t=1,p=1$c29tZXNhbHQ=$Zm9vYmFy");
+
+        assertEquals("somesalt", new String(hash.getSalt(), StandardCharsets.UTF_8));
+        assertEquals("foobar", new String(hash.getHash(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodeRejectsInvalid() {
+        String[] invalid = {
+                "",
+                "$argon2x$v=19$m=4096,t=1,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$m=4096,t=1,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=20$m=4096,t=1,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=4096,t=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=04096,t=1,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=99999999999,t=1,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=4096,t=0,p=1$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=4096,t=1,p=0$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=8,t=1,p=2$c29tZXNhbHQ$Zm9vYmFy",
+                "$argon2id$v=19$m=4096,t=1,p=1$c29tZXNhbHQ",
+                "$argon2id$v=19$m=4096,t=1,p=1$c29tZXNh*HQ$Zm9vYmFy",
+                "$argon2id$v=19$m=4096,t=1,p=1$c29tZXNhbHQ$Zm9vY",
+                "$argon2id$v=19$m=4096,t=1,p=1$c29tZXNhbHQ$Zm9v"
+        };
+
+        for (String encoded : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> Argon2EncodingUtils.decode(encoded), encoded);
+        }
+    }
+}
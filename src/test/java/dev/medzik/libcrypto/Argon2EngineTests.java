@@ -0,0 +1,154 @@
+package dev.medzik.libcrypto;
+
+import com.password4j.Argon2Function;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Argon2EngineTests {
+    // RFC 9106, section 5
+    private static byte[] fill(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static String rfcVector(Argon2Type type) {
+        Argon2Engine engine = new Argon2Engine();
+        byte[] hash = engine.hash(type, 0x13, 32, 3, 4, 32,
+                fill(32, 0x01), fill(16, 0x02), fill(8, 0x03), fill(12, 0x04));
+        return Hex.encodeHexString(hash);
+    }
+
+    @Test
+    void rfcVectorArgon2d() {
+        assertEquals("512b391b6f1162975371d30919734294f868e3be3984f3c1a13a4db9fabe4acb", rfcVector(Argon2Type.D));
+    }
+
+    @Test
+    void rfcVectorArgon2i() {
+        assertEquals("c814d9d1dc7f37aa13f0d77f2494bda1c8de6b016dd388d29952a4c4672b6ce8", rfcVector(Argon2Type.I));
+    }
+
+    @Test
+    void rfcVectorArgon2id() {
+        assertEquals("0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659", rfcVector(Argon2Type.ID));
+    }
+
+    @Test
+    void matchesPassword4j() {
+        Argon2Engine engine = new Argon2Engine();
+        byte[] password = "secret password".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = Salt.generate(16);
+
+        int[][] params = {
+                // version, memory, iterations, parallelism, hash length
+                {19, 64, 1, 1, 32},
+                {19, 1024, 2, 4, 64},
+                {19, 4099, 1, 3, 100},
+                {16, 256, 3, 2, 16},
+                {16, 1000, 2, 1, 32}
+        };
+
+        for (Argon2Type type : Argon2Type.values()) {
+            for (int[] p : params) {
+                byte[] expected = Argon2Function.getInstance(p[1], p[2], p[3], p[4], type.toPassword4jType(), p[0])
+                        .hash(password, salt)
+                        .getBytes();
+                byte[] actual = engine.hash(type, p[0], p[1], p[2], p[3], p[4], password, salt);
+
+                assertArrayEquals(expected, actual, type + " " + Arrays.toString(p));
+            }
+        }
+    }
+
+    @Test
+    void reusesPooledMatrix() {
+        Argon2Engine engine = new Argon2Engine();
+        byte[] password = "secret password".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = Salt.generate(16);
+
+        byte[] first = engine.hash(Argon2Type.ID, 19, 512, 2, 2, 32, password, salt);
+        byte[] second = engine.hash(Argon2Type.ID, 19, 512, 2, 2, 32, password, salt);
+
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void customExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Argon2Engine engine = new Argon2Engine(executor, 0);
+            byte[] password = "secret password".getBytes(StandardCharsets.UTF_8);
+            byte[] salt = Salt.generate(16);
+
+            byte[] expected = Argon2Function.getInstance(1024, 2, 8, 32, com.password4j.types.Argon2.ID, 19)
+                    .hash(password, salt)
+                    .getBytes();
+
+            assertArrayEquals(expected, engine.hash(Argon2Type.ID, 19, 1024, 2, 8, 32, password, salt));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectingExecutor() {
+        // starts the first lane on a new thread and rejects the others
+        AtomicInteger submitted = new AtomicInteger();
+        Executor executor = command -> {
+            if (submitted.getAndIncrement() % 3 != 0) {
+                throw new RejectedExecutionException();
+            }
+            new Thread(command).start();
+        };
+        Argon2Engine engine = new Argon2Engine(executor, 0);
+        byte[] password = "secret password".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = Salt.generate(16);
+
+        byte[] expected = Argon2Function.getInstance(1024, 2, 4, 32, com.password4j.types.Argon2.ID, 19)
+                .hash(password, salt)
+                .getBytes();
+
+        assertArrayEquals(expected, engine.hash(Argon2Type.ID, 19, 1024, 2, 4, 32, password, salt));
+    }
+
+    @Test
+    void invalidParameters() {
+        Argon2Engine engine = new Argon2Engine();
+        byte[] password = new byte[8];
+        byte[] salt = new byte[16];
+
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 18, 64, 1, 1, 32, password, salt));
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 19, 15, 1, 2, 32, password, salt));
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 19, 64, 0, 1, 32, password, salt));
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 19, 64, 1, 1, 3, password, salt));
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 19, 64, 1, 1, 32, password, new byte[4]));
+        assertThrows(IllegalArgumentException.class, () -> engine.hash(Argon2Type.ID, 19, 16 * 1024 * 1024, 1, 1, 32, password, salt));
+    }
+
+    @Test
+    void hashUsingBuilder() {
+        Argon2 argon2 = new Argon2.Builder()
+                .setParallelism(2)
+                .setMemory(4096)
+                .setIterations(2)
+                .setEngine(new Argon2Engine())
+                .build();
+
+        Argon2Hash hash = argon2.hash("secret password", Salt.generate(16));
+
+        assertEquals(4096, hash.getMemory());
+        assertTrue(Argon2.verify("secret password", hash.toString()));
+        assertFalse(Argon2.verify("invalid password", hash.toString()));
+    }
+}
@@ -0,0 +1,118 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Argon2SchedulerTests {
+    @Test
+    void hashAndVerify() {
+        Argon2Scheduler scheduler = new Argon2Scheduler(4096, 5, TimeUnit.SECONDS);
+        Argon2 argon2 = new Argon2.Builder()
+                .setMemory(1024)
+                .setIterations(1)
+                .setScheduler(scheduler)
+                .build();
+
+        Argon2Hash hash = argon2.hash("secret password", Salt.generate(16));
+
+        assertTrue(Argon2.verify("secret password", hash.toString(), scheduler));
+        assertFalse(Argon2.verify("invalid password", hash.toString(), scheduler));
+        assertEquals(3, scheduler.getAdmittedCount());
+        assertEquals(0, scheduler.getMemoryInUse());
+    }
+
+    @Test
+    void rejectsJobLargerThanBudget() {
+        Argon2Scheduler scheduler = new Argon2Scheduler(1024, 5, TimeUnit.SECONDS);
+        Argon2 argon2 = new Argon2.Builder()
+                .setMemory(2048)
+                .setScheduler(scheduler)
+                .build();
+
+        assertThrows(RejectedExecutionException.class, () -> argon2.hash("secret password", Salt.generate(16)));
+        assertEquals(1, scheduler.getRejectedCount());
+        assertEquals(0, scheduler.getAverageWaitTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void queueDepthCountsOnlyWaitingJobs() throws Exception {
+        Argon2Scheduler scheduler = new Argon2Scheduler(1024, 5, TimeUnit.SECONDS);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // admitted immediately, not queued while it runs
+            Future<Integer> holder = executor.submit(() -> scheduler.run(1024, () -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 1;
+            }));
+            running.await();
+            assertEquals(0, scheduler.getQueueDepth());
+
+            Future<Integer> waiting = executor.submit(() -> scheduler.run(512, () -> 2));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (scheduler.getQueueDepth() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, scheduler.getQueueDepth());
+
+            Thread.sleep(20);
+            release.countDown();
+            assertEquals(1, holder.get());
+            assertEquals(2, waiting.get());
+            assertEquals(0, scheduler.getQueueDepth());
+
+            // the waiting job's wait averaged over both admitted jobs
+            assertEquals(scheduler.getTotalWaitTime(TimeUnit.NANOSECONDS) / 2, scheduler.getAverageWaitTime(TimeUnit.NANOSECONDS));
+            assertTrue(scheduler.getAverageWaitTime(TimeUnit.MILLISECONDS) >= 10);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void queuesAndTimesOut() throws Exception {
+        Argon2Scheduler scheduler = new Argon2Scheduler(1024, 50, TimeUnit.MILLISECONDS);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> holder = executor.submit(() -> scheduler.run(1024, () -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 1;
+            }));
+
+            running.await();
+            assertEquals(1024, scheduler.getMemoryInUse());
+
+            assertThrows(RejectedExecutionException.class, () -> scheduler.run(512, () -> 2));
+            assertEquals(1, scheduler.getRejectedCount());
+            assertTrue(scheduler.getTotalWaitTime(TimeUnit.MILLISECONDS) >= 50);
+
+            release.countDown();
+            assertEquals(1, holder.get());
+            assertEquals(2, scheduler.run(512, () -> 2));
+            assertEquals(0, scheduler.getQueueDepth());
+            assertEquals(0, scheduler.getMemoryInUse());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
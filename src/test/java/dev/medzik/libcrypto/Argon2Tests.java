@@ -1,7 +1,11 @@
 package dev.medzik.libcrypto;
 
+import com.password4j.Argon2Function;
 import org.junit.jupiter.api.Test;
 
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class Argon2Tests {
@@ -65,4 +69,63 @@ public class Argon2Tests {
         assertEquals(65536, hash.getMemory());
         assertEquals(2, hash.getIterations());
     }
+
+    @Test
+    void verifyUsesFunctionCache() {
+        String hash = "$argon2id$v=19$m=15360,t=2,p=1$bWVkemlrQGR1Y2suY29t$n7wCfzdczbjclMnpvw+t/4D+mCcCFUU+hm6Z85k81PQ";
+        Argon2FunctionCache cache = Argon2FunctionCache.getShared();
+
+        assertTrue(Argon2.verify("medzik@duck.com", hash));
+        long hits = cache.getHitCount();
+
+        assertTrue(Argon2.verify("medzik@duck.com", Argon2EncodingUtils.decode(hash)));
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    @Test
+    void functionCacheIsBounded() {
+        Argon2FunctionCache cache = new Argon2FunctionCache(2);
+
+        cache.get(Argon2Type.ID, 19, 1024, 1, 1, 32);
+        cache.get(Argon2Type.ID, 19, 1024, 1, 1, 32);
+        cache.get(Argon2Type.ID, 19, 2048, 1, 1, 32);
+        cache.get(Argon2Type.I, 19, 1024, 1, 1, 32);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void functionCacheBypassesPassword4jInstances() {
+        // password4j keeps every getInstance result, cached functions must not be shared with its map
+        Argon2Function shared = Argon2Function.getInstance(1024, 1, 1, 32, Argon2Type.ID.toPassword4jType(), 19);
+
+        assertNotSame(shared, new Argon2FunctionCache(2).get(Argon2Type.ID, 19, 1024, 1, 1, 32));
+    }
+
+    @Test
+    void async() throws Exception {
+        Argon2 argon2 = new Argon2(32, 1, 1024, 1);
+
+        Argon2Hash hash = argon2.hashAsync("secret password", Salt.generate(16)).get();
+
+        assertTrue(Argon2.verifyAsync("secret password", hash.toString()).get());
+        assertFalse(Argon2.verifyAsync("invalid password", hash.toString()).get());
+    }
+
+    @Test
+    void passwordOverloads() {
+        Argon2 argon2 = new Argon2(32, 1, 1024, 1);
+        byte[] salt = Salt.generate(16);
+
+        for (String password : new String[]{"secret password", "zażółć gęślą jaźń \uD83D\uDD11"}) {
+            String expected = argon2.hash(password, salt).toString();
+
+            assertEquals(expected, argon2.hash(password.toCharArray(), salt).toString());
+            assertEquals(expected, argon2.hash(CharBuffer.wrap(password), salt).toString());
+            assertEquals(expected, argon2.hash(password.getBytes(StandardCharsets.UTF_8), salt).toString());
+            assertTrue(Argon2.verify(CharBuffer.wrap(password.toCharArray()), expected));
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Curve25519SecretCacheTests {
+    @Test
+    void cachesSharedSecret() {
+        Curve25519SecretCache cache = new Curve25519SecretCache(16, 0, TimeUnit.SECONDS);
+        Curve25519PrivateKey our = Curve25519.generatePrivateKey();
+        Curve25519PrivateKey their = Curve25519.generatePrivateKey();
+        byte[] expected = our.computeSharedSecret(their.getPublicKey());
+
+        assertArrayEquals(expected, cache.computeSharedSecret(our, their.getPublicKey()));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        byte[] cached = cache.computeSharedSecret(our, their.getPublicKey());
+        assertArrayEquals(expected, cached);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate());
+
+        // the returned secret is a copy
+        Arrays.fill(cached, (byte) 0);
+        byte[] output = new byte[40];
+        cache.computeSharedSecret(our, their.getPublicKey(), output, 8);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 8, 40));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        Curve25519SecretCache cache = new Curve25519SecretCache(2, 0, TimeUnit.SECONDS);
+        Curve25519PrivateKey our = Curve25519.generatePrivateKey();
+        byte[] first = Curve25519.generatePrivateKey().getPublicKey();
+        byte[] second = Curve25519.generatePrivateKey().getPublicKey();
+        byte[] third = Curve25519.generatePrivateKey().getPublicKey();
+
+        cache.computeSharedSecret(our, first);
+        cache.computeSharedSecret(our, second);
+        // first becomes the most recently used, so second is evicted
+        cache.computeSharedSecret(our, first);
+        cache.computeSharedSecret(our, third);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        long misses = cache.getMissCount();
+        cache.computeSharedSecret(our, first);
+        assertEquals(misses, cache.getMissCount());
+        cache.computeSharedSecret(our, second);
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    void expiresEntries() throws InterruptedException {
+        Curve25519SecretCache cache = new Curve25519SecretCache(16, 50, TimeUnit.MILLISECONDS);
+        Curve25519PrivateKey our = Curve25519.generatePrivateKey();
+        byte[] their = Curve25519.generatePrivateKey().getPublicKey();
+
+        byte[] secret = cache.computeSharedSecret(our, their);
+        Thread.sleep(100);
+
+        assertArrayEquals(secret, cache.computeSharedSecret(our, their));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getExpirationCount());
+
+        Thread.sleep(100);
+        cache.removeExpired();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpirationCount());
+    }
+
+    @Test
+    void sessionKey() throws Exception {
+        byte[] info = "session".getBytes();
+        Curve25519SecretCache cache = new Curve25519SecretCache(16, 1, TimeUnit.MINUTES, info, 64);
+        Curve25519PrivateKey our = Curve25519.generatePrivateKey();
+        Curve25519PrivateKey their = Curve25519.generatePrivateKey();
+
+        byte[] sessionKey = cache.computeSharedSecret(our, their.getPublicKey());
+
+        assertEquals(64, sessionKey.length);
+        assertArrayEquals(Hkdf.sha256(null, our.computeSharedSecret(their.getPublicKey()), info, 64), sessionKey);
+        // both sides derive the same session key
+        Curve25519SecretCache other = new Curve25519SecretCache(16, 1, TimeUnit.MINUTES, info, 64);
+        assertArrayEquals(sessionKey, other.computeSharedSecret(their, our.getPublicKey()));
+    }
+
+    @Test
+    void clear() {
+        Curve25519SecretCache cache = new Curve25519SecretCache(16, 0, TimeUnit.SECONDS);
+        cache.computeSharedSecret(Curve25519.generatePrivateKey(), Curve25519.generatePrivateKey().getPublicKey());
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new Curve25519SecretCache(0, 0, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new Curve25519SecretCache(16, -1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new Curve25519SecretCache(16, 0, TimeUnit.SECONDS, new byte[0], 0));
+        assertThrows(IllegalArgumentException.class, () -> new Curve25519SecretCache(16, 0, TimeUnit.SECONDS, null, 16));
+    }
+}
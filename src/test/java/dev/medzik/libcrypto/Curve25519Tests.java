@@ -1,9 +1,14 @@
 package dev.medzik.libcrypto;
 
 import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class Curve25519Tests {
     @Test
@@ -68,4 +73,62 @@ public class Curve25519Tests {
 
         assert plainText.equals("Hello, world!");
     }
+
+    @Test
+    public void testComputeSharedSecretBytes() throws DecoderException {
+        byte[] privateKey = Hex.decodeHex("3845bead1f44408ee436c742291f1362489eeaaa9daebd480b1c3e4bc528cb48");
+        byte[] publicKey = Hex.decodeHex("9d49b72cf49defc6748c67ab274a1c2f096362ef3b2d691793686589760b4e25");
+        byte[] expected = Hex.decodeHex("2bebf3c397ab3c79db9aeeb2c1523ab4a32bd1ae335a19cd47e35983a5184d09");
+
+        assertArrayEquals(expected, Curve25519.computeSharedSecret(privateKey, publicKey));
+
+        byte[] output = new byte[40];
+        Curve25519.computeSharedSecret(privateKey, publicKey, output, 8);
+        assertArrayEquals(expected, Arrays.copyOfRange(output, 8, 40));
+        assertThrows(IndexOutOfBoundsException.class, () -> Curve25519.computeSharedSecret(privateKey, publicKey, output, 9));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+        Curve25519.computeSharedSecret(ByteBuffer.wrap(privateKey), ByteBuffer.wrap(publicKey), buffer);
+        assertEquals(32, buffer.position());
+        buffer.flip();
+        byte[] fromBuffer = new byte[32];
+        buffer.get(fromBuffer);
+        assertArrayEquals(expected, fromBuffer);
+
+        assertThrows(InvalidParameterException.class, () -> Curve25519.computeSharedSecret(new byte[31], publicKey));
+        assertThrows(InvalidParameterException.class, () -> Curve25519.computeSharedSecret(privateKey, new byte[33]));
+    }
+
+    @Test
+    public void testPrivateKey() throws DecoderException {
+        String privateKeyHex = "3845bead1f44408ee436c742291f1362489eeaaa9daebd480b1c3e4bc528cb48";
+        String publicKeyHex = "9d49b72cf49defc6748c67ab274a1c2f096362ef3b2d691793686589760b4e25";
+
+        Curve25519PrivateKey privateKey = new Curve25519PrivateKey(Hex.decodeHex(privateKeyHex));
+        assertEquals(publicKeyHex, Hex.encodeHexString(privateKey.getPublicKey()));
+        assertEquals(privateKeyHex, privateKey.toKeyPair().getPrivateKey());
+        assertEquals(publicKeyHex, privateKey.toKeyPair().getPublicKey());
+
+        // both sides agree on the shared secret
+        Curve25519PrivateKey their = Curve25519.generatePrivateKey();
+        byte[] ours = new byte[32];
+        privateKey.computeSharedSecret(their.getPublicKey(), ours, 0);
+        assertArrayEquals(ours, their.computeSharedSecret(privateKey.getPublicKey()));
+
+        privateKey.destroy();
+        assertTrue(privateKey.isDestroyed());
+        assertThrows(IllegalStateException.class, () -> privateKey.computeSharedSecret(their.getPublicKey()));
+        assertThrows(IllegalStateException.class, privateKey::getEncoded);
+    }
+
+    @Test
+    public void testKeyPairBytes() throws DecoderException {
+        Curve25519KeyPair keyPair = Curve25519.generateKeyPair();
+
+        assertEquals(keyPair.getPrivateKey(), Hex.encodeHexString(keyPair.getPrivateKeyBytes()));
+        assertEquals(keyPair.getPublicKey(), Hex.encodeHexString(keyPair.getPublicKeyBytes()));
+        assertArrayEquals(keyPair.getPublicKeyBytes(), Curve25519.publicKey(keyPair.getPrivateKeyBytes()));
+        assertArrayEquals(keyPair.getPublicKeyBytes(), keyPair.toPrivateKey().getPublicKey());
+        assertEquals(keyPair.getPublicKey(), Curve25519.fromPrivateKey(keyPair.getPrivateKeyBytes()).getPublicKey());
+    }
 }
@@ -0,0 +1,97 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineCacheTests {
+    @AfterEach
+    void reset() {
+        EngineCache.setProvider(null);
+    }
+
+    @Test
+    void sameInstancePerThread() throws Exception {
+        Cipher cipher = EngineCache.getCipher(AES.GCM.getMode());
+
+        assertSame(cipher, EngineCache.getCipher(AES.GCM.getMode()));
+        assertNotSame(cipher, EngineCache.getCipher(AES.CBC.getMode()));
+        assertSame(EngineCache.getKeyFactory("RSA"), EngineCache.getKeyFactory("RSA"));
+        assertSame(EngineCache.getSecretKeyFactory("PBKDF2WithHmacSHA256"), EngineCache.getSecretKeyFactory("PBKDF2WithHmacSHA256"));
+    }
+
+    @Test
+    void messageDigestIsReset() throws Exception {
+        EngineCache.getMessageDigest("SHA-256").update((byte) 1);
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(), EngineCache.getMessageDigest("SHA-256").digest());
+    }
+
+    @Test
+    void differentInstanceOnOtherThread() throws Exception {
+        Cipher cipher = EngineCache.getCipher(AES.GCM.getMode());
+
+        AtomicReference<Cipher> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                other.set(EngineCache.getCipher(AES.GCM.getMode()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertNotNull(other.get());
+        assertNotSame(cipher, other.get());
+    }
+
+    @Test
+    void newCipherIsNotCached() throws Exception {
+        Cipher cipher = EngineCache.getCipher(AES.GCM.getMode());
+
+        assertNotSame(cipher, EngineCache.newCipher(AES.GCM.getMode()));
+        assertNotSame(EngineCache.newCipher(AES.GCM.getMode()), EngineCache.newCipher(AES.GCM.getMode()));
+    }
+
+    @Test
+    void pinnedProvider() throws Exception {
+        Cipher cipher = EngineCache.getCipher(AES.GCM.getMode());
+
+        Provider provider = Security.getProvider("SunJCE");
+        EngineCache.setProvider(provider);
+        assertSame(provider, EngineCache.getProvider());
+
+        Cipher pinned = EngineCache.getCipher(AES.GCM.getMode());
+        assertNotSame(cipher, pinned);
+        assertSame(provider, pinned.getProvider());
+        assertSame(provider, EngineCache.newCipher(AES.CBC.getMode()).getProvider());
+
+        // the library keeps working with the pinned provider
+        byte[] key = Salt.generate(32);
+        byte[] cipherText = AES.encrypt(AES.GCM, key, "hello world".getBytes());
+        assertArrayEquals("hello world".getBytes(), AES.decrypt(AES.GCM, key, cipherText));
+    }
+
+    @Test
+    void clearDropsCachedEngines() throws Exception {
+        Cipher cipher = EngineCache.getCipher(AES.GCM.getMode());
+
+        EngineCache.clear();
+
+        assertNotSame(cipher, EngineCache.getCipher(AES.GCM.getMode()));
+    }
+
+    @Test
+    void unsupportedTransformation() {
+        assertThrows(Exception.class, () -> EngineCache.getCipher("AES/XYZ/NoPadding"));
+        assertThrows(EncryptException.class, () -> RSA.KeyUtils.getPublicKey(new byte[16]));
+    }
+}
@@ -0,0 +1,33 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HkdfTests {
+    private static byte[] inputKey() {
+        byte[] inputKey = new byte[22];
+        Arrays.fill(inputKey, (byte) 0x0b);
+        return inputKey;
+    }
+
+    // RFC 5869, test case 1
+    @Test
+    void withSalt() throws Exception {
+        byte[] salt = Hex.decodeHex("000102030405060708090a0b0c");
+        byte[] info = Hex.decodeHex("f0f1f2f3f4f5f6f7f8f9");
+
+        assertEquals("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf34007208d5b887185865",
+                Hex.encodeHexString(Hkdf.sha256(salt, inputKey(), info, 42)));
+    }
+
+    // RFC 5869, test case 3
+    @Test
+    void withoutSalt() throws Exception {
+        assertEquals("8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec3454e5f3c738d2d9d201395faa4b61a96c8",
+                Hex.encodeHexString(Hkdf.sha256(null, inputKey(), new byte[0], 42)));
+    }
+}
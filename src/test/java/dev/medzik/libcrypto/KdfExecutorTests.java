@@ -0,0 +1,53 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KdfExecutorTests {
+    @Test
+    void failureCompletesFuture() {
+        CompletableFuture<String> future = new Pbkdf2(0).sha256Async("hello world", "salt".getBytes());
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(EncryptException.class, e.getCause());
+    }
+
+    @Test
+    void customExecutor() throws Exception {
+        ExecutorService executor = KdfExecutor.newFixed(2);
+        try {
+            CompletableFuture<String> future = new Pbkdf2(1000).sha256Async("hello world", "salt".getBytes(), executor);
+
+            assertEquals("27426946a796b9a62bc53fba7157961905e4bdd0af2203d6eaf6dd4b64942def", future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedExecution() {
+        ExecutorService executor = KdfExecutor.newFixed(1);
+        executor.shutdown();
+
+        CompletableFuture<String> future = new Pbkdf2(1000).sha256Async("hello world", "salt".getBytes(), executor);
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        if (!KdfExecutor.isVirtualThreadSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> KdfExecutor.newVirtualThreadExecutor(2));
+            return;
+        }
+
+        Executor executor = KdfExecutor.newVirtualThreadExecutor(2);
+        CompletableFuture<String> future = new Pbkdf2(1000).sha256Async("hello world", "salt".getBytes(), executor);
+
+        assertEquals("27426946a796b9a62bc53fba7157961905e4bdd0af2203d6eaf6dd4b64942def", future.get());
+    }
+}
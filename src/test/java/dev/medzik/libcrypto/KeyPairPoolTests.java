@@ -0,0 +1,147 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyPairPoolTests {
+    @Test
+    void refillsInBackground() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+
+        try (KeyPairPool<Integer> pool = new KeyPairPool<>(counter::incrementAndGet, 3, executor)) {
+            // the initial fill is scheduled, not run on the caller
+            assertEquals(0, pool.size());
+            assertEquals(1, tasks.size());
+
+            // empty pool falls back to synchronous generation
+            assertEquals(1, pool.take());
+            assertEquals(0, pool.getHitCount());
+            assertEquals(1, pool.getMissCount());
+            // only one refill at a time
+            assertEquals(1, tasks.size());
+
+            tasks.remove(0).run();
+            assertEquals(3, pool.size());
+            assertEquals(1, pool.getRefillCount());
+
+            Set<Integer> taken = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                taken.add(pool.take());
+            }
+            assertEquals(3, taken.size());
+            assertFalse(taken.contains(1));
+            assertEquals(3, pool.getHitCount());
+            assertEquals(0.75, pool.getHitRate());
+            assertTrue(pool.getMaxRefillLag(TimeUnit.NANOSECONDS) >= pool.getAverageRefillLag(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Test
+    void failingGenerator() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        KeyPairPool.Generator<Integer> generator = () -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new EncryptException("failed");
+            }
+            return 1;
+        };
+
+        try (KeyPairPool<Integer> pool = new KeyPairPool<>(generator, 4, Runnable::run)) {
+            assertEquals(1, pool.size());
+            assertEquals(1, pool.getRefillFailureCount());
+            assertEquals(0, pool.getRefillCount());
+
+            assertEquals(1, pool.take());
+            assertThrows(EncryptException.class, pool::take);
+        }
+    }
+
+    @Test
+    void closedPool() {
+        KeyPairPool<Integer> pool = new KeyPairPool<>(() -> 1, 2, Runnable::run);
+        assertEquals(2, pool.size());
+
+        pool.close();
+
+        assertEquals(0, pool.size());
+        assertThrows(IllegalStateException.class, pool::take);
+    }
+
+    @Test
+    void closeDuringRefill() throws Exception {
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger counter = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        Executor executor = command -> {
+            Thread thread = new Thread(command);
+            threads.add(thread);
+            thread.start();
+        };
+
+        KeyPairPool<Integer> pool = new KeyPairPool<>(() -> {
+            int value = counter.incrementAndGet();
+            if (value > 1) {
+                // the refill is in progress
+                generating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new EncryptException(e);
+                }
+            }
+            return value;
+        }, 4, executor);
+
+        assertEquals(1, pool.take());
+        assertTrue(generating.await(10, TimeUnit.SECONDS));
+        pool.close();
+        release.countDown();
+        threads.get(0).join();
+
+        // the key pair generated while closing is dropped
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    void invalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyPairPool<>(() -> 1, 0));
+    }
+
+    @Test
+    void rsa() throws EncryptException {
+        try (KeyPairPool<KeyPair> pool = KeyPairPool.rsa(1024, 2)) {
+            pool.fill();
+            assertEquals(2, pool.size());
+
+            KeyPair keyPair = pool.take();
+            String cipherText = RSA.encrypt("Hello World!", keyPair.getPublic());
+            assertEquals("Hello World!", RSA.decrypt(cipherText, keyPair.getPrivate()));
+        }
+    }
+
+    @Test
+    void curve25519() throws Exception {
+        try (KeyPairPool<Curve25519KeyPair> pool = KeyPairPool.curve25519(4)) {
+            Curve25519KeyPair first = pool.take();
+            Curve25519KeyPair second = pool.take();
+
+            assertNotEquals(first.getPrivateKey(), second.getPrivateKey());
+            assertEquals(Curve25519.computeSharedSecret(first.getPrivateKey(), second.getPublicKey()),
+                    Curve25519.computeSharedSecret(second.getPrivateKey(), first.getPublicKey()));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Pbkdf2EngineTests {
+    private static byte[] jdk(String algorithm, String password, byte[] salt, int iterations, int keyLength) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyLength);
+        return SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded();
+    }
+
+    @Test
+    void rfc7914Vector() {
+        // RFC 7914, section 11
+        byte[] key = new Pbkdf2Engine().sha256("passwd".getBytes(StandardCharsets.UTF_8), "salt".getBytes(StandardCharsets.UTF_8), 1, 512);
+
+        assertEquals("55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc"
+                + "49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783", Hex.encodeHexString(key));
+    }
+
+    @Test
+    void matchesJdk() throws Exception {
+        Pbkdf2Engine engine = new Pbkdf2Engine();
+        String longPassword = new String(new char[200]).replace('\0', 'p');
+
+        for (String password : new String[]{"hello world", "zażółć gęślą jaźń", longPassword}) {
+            for (int iterations : new int[]{1, 2, 1000}) {
+                for (int keyLength : new int[]{128, 256, 512, 776}) {
+                    byte[] salt = Salt.generate(iterations == 2 ? 100 : 16);
+                    byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+
+                    assertArrayEquals(jdk("PBKDF2WithHmacSHA256", password, salt, iterations, keyLength),
+                            engine.sha256(passwordBytes, salt, iterations, keyLength));
+                    assertArrayEquals(jdk("PBKDF2WithHmacSHA512", password, salt, iterations, keyLength),
+                            engine.sha512(passwordBytes, salt, iterations, keyLength));
+                }
+            }
+        }
+    }
+
+    @Test
+    void pbkdf2WithEngine() throws EncryptException {
+        Pbkdf2 hasher = new Pbkdf2(1000, new Pbkdf2Engine());
+
+        assertEquals("27426946a796b9a62bc53fba7157961905e4bdd0af2203d6eaf6dd4b64942def", hasher.sha256("hello world", "salt".getBytes()));
+        assertEquals("883f5fb301ff684a2e92fdfc1754241bb2dd3eb6af53e5bd7e6c9eb2df7ccb7783f40872b5d3dd5c2915a519f008a92c4c2093e8a589e59962cf1e33c8706ca9",
+                hasher.sha512("hello world", "salt".getBytes()));
+    }
+
+    @Test
+    void invalidParameters() {
+        Pbkdf2Engine engine = new Pbkdf2Engine();
+
+        assertThrows(IllegalArgumentException.class, () -> engine.sha256(new byte[1], new byte[8], 0, 256));
+        assertThrows(IllegalArgumentException.class, () -> engine.sha256(new byte[1], new byte[8], 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> engine.sha512(new byte[1], new byte[8], 1, 12));
+        assertThrows(EncryptException.class, () -> new Pbkdf2(0, engine).sha256("hello world", new byte[8]));
+    }
+}
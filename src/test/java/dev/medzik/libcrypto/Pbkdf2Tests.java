@@ -1,7 +1,14 @@
 package dev.medzik.libcrypto;
 
+import org.apache.commons.codec.binary.Hex;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class Pbkdf2Tests {
@@ -23,4 +30,92 @@ public class Pbkdf2Tests {
 
         assertEquals(hash, "883f5fb301ff684a2e92fdfc1754241bb2dd3eb6af53e5bd7e6c9eb2df7ccb7783f40872b5d3dd5c2915a519f008a92c4c2093e8a589e59962cf1e33c8706ca9");
     }
+
+    @Test
+    void async() throws Exception {
+        Pbkdf2 hasher = new Pbkdf2(1000);
+
+        assertEquals(hasher.sha256(password, salt), hasher.sha256Async(password, salt).get());
+        assertEquals(hasher.sha512(password, salt), hasher.sha512Async(password, salt).get());
+    }
+
+    @Test
+    void passwordOverloads() throws EncryptException {
+        Pbkdf2 hasher = new Pbkdf2(1000);
+        String sha256 = hasher.sha256(password, salt);
+        String sha512 = hasher.sha512(password, salt);
+
+        char[] chars = password.toCharArray();
+        assertEquals(sha256, hasher.sha256(chars, salt));
+        assertEquals(sha512, hasher.sha512(chars, salt));
+        // the caller's array is not cleared
+        assertArrayEquals(password.toCharArray(), chars);
+
+        CharBuffer buffer = CharBuffer.wrap("xx" + password).position(2);
+        assertEquals(sha256, hasher.sha256(buffer, salt));
+        assertEquals(sha512, hasher.sha512(buffer, salt));
+        assertEquals(2, buffer.position());
+
+        byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+        assertEquals(sha256, hasher.sha256(bytes, salt));
+        assertEquals(sha512, hasher.sha512(bytes, salt));
+    }
+
+    @Test
+    void unicodePassword() throws EncryptException {
+        Pbkdf2 hasher = new Pbkdf2(1000);
+        String unicode = "zażółć gęślą jaźń \uD83D\uDD11";
+
+        String expected = hasher.sha256(unicode, salt);
+
+        assertEquals(expected, hasher.sha256(unicode.toCharArray(), salt));
+        assertEquals(expected, hasher.sha256(unicode.getBytes(StandardCharsets.UTF_8), salt));
+    }
+
+    @Test
+    void rawBytePassword() throws EncryptException {
+        // not valid UTF-8, hashed as is like Argon2 does
+        byte[] password = {(byte) 0xff, 0, (byte) 0xc3};
+        String sha256 = Hex.encodeHexString(new Pbkdf2Engine().sha256(password, salt, 1000, 256));
+        String sha512 = Hex.encodeHexString(new Pbkdf2Engine().sha512(password, salt, 1000, 512));
+
+        Pbkdf2 hasher = new Pbkdf2(1000);
+        assertEquals(sha256, hasher.sha256(password, salt));
+        assertEquals(sha512, hasher.sha512(password, salt));
+
+        Pbkdf2 engine = new Pbkdf2(1000, new Pbkdf2Engine());
+        assertEquals(sha256, engine.sha256(password, salt));
+        assertEquals(sha512, engine.sha512(password, salt));
+
+        // the caller's array is not cleared
+        assertArrayEquals(new byte[]{(byte) 0xff, 0, (byte) 0xc3}, password);
+    }
+
+    @Test
+    void keyLength() throws Exception {
+        Pbkdf2 hasher = new Pbkdf2(1000);
+
+        // single-block lengths go through the JDK's key factory, longer ones are derived block by block in parallel
+        assertEquals(hasher.sha256(password, salt), hasher.sha256(password, salt, 256));
+        assertEquals(hasher.sha256(password, salt).substring(0, 32), hasher.sha256(password, salt, 128));
+        assertEquals(hasher.sha512(password, salt).substring(0, 64), hasher.sha512(password, salt, 256));
+
+        String sha256 = hasher.sha256(password, salt, 1024);
+        assertEquals(256, sha256.length());
+        assertTrue(sha256.startsWith(hasher.sha256(password, salt)));
+        assertEquals(new Pbkdf2(1000, new Pbkdf2Engine()).sha256(password.toCharArray(), salt, 1024), sha256);
+        assertEquals(jdk("PBKDF2WithHmacSHA256", "", 1000, 1024), hasher.sha256("", salt, 1024));
+
+        String sha512 = hasher.sha512(password.toCharArray(), salt, 1536);
+        assertEquals(384, sha512.length());
+        assertTrue(sha512.startsWith(hasher.sha512(password, salt)));
+        assertEquals(jdk("PBKDF2WithHmacSHA512", password, 1000, 1536), sha512);
+
+        assertThrows(EncryptException.class, () -> hasher.sha256(password, salt, 12));
+    }
+
+    private String jdk(String algorithm, String password, int iterations, int keyLength) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyLength);
+        return Hex.encodeHexString(SecretKeyFactory.getInstance(algorithm).generateSecret(spec).getEncoded());
+    }
 }
@@ -0,0 +1,81 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RsaDecryptorTests {
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void generateKeyPair() throws EncryptException {
+        keyPair = RSA.generateKeyPair(2048);
+    }
+
+    @Test
+    void encryptAndDecrypt() throws EncryptException {
+        RsaEncryptor encryptor = new RsaEncryptor(keyPair.getPublic());
+        RsaDecryptor decryptor = new RsaDecryptor(keyPair.getPrivate());
+
+        for (int i = 0; i < 10; i++) {
+            String input = "Hello World! " + i;
+            String cipherText = encryptor.encrypt(input);
+
+            assertEquals(input, decryptor.decrypt(cipherText));
+            // compatible with the static methods
+            assertEquals(input, RSA.decrypt(cipherText, keyPair.getPrivate()));
+            assertEquals(input, decryptor.decrypt(RSA.encrypt(input, keyPair.getPublic())));
+        }
+    }
+
+    @Test
+    void decryptWithWrongKeyFails() throws EncryptException {
+        RsaDecryptor decryptor = new RsaDecryptor(keyPair.getPrivate());
+        RsaDecryptor other = new RsaDecryptor(RSA.generateKeyPair(2048).getPrivate());
+
+        byte[] cipherText = new RsaEncryptor(keyPair.getPublic()).encrypt("Hello World!".getBytes());
+
+        assertThrows(EncryptException.class, () -> other.decrypt(cipherText));
+        assertThrows(EncryptException.class, () -> decryptor.decrypt(new byte[300]));
+        // a failed decryption doesn't break the cached cipher
+        assertArrayEquals("Hello World!".getBytes(), decryptor.decrypt(cipherText));
+    }
+
+    @Test
+    void decryptBatch() throws EncryptException {
+        RsaEncryptor encryptor = new RsaEncryptor(keyPair.getPublic());
+        RsaDecryptor decryptor = new RsaDecryptor(keyPair.getPrivate());
+
+        byte[][] cipherTexts = new byte[32][];
+        for (int i = 0; i < cipherTexts.length; i++) {
+            cipherTexts[i] = encryptor.encrypt(("item " + i).getBytes());
+        }
+        cipherTexts[5] = new byte[256];
+        cipherTexts[7] = null;
+
+        for (boolean parallel : new boolean[]{false, true}) {
+            BatchResult result = decryptor.decryptBatch(cipherTexts, parallel);
+
+            assertEquals(cipherTexts.length, result.size());
+            assertEquals(2, result.getFailureCount());
+            assertFalse(result.isSuccess(5));
+            assertFalse(result.isSuccess(7));
+            assertThrows(EncryptException.class, () -> result.get(5));
+            for (int i = 0; i < cipherTexts.length; i++) {
+                if (i != 5 && i != 7) {
+                    assertArrayEquals(("item " + i).getBytes(), result.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyBatch() throws EncryptException {
+        BatchResult result = new RsaDecryptor(keyPair.getPrivate()).decryptBatch(new byte[0][]);
+
+        assertEquals(0, result.size());
+    }
+}
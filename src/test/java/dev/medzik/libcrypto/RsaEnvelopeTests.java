@@ -0,0 +1,94 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyPair;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RsaEnvelopeTests {
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void generateKeyPair() throws EncryptException {
+        keyPair = RSA.generateKeyPair(2048);
+    }
+
+    @Test
+    void encryptAndDecrypt() throws EncryptException {
+        // larger than the modulus and spanning several segments
+        for (int size : new int[]{0, 1, 1000, 3 * SegmentedAesGcm.DEFAULT_SEGMENT_SIZE + 7}) {
+            byte[] clearText = Salt.generate(size);
+
+            byte[] envelope = RsaEnvelope.encrypt(clearText, keyPair.getPublic());
+
+            assertArrayEquals(clearText, RsaEnvelope.decrypt(envelope, keyPair.getPrivate()));
+        }
+    }
+
+    @Test
+    void streaming() throws Exception {
+        byte[] clearText = Salt.generate(2 * SegmentedAesGcm.DEFAULT_SEGMENT_SIZE + 123);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = RsaEnvelope.newEncryptingStream(buffer, keyPair.getPublic())) {
+            for (int i = 0; i < clearText.length; i += 1000) {
+                out.write(clearText, i, Math.min(1000, clearText.length - i));
+            }
+        }
+        byte[] envelope = buffer.toByteArray();
+
+        // the one-shot and streaming formats are the same
+        assertArrayEquals(clearText, RsaEnvelope.decrypt(envelope, keyPair.getPrivate()));
+        assertArrayEquals(clearText, readAll(RsaEnvelope.newDecryptingStream(new ByteArrayInputStream(envelope), keyPair.getPrivate())));
+
+        byte[] oneShot = RsaEnvelope.encrypt(clearText, keyPair.getPublic());
+        assertArrayEquals(clearText, readAll(RsaEnvelope.newDecryptingStream(new ByteArrayInputStream(oneShot), keyPair.getPrivate())));
+    }
+
+    @Test
+    void decryptWithWrongKeyFails() throws EncryptException {
+        byte[] envelope = RsaEnvelope.encrypt("Hello World!".getBytes(), keyPair.getPublic());
+        KeyPair other = RSA.generateKeyPair(2048);
+
+        assertThrows(EncryptException.class, () -> RsaEnvelope.decrypt(envelope, other.getPrivate()));
+        assertThrows(EncryptException.class, () -> RsaEnvelope.newDecryptingStream(new ByteArrayInputStream(envelope), other.getPrivate()));
+    }
+
+    @Test
+    void modifiedEnvelopeFails() throws EncryptException {
+        byte[] envelope = RsaEnvelope.encrypt("Hello World!".getBytes(), keyPair.getPublic());
+
+        // version, wrapped key and payload
+        for (int index : new int[]{0, 10, envelope.length - 1}) {
+            byte[] modified = envelope.clone();
+            modified[index] ^= 1;
+
+            assertThrows(EncryptException.class, () -> RsaEnvelope.decrypt(modified, keyPair.getPrivate()));
+        }
+
+        assertThrows(EncryptException.class, () -> RsaEnvelope.decrypt(new byte[2], keyPair.getPrivate()));
+        assertThrows(EncryptException.class, () -> RsaEnvelope.decrypt(Arrays.copyOf(envelope, 200), keyPair.getPrivate()));
+        assertThrows(EncryptException.class, () -> RsaEnvelope.decrypt(Arrays.copyOf(envelope, envelope.length - 1), keyPair.getPrivate()));
+        assertThrows(EncryptException.class, () -> RsaEnvelope.newDecryptingStream(new ByteArrayInputStream(envelope, 0, 100), keyPair.getPrivate()));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -2,7 +2,9 @@ package dev.medzik.libcrypto;
 
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SaltTests {
     int length =  16;
@@ -13,4 +15,41 @@ public class SaltTests {
 
         assertEquals(salt.length, length);
     }
+
+    @Test
+    void generateIntoArray() {
+        byte[] output = new byte[48];
+
+        Salt.generate(output, 16, length);
+
+        assertArrayEquals(new byte[16], Arrays.copyOfRange(output, 0, 16));
+        assertFalse(Arrays.equals(new byte[16], Arrays.copyOfRange(output, 16, 32)));
+        assertArrayEquals(new byte[16], Arrays.copyOfRange(output, 32, 48));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> Salt.generate(output, 40, length));
+        assertThrows(IndexOutOfBoundsException.class, () -> Salt.generate(output, -1, length));
+    }
+
+    @Test
+    void buffered() {
+        Salt.setBufferSize(64);
+        try {
+            assertEquals(64, Salt.getBufferSize());
+
+            // slices of the same buffer and refills must not repeat
+            byte[] previous = Salt.generate(length);
+            for (int i = 0; i < 20; i++) {
+                byte[] salt = Salt.generate(length);
+                assertFalse(Arrays.equals(previous, salt));
+                previous = salt;
+            }
+
+            // larger than half of the buffer, generated directly
+            assertEquals(48, Salt.generate(48).length);
+        } finally {
+            Salt.setBufferSize(0);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> Salt.setBufferSize(-1));
+    }
 }
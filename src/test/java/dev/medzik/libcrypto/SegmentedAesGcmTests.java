@@ -0,0 +1,201 @@
+package dev.medzik.libcrypto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedAesGcmTests {
+    byte[] key = Salt.generate(32);
+    SegmentedAesGcm aes = new SegmentedAesGcm(key, 64, ForkJoinPool.commonPool());
+
+    @Test
+    void encryptAndDecrypt() throws EncryptException {
+        for (int length : new int[]{0, 1, 63, 64, 65, 128, 1000, 100_000}) {
+            byte[] input = random(length);
+            byte[] cipherText = aes.encrypt(input);
+
+            assertEquals(aes.getCipherTextLength(length), cipherText.length);
+            assertArrayEquals(input, aes.decrypt(cipherText));
+        }
+    }
+
+    @Test
+    void encryptAndDecryptDirectBuffers() throws EncryptException {
+        byte[] input = random(10_000);
+
+        ByteBuffer clearText = ByteBuffer.allocateDirect(input.length);
+        clearText.put(input).flip();
+
+        ByteBuffer cipherText = ByteBuffer.allocateDirect((int) aes.getCipherTextLength(input.length));
+        aes.encrypt(clearText, cipherText);
+        cipherText.flip();
+
+        ByteBuffer output = ByteBuffer.allocateDirect(input.length);
+        assertEquals(input.length, aes.decrypt(cipherText, output));
+
+        byte[] result = new byte[input.length];
+        output.flip();
+        output.get(result);
+        assertArrayEquals(input, result);
+    }
+
+    @Test
+    void decryptRange() throws EncryptException {
+        byte[] input = random(1000);
+        ByteBuffer cipherText = ByteBuffer.wrap(aes.encrypt(input));
+
+        int[][] ranges = {{0, 0}, {0, 1}, {0, 64}, {10, 100}, {63, 2}, {128, 64}, {999, 1}, {500, 500}, {0, 1000}};
+        for (int[] range : ranges) {
+            byte[] expected = Arrays.copyOfRange(input, range[0], range[0] + range[1]);
+            assertArrayEquals(expected, aes.decrypt(cipherText, range[0], range[1]));
+        }
+
+        assertThrows(EncryptException.class, () -> aes.decrypt(cipherText, 990, 20));
+    }
+
+    @Test
+    void detectTruncation() throws EncryptException {
+        byte[] cipherText = aes.encrypt(random(1000));
+
+        // drop the last segment, the new last segment wasn't encrypted as final
+        byte[] truncated = Arrays.copyOf(cipherText, cipherText.length - (1000 % 64 + SegmentedAesGcm.TAG_LENGTH));
+        assertThrows(EncryptException.class, () -> aes.decrypt(truncated));
+    }
+
+    @Test
+    void detectReorderedSegments() throws EncryptException {
+        byte[] cipherText = aes.encrypt(random(1000));
+
+        int segment = 64 + SegmentedAesGcm.TAG_LENGTH;
+        byte[] swapped = cipherText.clone();
+        System.arraycopy(cipherText, SegmentedAesGcm.HEADER_LENGTH, swapped, SegmentedAesGcm.HEADER_LENGTH + segment, segment);
+        System.arraycopy(cipherText, SegmentedAesGcm.HEADER_LENGTH + segment, swapped, SegmentedAesGcm.HEADER_LENGTH, segment);
+
+        assertThrows(EncryptException.class, () -> aes.decrypt(swapped));
+    }
+
+    @Test
+    void detectModifiedHeader() throws EncryptException {
+        byte[] cipherText = aes.encrypt(random(100));
+
+        // salt and nonce prefix
+        for (int i : new int[]{6, SegmentedAesGcm.HEADER_LENGTH - 1}) {
+            byte[] modified = cipherText.clone();
+            modified[i] ^= 1;
+            assertThrows(EncryptException.class, () -> aes.decrypt(modified));
+        }
+    }
+
+    @Test
+    void keyPerMessage() throws Exception {
+        byte[] cipherText = aes.encrypt(random(10));
+
+        // the segment can't be opened with the given key, only with the key derived from the salt
+        byte[] nonce = new byte[12];
+        System.arraycopy(cipherText, SegmentedAesGcm.HEADER_LENGTH - 7, nonce, 0, 7);
+        nonce[11] = 1;
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(cipherText, 0, SegmentedAesGcm.HEADER_LENGTH);
+        assertThrows(AEADBadTagException.class, () -> cipher.doFinal(cipherText, SegmentedAesGcm.HEADER_LENGTH, cipherText.length - SegmentedAesGcm.HEADER_LENGTH));
+    }
+
+    @Test
+    void encryptAndDecryptFile(@TempDir Path directory) throws Exception {
+        byte[] input = random(100_000);
+
+        Path clearFile = directory.resolve("clear");
+        Path cipherFile = directory.resolve("cipher");
+        Path outputFile = directory.resolve("output");
+        Files.write(clearFile, input);
+
+        aes.encryptFile(clearFile, cipherFile);
+        assertArrayEquals(input, aes.decrypt(Files.readAllBytes(cipherFile)));
+
+        aes.decryptFile(cipherFile, outputFile);
+        assertArrayEquals(input, Files.readAllBytes(outputFile));
+
+        assertArrayEquals(Arrays.copyOfRange(input, 12345, 23456), aes.decryptFile(cipherFile, 12345, 11111));
+    }
+
+    @Test
+    void tamperedFileLeavesNoOutput(@TempDir Path directory) throws Exception {
+        Path clearFile = directory.resolve("clear");
+        Path cipherFile = directory.resolve("cipher");
+        Path outputFile = directory.resolve("output");
+        Files.write(clearFile, random(100_000));
+        aes.encryptFile(clearFile, cipherFile);
+
+        // modify the last segment, after the others have been decrypted
+        byte[] cipherText = Files.readAllBytes(cipherFile);
+        cipherText[cipherText.length - 1] ^= 1;
+        Files.write(cipherFile, cipherText);
+
+        assertThrows(EncryptException.class, () -> aes.decryptFile(cipherFile, outputFile));
+        assertFalse(Files.exists(outputFile));
+    }
+
+    @Test
+    void encryptAndDecryptStream() throws Exception {
+        for (int length : new int[]{0, 64, 1000}) {
+            byte[] input = random(length);
+
+            ByteArrayOutputStream cipherText = new ByteArrayOutputStream();
+            try (OutputStream out = aes.newEncryptingStream(cipherText)) {
+                for (byte b : input) {
+                    out.write(b);
+                }
+            }
+
+            // the stream produces the same format as the buffer methods
+            assertArrayEquals(input, aes.decrypt(cipherText.toByteArray()));
+
+            try (InputStream in = aes.newDecryptingStream(new ByteArrayInputStream(aes.encrypt(input)))) {
+                assertArrayEquals(input, readAll(in));
+            }
+        }
+    }
+
+    @Test
+    void truncatedStreamFails() throws Exception {
+        byte[] cipherText = aes.encrypt(random(1000));
+        byte[] truncated = Arrays.copyOf(cipherText, SegmentedAesGcm.HEADER_LENGTH + 2 * (64 + SegmentedAesGcm.TAG_LENGTH));
+
+        try (InputStream in = aes.newDecryptingStream(new ByteArrayInputStream(truncated))) {
+            assertThrows(IOException.class, () -> readAll(in));
+        }
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,138 @@
+package dev.medzik.libcrypto;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class X25519Tests {
+    @AfterEach
+    void reset() {
+        Curve25519.setImplementation(Curve25519.Implementation.DEPENDENCY);
+    }
+
+    private static String scalarMult(String scalar, String u) throws DecoderException {
+        byte[] output = new byte[32];
+        X25519.scalarMult(Hex.decodeHex(scalar), Hex.decodeHex(u), output, 0);
+        return Hex.encodeHexString(output);
+    }
+
+    // RFC 7748, section 5.2
+    @Test
+    void rfc7748Vectors() throws DecoderException {
+        assertEquals("c3da55379de9c6908e94ea4df28d084f32eccf03491c71f754b4075577a28552", scalarMult(
+                "a546e36bf0527c9d3b16154b82465edd62144c0ac1fc5a18506a2244ba449ac4",
+                "e6db6867583030db3594c1a424b15f7c726624ec26b3353b10a903a6d0ab1c4c"));
+
+        // the most significant bit of the u-coordinate is set and must be ignored
+        assertEquals("95cbde9476e8907d7aade45cb4b873f88b595a68799fa152e6f8f7647aac7957", scalarMult(
+                "4b66e9d4d1b4673c5ad22691957d6af5c11b6421e0ea01d42ca4169e7918ba0d",
+                "e5210f12786811d3f4b7959d0538ae2c31dbe7106fc03c3efc4cd549c715a493"));
+    }
+
+    @Test
+    void rfc7748Iterations() {
+        byte[] k = new byte[32];
+        k[0] = 9;
+        byte[] u = k.clone();
+
+        for (int i = 1; i <= 1000; i++) {
+            byte[] result = new byte[32];
+            X25519.scalarMult(k, u, result, 0);
+            u = k;
+            k = result;
+
+            if (i == 1) {
+                assertEquals("422c8e7a6227d7bca1350b3e2bb7279f7897b87bb6854b783c60e80311ae3079", Hex.encodeHexString(k));
+            }
+        }
+
+        assertEquals("684cf59ba83309552800ef566f2f4d3c1c3887c49360e3875f2eb94d99532c51", Hex.encodeHexString(k));
+    }
+
+    // RFC 7748, section 6.1
+    @Test
+    void rfc7748DiffieHellman() throws DecoderException {
+        Curve25519.setImplementation(Curve25519.Implementation.BUILT_IN);
+
+        String alicePrivate = "77076d0a7318a57d3c16c17251b26645df4c2f87ebc0992ab177fba51db92c2a";
+        String bobPrivate = "5dab087e624a8a4b79e17f8b83800ee66f3bb1292618b6fd1c2f8b27ff88e0eb";
+
+        Curve25519KeyPair alice = Curve25519.fromPrivateKey(alicePrivate);
+        Curve25519KeyPair bob = Curve25519.fromPrivateKey(bobPrivate);
+        assertEquals("8520f0098930a754748b7ddcb43ef75a0dbf3a0d26381af4eba4a98eaa9b4e6a", alice.getPublicKey());
+        assertEquals("de9edb7d7b7dc1b4d35b61c2ece435373f8343c85b78674dadfc7e146f882b4f", bob.getPublicKey());
+
+        String sharedSecret = "4a5d9d5ba4ce2de1728e3bf480350f25e07e21c947d19e3376f09b3c1e161742";
+        assertEquals(sharedSecret, Curve25519.computeSharedSecret(alicePrivate, bob.getPublicKey()));
+        assertEquals(sharedSecret, Curve25519.computeSharedSecret(bobPrivate, alice.getPublicKey()));
+    }
+
+    @Test
+    void existingKeys() throws DecoderException {
+        Curve25519.setImplementation(Curve25519.Implementation.BUILT_IN);
+
+        String privateKey = "3845bead1f44408ee436c742291f1362489eeaaa9daebd480b1c3e4bc528cb48";
+        String publicKey = "9d49b72cf49defc6748c67ab274a1c2f096362ef3b2d691793686589760b4e25";
+
+        assertEquals(publicKey, Curve25519.fromPrivateKey(privateKey).getPublicKey());
+        assertEquals("2bebf3c397ab3c79db9aeeb2c1523ab4a32bd1ae335a19cd47e35983a5184d09",
+                Curve25519.computeSharedSecret(privateKey, publicKey));
+    }
+
+    @Test
+    void matchesDependency() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            byte[] privateKey = new byte[32];
+            byte[] publicKey = new byte[32];
+            random.nextBytes(privateKey);
+            random.nextBytes(publicKey);
+            // the dependency doesn't mask the most significant bit
+            publicKey[31] &= 127;
+
+            byte[] output = new byte[32];
+            X25519.scalarMult(privateKey, publicKey, output, 0);
+            assertArrayEquals(com.github.netricecake.ecdh.Curve25519.sharedSecret(privateKey, publicKey), output);
+
+            X25519.scalarMultBase(privateKey, output, 0);
+            assertArrayEquals(com.github.netricecake.ecdh.Curve25519.publicKey(privateKey), output);
+        }
+    }
+
+    @Test
+    void computeSharedSecrets() {
+        for (Curve25519.Implementation implementation : Curve25519.Implementation.values()) {
+            Curve25519.setImplementation(implementation);
+
+            Curve25519PrivateKey server = Curve25519.generatePrivateKey();
+            Curve25519PrivateKey[] clients = new Curve25519PrivateKey[16];
+            byte[][] clientPublics = new byte[clients.length][];
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = Curve25519.generatePrivateKey();
+                clientPublics[i] = clients[i].getPublicKey();
+            }
+
+            byte[][] sharedSecrets = server.computeSharedSecrets(clientPublics);
+
+            assertEquals(clients.length, sharedSecrets.length);
+            for (int i = 0; i < clients.length; i++) {
+                assertArrayEquals(clients[i].computeSharedSecret(server.getPublicKey()), sharedSecrets[i]);
+            }
+
+            byte[] packed = new byte[8 + clients.length * 32];
+            Curve25519.computeSharedSecrets(server.getEncoded(), clientPublics, packed, 8);
+            assertArrayEquals(sharedSecrets[3], Arrays.copyOfRange(packed, 8 + 3 * 32, 8 + 4 * 32));
+            assertThrows(IndexOutOfBoundsException.class, () -> Curve25519.computeSharedSecrets(server.getEncoded(), clientPublics, packed, 9));
+
+            clientPublics[5] = new byte[31];
+            assertThrows(InvalidParameterException.class, () -> server.computeSharedSecrets(clientPublics));
+        }
+    }
+}